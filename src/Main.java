@@ -4,8 +4,15 @@ import structure.Home;
 import structure.Room;
 import automation.AutomationEngine;
 import automation.AutomationRule;
+import automation.ConditionCompiler;
+import automation.FiringMode;
+import automation.Hysteresis;
+import energy.LoadShedder;
 import exceptions.*;
+import server.ControlServer;
+import simulation.LoadGenerator;
 
+import java.io.IOException;
 import java.util.Scanner;
 
 public class Main {
@@ -14,6 +21,23 @@ public class Main {
         System.out.println("  SMART HOME AUTOMATION SIMULATOR  ");
         System.out.println("===================================\n");
 
+        // Load test instead of the demo: java Main --load [operations] [threads]
+        if (args.length > 0 && args[0].equals("--load")) {
+            LoadGenerator generator = new LoadGenerator();
+            if (args.length > 1) {
+                generator.setOperations(Long.parseLong(args[1]));
+            }
+            if (args.length > 2) {
+                generator.setThreads(Integer.parseInt(args[2]));
+            }
+            try {
+                System.out.println(generator.run());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         // Create the home
         Home myHome = new Home("My Smart Home");
 
@@ -57,37 +81,75 @@ public class Main {
         AutomationEngine automationEngine = new AutomationEngine();
 
         // Add automation rules
-        AutomationRule motionRule = new AutomationRule(
-                "Motion Light Rule",
-                () -> motionSensor.isMotionDetected(),
-                () -> {
-                    if (!livingLight.isOn()) {
+        ConditionCompiler compiler = new ConditionCompiler(controller, automationEngine);
+        LoadShedder loadShedder = new LoadShedder(controller);
+        automationEngine.getConditionNetwork().watch(myHome);
+        try {
+            AutomationRule motionRule = new AutomationRule(
+                    "Motion Light Rule",
+                    compiler.compile("S001.motion && L001.off"),
+                    () -> {
                         livingLight.turnOn();
                         System.out.println("[AUTOMATION] Motion detected! Living room light turned on.");
                     }
-                }
-        );
-
-        AutomationRule energySavingRule = new AutomationRule(
-                "Energy Saving Rule",
-                () -> controller.getTotalEnergyConsumption() > 200,
-                () -> {
-                    System.out.println("[AUTOMATION] High energy consumption detected! Reducing usage...");
-                    livingLight.setBrightness(30);
-                    tv.turnOff();
-                }
-        );
+            );
 
-        automationEngine.addRule(motionRule);
-        automationEngine.addRule(energySavingRule);
+            // Fires once when watts exceed 200, re-arms only after dropping below 180
+            AutomationRule energySavingRule = new AutomationRule(
+                    "Energy Saving Rule",
+                    Hysteresis.above(compiler.compileValue("home.watts"), 200, 180),
+                    () -> {
+                        System.out.println("[AUTOMATION] High energy consumption detected! Reducing usage...");
+                        loadShedder.shed(180); // Cheapest actions back under the re-arm level
+                    }
+            );
+
+            energySavingRule.setFiringMode(FiringMode.RISING_EDGE);
+            energySavingRule.setCooldown(60_000);
+
+            // Switches the light off after 10 minutes without motion
+            AutomationRule idleLightRule = new AutomationRule(
+                    "Idle Light Rule",
+                    compiler.compile("held(!S001.motion && L001.on, 10m)"),
+                    () -> {
+                        livingLight.turnOff();
+                        System.out.println("[AUTOMATION] No motion for 10 minutes. Living room light turned off.");
+                    }
+            );
+            idleLightRule.setFiringMode(FiringMode.RISING_EDGE);
+
+            automationEngine.addRule(motionRule);
+            automationEngine.addRule(energySavingRule);
+            automationEngine.addRule(idleLightRule);
+        } catch (InvalidRuleException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+
+        // Optional network control: java Main --server [port]
+        ControlServer server = null;
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+            server = new ControlServer(controller, port);
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.out.println("Error: could not start control server - " + e.getMessage());
+                server = null;
+            }
+        }
 
         // Demo menu
         runDemo(controller, automationEngine, motionSensor, myHome);
+
+        if (server != null) {
+            server.stop();
+        }
     }
 
     private static void runDemo(CentralController controller, AutomationEngine engine,
                                 MotionSensor sensor, Home home) {
         Scanner scanner = new Scanner(System.in);
+        MotionDebouncer debouncer = new MotionDebouncer();
         boolean running = true;
 
         while (running) {
@@ -131,11 +193,12 @@ public class Main {
                         break;
                     case 7:
                         System.out.println("\n[SIMULATION] Motion detected in living room!");
-                        sensor.detectMotion();
+                        debouncer.detect(sensor, engine.currentTime());
                         engine.evaluateRules();
                         break;
                     case 8:
                         System.out.println("\n[AUTOMATION] Evaluating all rules...");
+                        debouncer.poll(engine.currentTime());
                         engine.evaluateRules();
                         break;
                     case 9:
@@ -1,13 +1,22 @@
 package automation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
 
 /**
  * Engine that manages and evaluates automation rules
  */
 public class AutomationEngine {
     private List<AutomationRule> rules;
+    private final ConditionNetwork conditionNetwork = new ConditionNetwork();
+    private final TemporalWindows temporalWindows = new TemporalWindows();
+    private LongSupplier clock = System::currentTimeMillis;
 
     public AutomationEngine() {
         this.rules = new ArrayList<>();
@@ -20,26 +29,58 @@ public class AutomationEngine {
      */
     public void addRule(AutomationRule rule) {
         rules.add(rule);
+        for (Expr shared : sharedBy(rule)) {
+            shared.acquire();
+        }
         System.out.println("✓ Added rule: " + rule.getRuleName());
     }
 
     /**
-     * Removes a rule by name
+     * Removes a rule by name, releasing the shared nodes and windows that
+     * no remaining rule uses
      * @param ruleName The name of the rule to remove
      */
     public void removeRule(String ruleName) {
-        rules.removeIf(rule -> rule.getRuleName().equals(ruleName));
+        Iterator<AutomationRule> iterator = rules.iterator();
+        while (iterator.hasNext()) {
+            AutomationRule rule = iterator.next();
+            if (rule.getRuleName().equals(ruleName)) {
+                iterator.remove();
+                for (Expr shared : sharedBy(rule)) {
+                    shared.release();
+                }
+            }
+        }
         System.out.println("✓ Removed rule: " + ruleName);
     }
 
+    /**
+     * Shared nodes and windows a rule's compiled condition uses; none for
+     * opaque lambda conditions
+     */
+    private static Set<Expr> sharedBy(AutomationRule rule) {
+        Set<Expr> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        BooleanSupplier condition = rule.getCondition();
+        if (condition instanceof CompiledCondition) {
+            ((CompiledCondition) condition).getRoot().collectShared(shared);
+        } else if (condition instanceof Hysteresis
+                && ((Hysteresis) condition).getValue() instanceof ConditionCompiler.CompiledValue) {
+            ((ConditionCompiler.CompiledValue) ((Hysteresis) condition).getValue()).root.collectShared(shared);
+        }
+        return shared;
+    }
+
     /**
      * Evaluates all enabled rules and executes actions if conditions are met
      */
     public void evaluateRules() {
         int executedCount = 0;
+        long now = clock.getAsLong();
+        conditionNetwork.beginCycle();
+        temporalWindows.advance(now);
 
         for (AutomationRule rule : rules) {
-            if (rule.executeIfTrue()) {
+            if (rule.executeIfTrue(now)) {
                 executedCount++;
             }
         }
@@ -93,6 +134,37 @@ public class AutomationEngine {
         System.out.println("✗ Rule not found: " + ruleName);
     }
 
+    /**
+     * Replaces the engine clock, e.g. with a virtual clock for simulation or replay
+     * @param clock Supplier of the current time in milliseconds
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return Current engine time in milliseconds
+     */
+    public long currentTime() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Gets the network shared by rules compiled for this engine
+     * @return The condition network
+     */
+    public ConditionNetwork getConditionNetwork() {
+        return conditionNetwork;
+    }
+
+    /**
+     * Gets the sliding windows sampled by this engine on every cycle
+     * @return The temporal windows
+     */
+    public TemporalWindows getTemporalWindows() {
+        return temporalWindows;
+    }
+
     public List<AutomationRule> getRules() {
         return new ArrayList<>(rules);
     }
@@ -1,5 +1,7 @@
 package automation;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.function.BooleanSupplier;
 
 /**
@@ -11,6 +13,19 @@ public class AutomationRule {
     private Runnable action;            // The THEN part
     private boolean isEnabled;
 
+    // Firing control, all primitive state so evaluation never allocates
+    private FiringMode firingMode = FiringMode.LEVEL;
+    private boolean lastConditionState;
+    private boolean pendingEdge;        // edge held back by cooldown or rate limit
+    private long cooldownMillis;
+    private long lastFiredAt = Long.MIN_VALUE;
+    private int maxFiringsPerWindow;    // 0 = no rate limit
+    private long rateWindowMillis;
+    private long rateWindowStart;
+    private int firingsInWindow;
+    private long executionCount;
+    private long suppressedCount;
+
     /**
      * Constructor for AutomationRule
      * @param ruleName Name of the rule
@@ -37,13 +52,102 @@ public class AutomationRule {
      * @return true if action was executed, false otherwise
      */
     public boolean executeIfTrue() {
-        if (evaluate()) {
-            action.run();
-            return true;
+        return executeIfTrue(System.currentTimeMillis());
+    }
+
+    /**
+     * Evaluates the condition and executes the action if the firing mode,
+     * cooldown and rate limit allow it
+     * @param now Current engine time in milliseconds
+     * @return true if action was executed, false otherwise
+     */
+    public boolean executeIfTrue(long now) {
+        boolean state = evaluate();
+        boolean previous = lastConditionState;
+        lastConditionState = state;
+
+        boolean triggered;
+        switch (firingMode) {
+            case RISING_EDGE:
+                // A held-back edge stays pending only while the condition still holds
+                pendingEdge &= state;
+                triggered = (state && !previous) || pendingEdge;
+                break;
+            case FALLING_EDGE:
+                pendingEdge &= isEnabled && !state;
+                triggered = (isEnabled && !state && previous) || pendingEdge;
+                break;
+            default:
+                triggered = state;
+        }
+        if (!triggered) {
+            return false;
+        }
+
+        if (cooldownMillis > 0 && lastFiredAt != Long.MIN_VALUE && now - lastFiredAt < cooldownMillis) {
+            return suppress();
+        }
+        if (maxFiringsPerWindow > 0) {
+            if (now - rateWindowStart >= rateWindowMillis) {
+                rateWindowStart = now;
+                firingsInWindow = 0;
+            }
+            if (firingsInWindow >= maxFiringsPerWindow) {
+                return suppress();
+            }
+            firingsInWindow++;
         }
+
+        pendingEdge = false;
+        action.run();
+        lastFiredAt = now;
+        executionCount++;
+        return true;
+    }
+
+    /**
+     * Records a trigger dropped by the cooldown or rate limit. An edge stays
+     * pending so it fires once allowed, and is counted only the first time.
+     */
+    private boolean suppress() {
+        if (!pendingEdge) {
+            suppressedCount++;
+        }
+        pendingEdge = firingMode != FiringMode.LEVEL;
         return false;
     }
 
+    /**
+     * Sets when the action runs relative to the condition
+     * @param firingMode LEVEL (default), RISING_EDGE or FALLING_EDGE
+     */
+    public void setFiringMode(FiringMode firingMode) {
+        this.firingMode = firingMode;
+        this.pendingEdge = false;
+    }
+
+    /**
+     * Sets the minimum time between two executions of the action. In an edge
+     * mode, an edge held back by the cooldown fires once it expires if the
+     * condition still holds.
+     * @param cooldownMillis Cooldown in milliseconds (0 disables it)
+     */
+    public void setCooldown(long cooldownMillis) {
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * Limits how often the action may run
+     * @param maxFirings Maximum executions per window (0 disables the limit)
+     * @param windowMillis Window length in milliseconds
+     */
+    public void setRateLimit(int maxFirings, long windowMillis) {
+        this.maxFiringsPerWindow = maxFirings;
+        this.rateWindowMillis = windowMillis;
+        this.rateWindowStart = Long.MIN_VALUE / 2;
+        this.firingsInWindow = 0;
+    }
+
     /**
      * Enables the rule
      */
@@ -69,8 +173,42 @@ public class AutomationRule {
         return isEnabled;
     }
 
+    public BooleanSupplier getCondition() {
+        return condition;
+    }
+
+    public FiringMode getFiringMode() {
+        return firingMode;
+    }
+
+    /**
+     * @return Number of times the action has run
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return Number of triggers dropped by the cooldown or rate limit
+     */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * Gets the devices the condition reads, when it was compiled from an expression
+     * @return Device IDs, or an empty set for opaque lambda conditions
+     */
+    public Set<String> getReadDevices() {
+        if (condition instanceof CompiledCondition) {
+            return ((CompiledCondition) condition).getReadDevices();
+        }
+        return Collections.emptySet();
+    }
+
     @Override
     public String toString() {
-        return String.format("Rule: %s [%s]", ruleName, isEnabled ? "ENABLED" : "DISABLED");
+        return String.format("Rule: %s [%s]%s", ruleName, isEnabled ? "ENABLED" : "DISABLED",
+                firingMode == FiringMode.LEVEL ? "" : " (" + firingMode + ")");
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package automation;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A rule condition compiled from the rule expression language.
+ * Can be passed to AutomationRule like any other BooleanSupplier.
+ */
+public class CompiledCondition implements BooleanSupplier {
+    private final String source;
+    private final Expr root;
+    private final Set<String> readDevices;
+
+    CompiledCondition(String source, Expr root, Set<String> readDevices) {
+        this.source = source;
+        this.root = root;
+        this.readDevices = Collections.unmodifiableSet(readDevices);
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        return root.evalBoolean();
+    }
+
+    /**
+     * @return The expression as written
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return The expression after constant folding, in canonical form
+     */
+    public String getCompiledForm() {
+        return root.toString();
+    }
+
+    /**
+     * @return IDs of the devices the condition reads ("home" if it reads home-wide values)
+     */
+    public Set<String> getReadDevices() {
+        return readDevices;
+    }
+
+    /**
+     * @return true if the condition folded to a constant
+     */
+    public boolean isConstant() {
+        return root.isConstant();
+    }
+
+    Expr getRoot() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,503 @@
+package automation;
+
+import controller.CentralController;
+import devices.DeviceProperty;
+import devices.Light;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import devices.SmartTV;
+import devices.Thermostat;
+import exceptions.DeviceNotFoundException;
+import exceptions.InvalidRuleException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Compiles rule expressions such as "S001.motion && L001.off" or
+ * "home.watts > 200" into CompiledConditions.
+ *
+ * Grammar:
+ * <pre>
+ *   expr    := and ('||' and)*
+ *   and     := unary ('&&' unary)*
+ *   unary   := '!' unary | compare
+ *   compare := sum (('<' | '<=' | '>' | '>=' | '==' | '!=') sum)?
+ *   sum     := product (('+' | '-') product)*
+ *   product := factor (('*' | '/') factor)*
+ *   factor  := NUMBER | 'true' | 'false' | '-' factor | REF | call | '(' expr ')'
+ *   REF     := deviceId '.' property | 'home.watts'
+ *   call    := ('held' | 'avg' | 'min' | 'max') '(' expr ',' DURATION ')'
+ *   DURATION := NUMBER ('ms' | 's' | 'm' | 'h')
+ * </pre>
+ * Device properties: on, off, watts (all devices); brightness (Light);
+ * temperature, target (Thermostat); channel, volume, streaming (SmartTV);
+ * motion, sensitivity (MotionSensor).
+ *
+ * Temporal functions need the engine's TemporalWindows: held(cond, 10m) is
+ * true once cond has been true for 10 minutes, so "no motion for 10 minutes"
+ * is held(!S001.motion, 10m); avg, min and max aggregate a numeric value over
+ * a sliding window, e.g. avg(home.watts, 5m) > 200.
+ *
+ * Device IDs are resolved once at compile time and constant sub-expressions
+ * are folded, so evaluating a condition does no lookups. When compiled with a
+ * ConditionNetwork, every sub-expression is shared with the other rules
+ * compiled against the same network.
+ */
+public class ConditionCompiler {
+    private final CentralController controller;
+    private final ConditionNetwork network;
+    private final TemporalWindows windows;
+
+    // Parser state for the expression being compiled
+    private List<String> tokens;
+    private int position;
+    private String source;
+
+    public ConditionCompiler(CentralController controller) {
+        this(controller, null, null);
+    }
+
+    /**
+     * Constructor for a compiler that shares condition nodes through a network
+     * @param controller Controller used to resolve devices and home values
+     * @param network Network to intern nodes into (usually the engine's)
+     */
+    public ConditionCompiler(CentralController controller, ConditionNetwork network) {
+        this(controller, network, null);
+    }
+
+    /**
+     * Constructor for a compiler sharing the engine's condition network and
+     * temporal windows, so expressions may use held, avg, min and max
+     * @param controller Controller used to resolve devices and home values
+     * @param engine Engine that will evaluate the compiled conditions
+     */
+    public ConditionCompiler(CentralController controller, AutomationEngine engine) {
+        this(controller, engine.getConditionNetwork(), engine.getTemporalWindows());
+    }
+
+    private ConditionCompiler(CentralController controller, ConditionNetwork network, TemporalWindows windows) {
+        this.controller = controller;
+        this.network = network;
+        this.windows = windows;
+    }
+
+    /**
+     * Compiles an expression
+     * @param expression The rule expression
+     * @return The compiled condition
+     * @throws InvalidRuleException if the expression is malformed, mistyped or references unknown devices
+     */
+    public synchronized CompiledCondition compile(String expression) throws InvalidRuleException {
+        this.source = expression;
+        this.tokens = tokenize(expression);
+        this.position = 0;
+
+        Expr root = parseOr();
+        if (position < tokens.size()) {
+            throw error("Unexpected '" + tokens.get(position) + "'");
+        }
+        requireType(root, Expr.Type.BOOLEAN);
+
+        Set<String> readDevices = new LinkedHashSet<>();
+        root.collectDevices(readDevices);
+        return new CompiledCondition(expression, root, readDevices);
+    }
+
+    /**
+     * Compiles a numeric expression such as "home.watts" or "T001.temperature - T001.target",
+     * e.g. to feed a Hysteresis condition
+     * @param expression The numeric expression
+     * @return Supplier evaluating the expression
+     * @throws InvalidRuleException if the expression is malformed, not numeric or references unknown devices
+     */
+    public synchronized DoubleSupplier compileValue(String expression) throws InvalidRuleException {
+        this.source = expression;
+        this.tokens = tokenize(expression);
+        this.position = 0;
+
+        Expr root = parseSum();
+        if (position < tokens.size()) {
+            throw error("Unexpected '" + tokens.get(position) + "'");
+        }
+        requireType(root, Expr.Type.NUMBER);
+        return new CompiledValue(root);
+    }
+
+    // ---- Tokenizer ----
+
+    private List<String> tokenize(String text) throws InvalidRuleException {
+        List<String> result = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                int start = i;
+                while (i < text.length()
+                        && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_' || text.charAt(i) == '.')) {
+                    i++;
+                }
+                result.add(text.substring(start, i));
+            } else if (i + 1 < text.length() && isTwoCharOperator(text.substring(i, i + 2))) {
+                result.add(text.substring(i, i + 2));
+                i += 2;
+            } else if ("()!<>+-*/,".indexOf(c) >= 0) {
+                result.add(String.valueOf(c));
+                i++;
+            } else {
+                throw new InvalidRuleException("Unexpected character '" + c + "' in: " + text);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isTwoCharOperator(String op) {
+        return op.equals("&&") || op.equals("||") || op.equals("<=") || op.equals(">=")
+                || op.equals("==") || op.equals("!=");
+    }
+
+    // ---- Parser (with constant folding as nodes are built) ----
+
+    private Expr parseOr() throws InvalidRuleException {
+        Expr left = parseAnd();
+        while (accept("||")) {
+            Expr right = parseAnd();
+            requireType(left, Expr.Type.BOOLEAN);
+            requireType(right, Expr.Type.BOOLEAN);
+            left = foldOr(left, right);
+        }
+        return left;
+    }
+
+    private Expr parseAnd() throws InvalidRuleException {
+        Expr left = parseUnary();
+        while (accept("&&")) {
+            Expr right = parseUnary();
+            requireType(left, Expr.Type.BOOLEAN);
+            requireType(right, Expr.Type.BOOLEAN);
+            left = foldAnd(left, right);
+        }
+        return left;
+    }
+
+    private Expr parseUnary() throws InvalidRuleException {
+        if (accept("!")) {
+            Expr operand = parseUnary();
+            requireType(operand, Expr.Type.BOOLEAN);
+            if (operand.isConstant()) {
+                return Expr.BoolConst.of(!operand.evalBoolean());
+            }
+            Expr unshared = ConditionNetwork.unwrap(operand);
+            if (unshared instanceof Expr.Not) {
+                return ((Expr.Not) unshared).operand;
+            }
+            return share(new Expr.Not(operand));
+        }
+        return parseCompare();
+    }
+
+    private Expr parseCompare() throws InvalidRuleException {
+        Expr left = parseSum();
+        String op = peek();
+        if (op != null && (op.equals("<") || op.equals("<=") || op.equals(">") || op.equals(">=")
+                || op.equals("==") || op.equals("!="))) {
+            position++;
+            Expr right = parseSum();
+            requireType(left, Expr.Type.NUMBER);
+            requireType(right, Expr.Type.NUMBER);
+            if (left.isConstant() && right.isConstant()) {
+                return Expr.BoolConst.of(Expr.Compare.compare(Expr.Compare.opCode(op),
+                        left.evalNumber(), right.evalNumber()));
+            }
+            return share(new Expr.Compare(op, left, right));
+        }
+        return left;
+    }
+
+    private Expr parseSum() throws InvalidRuleException {
+        Expr left = parseProduct();
+        while ("+".equals(peek()) || "-".equals(peek())) {
+            char op = tokens.get(position++).charAt(0);
+            left = arithmetic(op, left, parseProduct());
+        }
+        return left;
+    }
+
+    private Expr parseProduct() throws InvalidRuleException {
+        Expr left = parseFactor();
+        while ("*".equals(peek()) || "/".equals(peek())) {
+            char op = tokens.get(position++).charAt(0);
+            left = arithmetic(op, left, parseFactor());
+        }
+        return left;
+    }
+
+    private Expr parseFactor() throws InvalidRuleException {
+        String token = peek();
+        if (token == null) {
+            throw error("Unexpected end of expression");
+        }
+        position++;
+        if (token.equals("(")) {
+            Expr inner = parseOr();
+            if (!accept(")")) {
+                throw error("Missing ')'");
+            }
+            return inner;
+        }
+        if (token.equals("-")) {
+            Expr operand = parseFactor();
+            return arithmetic('-', new Expr.NumConst(0), operand);
+        }
+        if (token.equals("true") || token.equals("false")) {
+            return Expr.BoolConst.of(token.equals("true"));
+        }
+        if (Character.isDigit(token.charAt(0))) {
+            try {
+                return new Expr.NumConst(Double.parseDouble(token));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + token + "'");
+            }
+        }
+        if ("(".equals(peek()) && token.indexOf('.') < 0) {
+            position++;
+            return parseCall(token);
+        }
+        return resolveReference(token);
+    }
+
+    private Expr parseCall(String function) throws InvalidRuleException {
+        SlidingWindow.Kind kind = null;
+        switch (function) {
+            case "held":
+                break;
+            case "avg":
+                kind = SlidingWindow.Kind.AVERAGE;
+                break;
+            case "min":
+                kind = SlidingWindow.Kind.MINIMUM;
+                break;
+            case "max":
+                kind = SlidingWindow.Kind.MAXIMUM;
+                break;
+            default:
+                throw error("Unknown function '" + function + "'");
+        }
+        if (windows == null) {
+            throw error("Function '" + function + "' needs a compiler created for an AutomationEngine");
+        }
+
+        Expr operand = parseOr();
+        if (!accept(",")) {
+            throw error("Expected ',' and a duration in " + function + "()");
+        }
+        long duration = parseDuration(peek());
+        position++;
+        if (!accept(")")) {
+            throw error("Missing ')'");
+        }
+
+        if (kind == null) {
+            requireType(operand, Expr.Type.BOOLEAN);
+            return share(new Expr.HeldRef(operand, duration, windows));
+        }
+        requireType(operand, Expr.Type.NUMBER);
+        if (operand.isConstant()) {
+            return operand;
+        }
+        return share(new Expr.WindowRef(function, kind, operand, duration, windows));
+    }
+
+    private long parseDuration(String token) throws InvalidRuleException {
+        if (token == null) {
+            throw error("Expected a duration such as 500ms, 30s, 10m or 2h");
+        }
+        int unitStart = 0;
+        while (unitStart < token.length()
+                && (Character.isDigit(token.charAt(unitStart)) || token.charAt(unitStart) == '.')) {
+            unitStart++;
+        }
+        long scale;
+        switch (token.substring(unitStart)) {
+            case "ms": scale = 1L; break;
+            case "s": scale = 1000L; break;
+            case "m": scale = 60_000L; break;
+            case "h": scale = 3_600_000L; break;
+            default: throw error("Expected a duration such as 500ms, 30s, 10m or 2h but found '" + token + "'");
+        }
+        try {
+            long millis = Math.round(Double.parseDouble(token.substring(0, unitStart)) * scale);
+            if (millis <= 0) {
+                throw error("Duration must be positive: '" + token + "'");
+            }
+            return millis;
+        } catch (NumberFormatException e) {
+            throw error("Invalid duration '" + token + "'");
+        }
+    }
+
+    private Expr arithmetic(char op, Expr left, Expr right) throws InvalidRuleException {
+        requireType(left, Expr.Type.NUMBER);
+        requireType(right, Expr.Type.NUMBER);
+        Expr node = new Expr.Arithmetic(op, left, right);
+        if (left.isConstant() && right.isConstant()) {
+            return new Expr.NumConst(node.evalNumber());
+        }
+        return share(node);
+    }
+
+    private Expr foldAnd(Expr left, Expr right) {
+        if (left.isConstant()) {
+            return left.evalBoolean() ? right : left;
+        }
+        if (right.isConstant()) {
+            return right.evalBoolean() ? left : right;
+        }
+        if (network != null && left.toString().compareTo(right.toString()) > 0) {
+            return share(new Expr.And(right, left)); // Canonical operand order so "a && b" == "b && a"
+        }
+        return share(new Expr.And(left, right));
+    }
+
+    private Expr foldOr(Expr left, Expr right) {
+        if (left.isConstant()) {
+            return left.evalBoolean() ? left : right;
+        }
+        if (right.isConstant()) {
+            return right.evalBoolean() ? right : left;
+        }
+        if (network != null && left.toString().compareTo(right.toString()) > 0) {
+            return share(new Expr.Or(right, left));
+        }
+        return share(new Expr.Or(left, right));
+    }
+
+    private Expr share(Expr expr) {
+        return network != null ? network.intern(expr) : expr;
+    }
+
+    // ---- Name resolution ----
+
+    private Expr resolveReference(String reference) throws InvalidRuleException {
+        int dot = reference.indexOf('.');
+        if (dot <= 0 || dot == reference.length() - 1) {
+            throw error("Expected device.property but found '" + reference + "'");
+        }
+        String target = reference.substring(0, dot);
+        String property = reference.substring(dot + 1).toLowerCase();
+
+        if (target.equals("home")) {
+            if (property.equals("watts")) {
+                return share(new Expr.HomeWattsRef(controller));
+            }
+            throw error("Unknown home property '" + property + "'");
+        }
+
+        SmartDevice device;
+        try {
+            device = controller.findDevice(target);
+        } catch (DeviceNotFoundException e) {
+            throw error(e.getMessage());
+        }
+
+        switch (property) {
+            case "on":
+                return share(new Expr.PowerRef(device, true));
+            case "off":
+                return share(new Expr.PowerRef(device, false));
+            case "watts":
+                return share(new Expr.WattsRef(device));
+            case "brightness":
+                if (device instanceof Light) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.BRIGHTNESS, property, Expr.Type.NUMBER));
+                }
+                break;
+            case "temperature":
+                if (device instanceof Thermostat) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.CURRENT_TEMPERATURE, property, Expr.Type.NUMBER));
+                }
+                break;
+            case "target":
+                if (device instanceof Thermostat) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.TARGET_TEMPERATURE, property, Expr.Type.NUMBER));
+                }
+                break;
+            case "channel":
+                if (device instanceof SmartTV) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.CHANNEL, property, Expr.Type.NUMBER));
+                }
+                break;
+            case "volume":
+                if (device instanceof SmartTV) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.VOLUME, property, Expr.Type.NUMBER));
+                }
+                break;
+            case "streaming":
+                if (device instanceof SmartTV) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.STREAMING, property, Expr.Type.BOOLEAN));
+                }
+                break;
+            case "motion":
+                if (device instanceof MotionSensor) {
+                    return share(new Expr.MotionRef((MotionSensor) device));
+                }
+                break;
+            case "sensitivity":
+                if (device instanceof MotionSensor) {
+                    return share(new Expr.PropertyRef(device, DeviceProperty.SENSITIVITY, property, Expr.Type.NUMBER));
+                }
+                break;
+            default:
+                break;
+        }
+        throw error(device.getClass().getSimpleName() + " " + target + " has no property '" + property + "'");
+    }
+
+    /**
+     * A value compiled from an expression, keeping its tree so the engine can
+     * find the shared nodes and windows it uses
+     */
+    static final class CompiledValue implements DoubleSupplier {
+        final Expr root;
+
+        CompiledValue(Expr root) {
+            this.root = root;
+        }
+
+        @Override
+        public double getAsDouble() {
+            return root.evalNumber();
+        }
+    }
+
+    // ---- Helpers ----
+
+    private String peek() {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private boolean accept(String token) {
+        if (token.equals(peek())) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void requireType(Expr expr, Expr.Type type) throws InvalidRuleException {
+        if (expr.type != type) {
+            throw error("Expected a " + type.name().toLowerCase() + " but '" + expr + "' is a "
+                    + expr.type.name().toLowerCase());
+        }
+    }
+
+    private InvalidRuleException error(String message) {
+        return new InvalidRuleException(message + " in: " + source);
+    }
+}
@@ -0,0 +1,276 @@
+package automation;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Shared condition network for automation rules.
+ *
+ * Conditions compiled with a network are split into nodes that are
+ * deduplicated by their canonical form, so "home.watts > 200" used by a
+ * hundred rules is one node. Each node caches its result until either the
+ * engine starts a new evaluation cycle or a watched device changes state, so
+ * evaluation cost grows with the number of distinct conditions rather than
+ * the number of rules. Rule conditions are the terminal nodes of the network.
+ */
+public class ConditionNetwork implements DeviceStateListener {
+    private final Map<String, SharedNode> nodes = new HashMap<>();
+    private final AtomicLong stateVersion = new AtomicLong();
+    private long cycle;
+    private long evaluations;
+    private long cacheHits;
+
+    /**
+     * Starts a new evaluation cycle, invalidating every cached result
+     */
+    public void beginCycle() {
+        cycle++;
+    }
+
+    /**
+     * Invalidates cached results whenever a device of the home changes,
+     * so rule actions within a cycle are seen by the rules evaluated after them
+     * @param home The home whose devices to watch
+     */
+    public void watch(Home home) {
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                device.removeStateListener(this);
+                device.addStateListener(this);
+            }
+        }
+    }
+
+    @Override
+    public void onStateChanged(SmartDevice device, DeviceProperty property) {
+        stateVersion.incrementAndGet();
+    }
+
+    /**
+     * Shares an opaque boolean condition under a key, for lambda-based rules
+     * @param key Identifies the condition; equal keys must mean equal conditions
+     * @param condition The condition to share
+     * @return A cached view of the condition, shared by all callers using the same key
+     */
+    public synchronized BooleanSupplier share(String key, BooleanSupplier condition) {
+        SharedNode node = nodes.get(key);
+        if (node == null) {
+            node = new SharedNode(new LambdaBoolean(key, condition), this);
+            nodes.put(key, node);
+        }
+        SharedNode shared = node;
+        return shared::evalBoolean;
+    }
+
+    /**
+     * Shares an opaque numeric value under a key (e.g. total watts)
+     * @param key Identifies the value; equal keys must mean equal values
+     * @param value The value to share
+     * @return A cached view of the value, shared by all callers using the same key
+     */
+    public synchronized DoubleSupplier shareValue(String key, DoubleSupplier value) {
+        SharedNode node = nodes.get(key);
+        if (node == null) {
+            node = new SharedNode(new LambdaNumber(key, value), this);
+            nodes.put(key, node);
+        }
+        SharedNode shared = node;
+        return shared::evalNumber;
+    }
+
+    /**
+     * Interns a compiled node: returns the existing shared node with the same
+     * canonical form, or registers this one
+     */
+    synchronized Expr intern(Expr expr) {
+        if (expr.isConstant() || expr instanceof SharedNode) {
+            return expr;
+        }
+        String key = expr.toString();
+        SharedNode node = nodes.get(key);
+        if (node == null) {
+            node = new SharedNode(expr, this);
+            nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Counts a rule using a node, registering it again if the last rule using
+     * it was removed meanwhile
+     */
+    synchronized void acquire(SharedNode node) {
+        nodes.putIfAbsent(node.key, node);
+        node.references++;
+    }
+
+    /**
+     * Releases a rule's use of a node, dropping it once no rule uses it
+     */
+    synchronized void release(SharedNode node) {
+        if (node.references > 0 && --node.references == 0) {
+            nodes.remove(node.key, node);
+        }
+    }
+
+    /**
+     * @return The node a shared node wraps, or the node itself if it is not shared
+     */
+    static Expr unwrap(Expr expr) {
+        return expr instanceof SharedNode ? ((SharedNode) expr).inner : expr;
+    }
+
+    /**
+     * @return Number of distinct condition nodes
+     */
+    public synchronized int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * @return Number of times a node was actually computed
+     */
+    public long getEvaluationCount() {
+        return evaluations;
+    }
+
+    /**
+     * @return Number of times a cached node result was reused
+     */
+    public long getCacheHitCount() {
+        return cacheHits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Condition network: %d node(s), %d evaluation(s), %d cache hit(s)",
+                getNodeCount(), evaluations, cacheHits);
+    }
+
+    /**
+     * Deduplicated node caching its inner node's result per cycle and state version
+     */
+    static final class SharedNode extends Expr {
+        private final Expr inner;
+        private final ConditionNetwork network;
+        private final String key;
+        private int references;
+        private long cachedCycle = -1;
+        private long cachedVersion = -1;
+        private boolean booleanValue;
+        private double numberValue;
+
+        SharedNode(Expr inner, ConditionNetwork network) {
+            super(inner.type);
+            this.inner = inner;
+            this.network = network;
+            this.key = inner.toString();
+        }
+
+        private boolean isFresh() {
+            if (cachedCycle == network.cycle && cachedVersion == network.stateVersion.get()) {
+                network.cacheHits++;
+                return true;
+            }
+            cachedCycle = network.cycle;
+            cachedVersion = network.stateVersion.get();
+            network.evaluations++;
+            return false;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            if (!isFresh()) {
+                booleanValue = inner.evalBoolean();
+            }
+            return booleanValue;
+        }
+
+        @Override
+        double evalNumber() {
+            if (!isFresh()) {
+                numberValue = inner.evalNumber();
+            }
+            return numberValue;
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            inner.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            if (shared.add(this)) {
+                inner.collectShared(shared);
+            }
+        }
+
+        @Override
+        void acquire() {
+            network.acquire(this);
+        }
+
+        @Override
+        void release() {
+            network.release(this);
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private static final class LambdaBoolean extends Expr {
+        private final String key;
+        private final BooleanSupplier condition;
+
+        LambdaBoolean(String key, BooleanSupplier condition) {
+            super(Type.BOOLEAN);
+            this.key = key;
+            this.condition = condition;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return condition.getAsBoolean();
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private static final class LambdaNumber extends Expr {
+        private final String key;
+        private final DoubleSupplier value;
+
+        LambdaNumber(String key, DoubleSupplier value) {
+            super(Type.NUMBER);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        double evalNumber() {
+            return value.getAsDouble();
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package automation;
+
+import controller.CentralController;
+import devices.DeviceProperty;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import interfaces.EnergyConsumer;
+
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Node of a compiled rule expression. Every node is bound to its devices
+ * at compile time, so evaluation is plain field access and arithmetic.
+ */
+abstract class Expr {
+    enum Type { BOOLEAN, NUMBER }
+
+    final Type type;
+
+    Expr(Type type) {
+        this.type = type;
+    }
+
+    boolean evalBoolean() {
+        throw new IllegalStateException("Not a boolean expression: " + this);
+    }
+
+    double evalNumber() {
+        throw new IllegalStateException("Not a numeric expression: " + this);
+    }
+
+    boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Adds the IDs of devices this node reads ("home" for home-wide values)
+     */
+    void collectDevices(Set<String> deviceIds) {
+    }
+
+    /**
+     * Adds the shared nodes and temporal windows in this subtree, which a rule
+     * using it acquires and releases (see AutomationEngine)
+     */
+    void collectShared(Set<Expr> shared) {
+    }
+
+    /**
+     * Counts one more rule using this node; no-op unless it is shared
+     */
+    void acquire() {
+    }
+
+    /**
+     * Counts one rule fewer using this node, dropping it once no rule does
+     */
+    void release() {
+    }
+
+    /**
+     * Canonical source form, equal for structurally equal expressions
+     */
+    @Override
+    public abstract String toString();
+
+    // ---- Constants ----
+
+    static final class BoolConst extends Expr {
+        static final BoolConst TRUE = new BoolConst(true);
+        static final BoolConst FALSE = new BoolConst(false);
+        private final boolean value;
+
+        private BoolConst(boolean value) {
+            super(Type.BOOLEAN);
+            this.value = value;
+        }
+
+        static BoolConst of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Boolean.toString(value);
+        }
+    }
+
+    static final class NumConst extends Expr {
+        private final double value;
+
+        NumConst(double value) {
+            super(Type.NUMBER);
+            this.value = value;
+        }
+
+        @Override
+        double evalNumber() {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return value == Math.rint(value) && Math.abs(value) < 1e15
+                    ? Long.toString((long) value) : Double.toString(value);
+        }
+    }
+
+    // ---- Device and home references ----
+
+    /** device.on / device.off */
+    static final class PowerRef extends Expr {
+        private final SmartDevice device;
+        private final boolean expectOn;
+
+        PowerRef(SmartDevice device, boolean expectOn) {
+            super(Type.BOOLEAN);
+            this.device = device;
+            this.expectOn = expectOn;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return device.isOn() == expectOn;
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            deviceIds.add(device.getDeviceId());
+        }
+
+        @Override
+        public String toString() {
+            return device.getDeviceId() + (expectOn ? ".on" : ".off");
+        }
+    }
+
+    /** sensor.motion */
+    static final class MotionRef extends Expr {
+        private final MotionSensor sensor;
+
+        MotionRef(MotionSensor sensor) {
+            super(Type.BOOLEAN);
+            this.sensor = sensor;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return sensor.isMotionDetected();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            deviceIds.add(sensor.getDeviceId());
+        }
+
+        @Override
+        public String toString() {
+            return sensor.getDeviceId() + ".motion";
+        }
+    }
+
+    /** device.watts */
+    static final class WattsRef extends Expr {
+        private final SmartDevice device;
+        private final EnergyConsumer consumer;
+
+        WattsRef(SmartDevice device) {
+            super(Type.NUMBER);
+            this.device = device;
+            this.consumer = device instanceof EnergyConsumer ? (EnergyConsumer) device : null;
+        }
+
+        @Override
+        double evalNumber() {
+            return consumer != null ? consumer.getEnergyConsumption() : 0;
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            deviceIds.add(device.getDeviceId());
+        }
+
+        @Override
+        public String toString() {
+            return device.getDeviceId() + ".watts";
+        }
+    }
+
+    /** Numeric or boolean device property read through getPropertyValue */
+    static final class PropertyRef extends Expr {
+        private final SmartDevice device;
+        private final DeviceProperty property;
+        private final String name;
+
+        PropertyRef(SmartDevice device, DeviceProperty property, String name, Type type) {
+            super(type);
+            this.device = device;
+            this.property = property;
+            this.name = name;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return device.getPropertyValue(property) != 0;
+        }
+
+        @Override
+        double evalNumber() {
+            return device.getPropertyValue(property);
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            deviceIds.add(device.getDeviceId());
+        }
+
+        @Override
+        public String toString() {
+            return device.getDeviceId() + "." + name;
+        }
+    }
+
+    /** home.watts */
+    static final class HomeWattsRef extends Expr {
+        private final CentralController controller;
+
+        HomeWattsRef(CentralController controller) {
+            super(Type.NUMBER);
+            this.controller = controller;
+        }
+
+        @Override
+        double evalNumber() {
+            return controller.getTotalEnergyConsumption();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            deviceIds.add("home");
+        }
+
+        @Override
+        public String toString() {
+            return "home.watts";
+        }
+    }
+
+    // ---- Temporal functions ----
+
+    /** held(condition, duration): true once the condition has held for the duration */
+    static final class HeldRef extends Expr {
+        final Expr operand;
+        final long durationMillis;
+        private final TemporalWindows windows;
+        private final HeldCondition held;
+
+        HeldRef(Expr operand, long durationMillis, TemporalWindows windows) {
+            super(Type.BOOLEAN);
+            this.operand = operand;
+            this.durationMillis = durationMillis;
+            this.windows = windows;
+            this.held = windows.heldFor(toString(), operand::evalBoolean, durationMillis, lastMotion(operand));
+        }
+
+        /**
+         * For held(!sensor.motion, ...), when the sensor last detected motion, so
+         * "no motion for 10m" counts from then rather than from the first sample
+         */
+        private static LongSupplier lastMotion(Expr operand) {
+            Expr inner = ConditionNetwork.unwrap(operand);
+            if (!(inner instanceof Not)) {
+                return null;
+            }
+            Expr read = ConditionNetwork.unwrap(((Not) inner).operand);
+            if (!(read instanceof MotionRef)) {
+                return null;
+            }
+            MotionSensor sensor = ((MotionRef) read).sensor;
+            return () -> sensor.getLastDetectionTime() > 0 ? sensor.getLastDetectionTime() : Long.MIN_VALUE;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return held.getAsBoolean();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            operand.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            shared.add(this);
+            operand.collectShared(shared);
+        }
+
+        @Override
+        void acquire() {
+            windows.acquire(toString(), held);
+        }
+
+        @Override
+        void release() {
+            windows.release(toString(), held);
+        }
+
+        @Override
+        public String toString() {
+            return "held(" + operand + ", " + durationMillis + "ms)";
+        }
+    }
+
+    /** avg/min/max(value, duration): aggregate of a value over a sliding window */
+    static final class WindowRef extends Expr {
+        final String function;
+        final Expr operand;
+        final long durationMillis;
+        private final TemporalWindows windows;
+        private final SlidingWindow window;
+
+        WindowRef(String function, SlidingWindow.Kind kind, Expr operand, long durationMillis,
+                  TemporalWindows windows) {
+            super(Type.NUMBER);
+            this.function = function;
+            this.operand = operand;
+            this.durationMillis = durationMillis;
+            this.windows = windows;
+            String key = toString();
+            switch (kind) {
+                case MINIMUM:
+                    this.window = windows.minimum(key, operand::evalNumber, durationMillis);
+                    break;
+                case MAXIMUM:
+                    this.window = windows.maximum(key, operand::evalNumber, durationMillis);
+                    break;
+                default:
+                    this.window = windows.average(key, operand::evalNumber, durationMillis);
+                    break;
+            }
+        }
+
+        @Override
+        double evalNumber() {
+            return window.getAsDouble();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            operand.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            shared.add(this);
+            operand.collectShared(shared);
+        }
+
+        @Override
+        void acquire() {
+            windows.acquire(toString(), window);
+        }
+
+        @Override
+        void release() {
+            windows.release(toString(), window);
+        }
+
+        @Override
+        public String toString() {
+            return function + "(" + operand + ", " + durationMillis + "ms)";
+        }
+    }
+
+    // ---- Operators ----
+
+    static final class Not extends Expr {
+        final Expr operand;
+
+        Not(Expr operand) {
+            super(Type.BOOLEAN);
+            this.operand = operand;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return !operand.evalBoolean();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            operand.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            operand.collectShared(shared);
+        }
+
+        @Override
+        public String toString() {
+            return "!" + operand;
+        }
+    }
+
+    static final class And extends Expr {
+        final Expr left;
+        final Expr right;
+
+        And(Expr left, Expr right) {
+            super(Type.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return left.evalBoolean() && right.evalBoolean();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            left.collectDevices(deviceIds);
+            right.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            left.collectShared(shared);
+            right.collectShared(shared);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " && " + right + ")";
+        }
+    }
+
+    static final class Or extends Expr {
+        final Expr left;
+        final Expr right;
+
+        Or(Expr left, Expr right) {
+            super(Type.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return left.evalBoolean() || right.evalBoolean();
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            left.collectDevices(deviceIds);
+            right.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            left.collectShared(shared);
+            right.collectShared(shared);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " || " + right + ")";
+        }
+    }
+
+    /** Comparison of two numbers; op is one of < <= > >= == != */
+    static final class Compare extends Expr {
+        final String op;
+        final Expr left;
+        final Expr right;
+        private final int opCode;
+
+        Compare(String op, Expr left, Expr right) {
+            super(Type.BOOLEAN);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.opCode = opCode(op);
+        }
+
+        static int opCode(String op) {
+            switch (op) {
+                case "<": return 0;
+                case "<=": return 1;
+                case ">": return 2;
+                case ">=": return 3;
+                case "==": return 4;
+                case "!=": return 5;
+                default: throw new IllegalArgumentException("Unknown comparison " + op);
+            }
+        }
+
+        static boolean compare(int opCode, double a, double b) {
+            switch (opCode) {
+                case 0: return a < b;
+                case 1: return a <= b;
+                case 2: return a > b;
+                case 3: return a >= b;
+                case 4: return a == b;
+                default: return a != b;
+            }
+        }
+
+        @Override
+        boolean evalBoolean() {
+            return compare(opCode, left.evalNumber(), right.evalNumber());
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            left.collectDevices(deviceIds);
+            right.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            left.collectShared(shared);
+            right.collectShared(shared);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + op + " " + right + ")";
+        }
+    }
+
+    /** Arithmetic on two numbers; op is one of + - * / */
+    static final class Arithmetic extends Expr {
+        final char op;
+        final Expr left;
+        final Expr right;
+
+        Arithmetic(char op, Expr left, Expr right) {
+            super(Type.NUMBER);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evalNumber() {
+            double a = left.evalNumber();
+            double b = right.evalNumber();
+            switch (op) {
+                case '+': return a + b;
+                case '-': return a - b;
+                case '*': return a * b;
+                default: return a / b;
+            }
+        }
+
+        @Override
+        void collectDevices(Set<String> deviceIds) {
+            left.collectDevices(deviceIds);
+            right.collectDevices(deviceIds);
+        }
+
+        @Override
+        void collectShared(Set<Expr> shared) {
+            left.collectShared(shared);
+            right.collectShared(shared);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + op + " " + right + ")";
+        }
+    }
+}
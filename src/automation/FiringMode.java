@@ -0,0 +1,10 @@
+package automation;
+
+/**
+ * When a rule's action runs relative to its condition
+ */
+public enum FiringMode {
+    LEVEL,          // On every evaluation while the condition is true
+    RISING_EDGE,    // Once when the condition becomes true
+    FALLING_EDGE    // Once when the condition stops being true
+}
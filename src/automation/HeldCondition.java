@@ -0,0 +1,61 @@
+package automation;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * True once a condition has been continuously true for a minimum duration,
+ * e.g. held(!S001.motion, 10m) for "no motion for 10 minutes".
+ * The condition is sampled by the engine on every evaluation cycle. When the
+ * time it became true is known from elsewhere (e.g. a motion sensor's last
+ * detection), that time is used instead of the first sample seeing it true.
+ */
+public class HeldCondition implements BooleanSupplier, TemporalWindows.Sampled {
+    private final BooleanSupplier condition;
+    private final long durationMillis;
+    private final LongSupplier since;
+    private long trueSince = Long.MIN_VALUE;
+    private long lastSampleTime;
+
+    /**
+     * Constructor for HeldCondition
+     * @param condition The condition that must hold
+     * @param durationMillis How long it must hold
+     */
+    public HeldCondition(BooleanSupplier condition, long durationMillis) {
+        this(condition, durationMillis, null);
+    }
+
+    /**
+     * Constructor for HeldCondition whose start time may be known in advance
+     * @param condition The condition that must hold
+     * @param durationMillis How long it must hold
+     * @param since Time the condition became true, or Long.MIN_VALUE if unknown
+     */
+    public HeldCondition(BooleanSupplier condition, long durationMillis, LongSupplier since) {
+        this.condition = condition;
+        this.durationMillis = durationMillis;
+        this.since = since;
+    }
+
+    @Override
+    public void sample(long now) {
+        lastSampleTime = now;
+        if (condition.getAsBoolean()) {
+            long known = since != null ? since.getAsLong() : Long.MIN_VALUE;
+            if (known != Long.MIN_VALUE && (trueSince == Long.MIN_VALUE || known > trueSince)) {
+                // Also catches a change missed between two samples
+                trueSince = Math.min(known, now);
+            } else if (trueSince == Long.MIN_VALUE) {
+                trueSince = now;
+            }
+        } else {
+            trueSince = Long.MIN_VALUE;
+        }
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        return trueSince != Long.MIN_VALUE && lastSampleTime - trueSince >= durationMillis;
+    }
+}
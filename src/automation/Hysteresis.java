@@ -0,0 +1,80 @@
+package automation;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Numeric threshold condition with a hysteresis band, so a value hovering
+ * around the threshold does not make the condition flap.
+ * Example: above(watts, 200, 180) becomes true when watts exceeds 200 and
+ * only becomes false again once watts drops below 180.
+ */
+public class Hysteresis implements BooleanSupplier {
+    private final DoubleSupplier value;
+    private final double onThreshold;
+    private final double offThreshold;
+    private final boolean rising;
+    private boolean active;
+
+    private Hysteresis(DoubleSupplier value, double onThreshold, double offThreshold, boolean rising) {
+        this.value = value;
+        this.onThreshold = onThreshold;
+        this.offThreshold = offThreshold;
+        this.rising = rising;
+    }
+
+    /**
+     * True once the value goes above onThreshold, until it drops below offThreshold
+     * @param value The monitored value
+     * @param onThreshold Level that activates the condition
+     * @param offThreshold Level that releases it (must not be above onThreshold)
+     * @return The condition
+     */
+    public static Hysteresis above(DoubleSupplier value, double onThreshold, double offThreshold) {
+        if (offThreshold > onThreshold) {
+            throw new IllegalArgumentException("Release level must not be above the trigger level");
+        }
+        return new Hysteresis(value, onThreshold, offThreshold, true);
+    }
+
+    /**
+     * True once the value goes below onThreshold, until it rises above offThreshold
+     * @param value The monitored value
+     * @param onThreshold Level that activates the condition
+     * @param offThreshold Level that releases it (must not be below onThreshold)
+     * @return The condition
+     */
+    public static Hysteresis below(DoubleSupplier value, double onThreshold, double offThreshold) {
+        if (offThreshold < onThreshold) {
+            throw new IllegalArgumentException("Release level must not be below the trigger level");
+        }
+        return new Hysteresis(value, onThreshold, offThreshold, false);
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        double current = value.getAsDouble();
+        if (rising) {
+            if (!active && current > onThreshold) {
+                active = true;
+            } else if (active && current < offThreshold) {
+                active = false;
+            }
+        } else {
+            if (!active && current < onThreshold) {
+                active = true;
+            } else if (active && current > offThreshold) {
+                active = false;
+            }
+        }
+        return active;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    DoubleSupplier getValue() {
+        return value;
+    }
+}
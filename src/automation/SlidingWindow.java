@@ -0,0 +1,163 @@
+package automation;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Aggregate of a numeric signal over a sliding time window, e.g. "average
+ * watts over the last 5 minutes". The window is a ring of time buckets:
+ * averages keep a running sum, minimum and maximum keep a monotonic deque of
+ * bucket extremes, so each sample costs O(1) amortised and memory is fixed.
+ * The signal is sampled by the engine on every evaluation cycle.
+ */
+public class SlidingWindow implements DoubleSupplier, TemporalWindows.Sampled {
+
+    /**
+     * Aggregate computed over the window
+     */
+    public enum Kind { AVERAGE, MINIMUM, MAXIMUM }
+
+    private final DoubleSupplier signal;
+    private final Kind kind;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    private final long[] bucketIds;
+    private final double[] bucketSums;
+    private final int[] bucketSamples;
+    private final double[] bucketExtremes;
+    private double totalSum;
+    private long totalSamples;
+    private long oldestLiveId = Long.MIN_VALUE;
+
+    // Monotonic deque of bucket ids, extremes decreasing (max) or increasing (min) from head to tail
+    private final long[] deque;
+    private int dequeHead;
+    private int dequeSize;
+
+    /**
+     * Constructor for SlidingWindow
+     * @param signal The sampled value
+     * @param kind Aggregate to compute
+     * @param durationMillis Window length
+     * @param bucketCount Time resolution: number of buckets the window is split into
+     */
+    public SlidingWindow(DoubleSupplier signal, Kind kind, long durationMillis, int bucketCount) {
+        if (durationMillis <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Window duration and bucket count must be positive");
+        }
+        this.signal = signal;
+        this.kind = kind;
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1, durationMillis / bucketCount);
+        this.bucketIds = new long[bucketCount];
+        this.bucketSums = new double[bucketCount];
+        this.bucketSamples = new int[bucketCount];
+        this.bucketExtremes = new double[bucketCount];
+        this.deque = new long[bucketCount];
+        Arrays.fill(bucketIds, Long.MIN_VALUE);
+    }
+
+    @Override
+    public void sample(long now) {
+        add(now, signal.getAsDouble());
+    }
+
+    /**
+     * Adds a sample directly, for windows fed by events rather than by the engine
+     * @param now Sample time in milliseconds
+     * @param value Sample value
+     */
+    public void add(long now, double value) {
+        long id = Math.floorDiv(now, bucketMillis);
+        expire(id);
+
+        int slot = (int) Math.floorMod(id, (long) bucketCount);
+        if (bucketIds[slot] != id) {
+            bucketIds[slot] = id;
+            bucketSums[slot] = 0;
+            bucketSamples[slot] = 0;
+            bucketExtremes[slot] = value;
+        }
+        bucketSums[slot] += value;
+        bucketSamples[slot]++;
+        totalSum += value;
+        totalSamples++;
+
+        if (kind != Kind.AVERAGE) {
+            if (kind == Kind.MAXIMUM ? value > bucketExtremes[slot] : value < bucketExtremes[slot]) {
+                bucketExtremes[slot] = value;
+            }
+            if (dequeSize > 0 && tail() == id) {
+                dequeSize--; // Re-insert the current bucket with its new extreme
+            }
+            while (dequeSize > 0 && !dominates(extremeOf(tail()), bucketExtremes[slot])) {
+                dequeSize--;
+            }
+            deque[(dequeHead + dequeSize) % bucketCount] = id;
+            dequeSize++;
+        }
+    }
+
+    // Removes buckets that slid out of the window
+    private void expire(long currentId) {
+        long firstLiveId = currentId - bucketCount + 1;
+        if (oldestLiveId == Long.MIN_VALUE || firstLiveId - oldestLiveId > bucketCount) {
+            if (oldestLiveId != Long.MIN_VALUE) {
+                clear();
+            }
+            oldestLiveId = firstLiveId;
+        }
+        while (oldestLiveId < firstLiveId) {
+            int slot = (int) Math.floorMod(oldestLiveId, (long) bucketCount);
+            if (bucketIds[slot] == oldestLiveId) {
+                totalSum -= bucketSums[slot];
+                totalSamples -= bucketSamples[slot];
+                bucketIds[slot] = Long.MIN_VALUE;
+            }
+            oldestLiveId++;
+        }
+        while (dequeSize > 0 && deque[dequeHead] < firstLiveId) {
+            dequeHead = (dequeHead + 1) % bucketCount;
+            dequeSize--;
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(bucketIds, Long.MIN_VALUE);
+        totalSum = 0;
+        totalSamples = 0;
+        dequeSize = 0;
+    }
+
+    private long tail() {
+        return deque[(dequeHead + dequeSize - 1) % bucketCount];
+    }
+
+    private double extremeOf(long id) {
+        return bucketExtremes[(int) Math.floorMod(id, (long) bucketCount)];
+    }
+
+    // True if an older bucket's extreme must be kept in front of a newer one
+    private boolean dominates(double older, double newer) {
+        return kind == Kind.MAXIMUM ? older > newer : older < newer;
+    }
+
+    /**
+     * @return The aggregate over the window, or NaN if the window holds no samples
+     */
+    @Override
+    public double getAsDouble() {
+        if (totalSamples == 0) {
+            return Double.NaN;
+        }
+        if (kind == Kind.AVERAGE) {
+            return totalSum / totalSamples;
+        }
+        return extremeOf(deque[dequeHead]);
+    }
+
+    public long getSampleCount() {
+        return totalSamples;
+    }
+}
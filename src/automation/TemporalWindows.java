@@ -0,0 +1,156 @@
+package automation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the temporal windows used by an engine's rules. Windows are
+ * shared by key and all sampled once per evaluation cycle against the
+ * engine clock, so each cycle costs O(1) per distinct window.
+ */
+public class TemporalWindows {
+    /** Default time resolution of sliding windows */
+    public static final int DEFAULT_BUCKETS = 30;
+
+    /**
+     * A window that samples its signal on every engine cycle
+     */
+    interface Sampled {
+        void sample(long now);
+    }
+
+    private final Map<String, Sampled> windowsByKey = new HashMap<>();
+    private final List<Sampled> windows = new ArrayList<>();
+    private final Map<Sampled, Integer> references = new HashMap<>();
+    private long lastAdvance = Long.MIN_VALUE;
+
+    /**
+     * Samples every window; called by the engine at the start of each cycle
+     * @param now Engine time in milliseconds
+     */
+    public synchronized void advance(long now) {
+        lastAdvance = now;
+        for (int i = 0; i < windows.size(); i++) {
+            windows.get(i).sample(now);
+        }
+    }
+
+    /**
+     * Gets or creates the average of a signal over a window
+     * @param key Identifies the window; equal keys share one window
+     */
+    public SlidingWindow average(String key, DoubleSupplier signal, long durationMillis) {
+        return window(key, signal, SlidingWindow.Kind.AVERAGE, durationMillis);
+    }
+
+    /**
+     * Gets or creates the maximum of a signal over a window
+     * @param key Identifies the window; equal keys share one window
+     */
+    public SlidingWindow maximum(String key, DoubleSupplier signal, long durationMillis) {
+        return window(key, signal, SlidingWindow.Kind.MAXIMUM, durationMillis);
+    }
+
+    /**
+     * Gets or creates the minimum of a signal over a window
+     * @param key Identifies the window; equal keys share one window
+     */
+    public SlidingWindow minimum(String key, DoubleSupplier signal, long durationMillis) {
+        return window(key, signal, SlidingWindow.Kind.MINIMUM, durationMillis);
+    }
+
+    /**
+     * Gets or creates a condition that is true once another has held for a duration
+     * @param key Identifies the window; equal keys share one window
+     */
+    public HeldCondition heldFor(String key, BooleanSupplier condition, long durationMillis) {
+        return heldFor(key, condition, durationMillis, null);
+    }
+
+    /**
+     * Gets or creates a held condition whose start time may be known in advance
+     * @param key Identifies the window; equal keys share one window
+     * @param since Time the condition became true, or Long.MIN_VALUE if unknown
+     */
+    public synchronized HeldCondition heldFor(String key, BooleanSupplier condition, long durationMillis,
+                                              LongSupplier since) {
+        Sampled existing = windowsByKey.get(key);
+        if (existing != null) {
+            return (HeldCondition) existing;
+        }
+        HeldCondition held = new HeldCondition(condition, durationMillis, since);
+        register(key, held);
+        return held;
+    }
+
+    private synchronized SlidingWindow window(String key, DoubleSupplier signal,
+                                              SlidingWindow.Kind kind, long durationMillis) {
+        Sampled existing = windowsByKey.get(key);
+        if (existing != null) {
+            return (SlidingWindow) existing;
+        }
+        SlidingWindow window = new SlidingWindow(signal, kind, durationMillis, DEFAULT_BUCKETS);
+        register(key, window);
+        return window;
+    }
+
+    private void register(String key, Sampled window) {
+        windowsByKey.put(key, window);
+        windows.add(window);
+        if (lastAdvance != Long.MIN_VALUE) {
+            window.sample(lastAdvance);
+        }
+    }
+
+    /**
+     * Counts a rule using a window, sampling it again if the last rule using
+     * it was removed meanwhile
+     */
+    synchronized void acquire(String key, Sampled window) {
+        if (!windows.contains(window)) {
+            windows.add(window);
+            if (lastAdvance != Long.MIN_VALUE) {
+                window.sample(lastAdvance);
+            }
+        }
+        windowsByKey.putIfAbsent(key, window);
+        references.merge(window, 1, Integer::sum);
+    }
+
+    /**
+     * Releases a rule's use of a window, removing it once no rule uses it
+     */
+    synchronized void release(String key, Sampled window) {
+        Integer count = references.get(window);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            references.put(window, count - 1);
+        } else {
+            references.remove(window);
+            windows.remove(window);
+            windowsByKey.remove(key, window);
+        }
+    }
+
+    /**
+     * Removes a window that is no longer used by any rule
+     * @param key The window key
+     */
+    public synchronized void remove(String key) {
+        Sampled window = windowsByKey.remove(key);
+        if (window != null) {
+            windows.remove(window);
+        }
+    }
+
+    public synchronized int getWindowCount() {
+        return windows.size();
+    }
+}
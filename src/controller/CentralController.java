@@ -1,5 +1,6 @@
 package controller;
 
+import structure.DeviceGroup;
 import structure.Home;
 import structure.Room;
 import devices.*;
@@ -7,15 +8,26 @@ import interfaces.Controllable;  // ← ADD THIS LINE
 import interfaces.EnergyConsumer;
 import exceptions.DeviceNotFoundException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * Central controller for managing the entire smart home system
  */
 public class CentralController {
     private Home home;
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final SceneManager sceneManager;
 
     public CentralController(Home home) {
         this.home = home;
+        this.sceneManager = new SceneManager(this);
         System.out.println("\n✓ Central Controller initialized for " + home.getHomeName());
     }
 
@@ -48,7 +60,13 @@ public class CentralController {
      * Turns off all devices in the home
      */
     public void turnOffAllDevices() {
-        home.turnOffEverything();
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            home.turnOffEverything();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -57,12 +75,18 @@ public class CentralController {
      */
     public double getTotalEnergyConsumption() {
         double total = 0;
-        List<SmartDevice> allDevices = home.getAllDevices();
+        Lock readLock = stateLock.readLock();
+        readLock.lock(); // Never sees a scene half-applied
+        try {
+            List<SmartDevice> allDevices = home.getAllDevices();
 
-        for (SmartDevice device : allDevices) {
-            if (device instanceof EnergyConsumer) {
-                total += ((EnergyConsumer) device).getEnergyConsumption();
+            for (SmartDevice device : allDevices) {
+                if (device instanceof EnergyConsumer) {
+                    total += ((EnergyConsumer) device).getEnergyConsumption();
+                }
             }
+        } finally {
+            readLock.unlock();
         }
 
         return total;
@@ -114,39 +138,322 @@ public class CentralController {
     }
 
     /**
-     * Executes a global command on all controllable devices
+     * Shows how often status views were served from the devices' cached status
+     */
+    public void showStatusCacheStats() {
+        long hits = SmartDevice.getStatusCacheHits();
+        long misses = SmartDevice.getStatusCacheMisses();
+        long total = hits + misses;
+        System.out.println("\nℹ Status cache: " + hits + " hit(s), " + misses + " miss(es)"
+                + (total > 0 ? String.format(" (%.1f%% hit rate)", hits * 100.0 / total) : ""));
+    }
+
+    /**
+     * Executes a global command on all controllable devices, under the state
+     * write lock so it never interleaves with a scene.
+     * Devices for which the command is invalid are skipped and counted.
      * @param command The command to execute
+     * @return Number of devices that rejected the command
      */
-    public void executeGlobalCommand(String command) {
+    public int executeGlobalCommand(String command) {
         System.out.println("\n⚡ Executing global command: " + command);
         List<SmartDevice> allDevices = home.getAllDevices();
+        int[] rejected = new int[ValidationCode.values().length];
+        int rejectedCount = 0;
 
-        for (SmartDevice device : allDevices) {
-            if (device instanceof Controllable) {
-                ((Controllable) device).executeCommand(command);
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            for (SmartDevice device : allDevices) {
+                if (device instanceof Controllable) {
+                    Controllable controllable = (Controllable) device;
+                    ValidationCode code = controllable.validateCommand(command);
+                    if (code.isValid()) {
+                        controllable.executeCommand(command);
+                    } else {
+                        rejected[code.ordinal()]++;
+                        rejectedCount++;
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (ValidationCode code : ValidationCode.values()) {
+            if (rejected[code.ordinal()] > 0) {
+                System.out.println("✗ " + rejected[code.ordinal()] + " device(s) rejected the command: "
+                        + code.getDescription());
+            }
+        }
+        return rejectedCount;
+    }
+
+    /**
+     * Executes one command under the state write lock, so it never lands in
+     * the middle of a scene, after validating it like a batch command
+     * @param command The command
+     * @return APPLIED, or why the command was not applied
+     */
+    public CommandResult executeCommand(DeviceCommand command) {
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            SmartDevice device = home.lookupDevice(command.getDeviceId());
+            if (device == null) {
+                return new CommandResult(command, CommandResult.Status.NOT_FOUND,
+                        "Device " + command.getDeviceId() + " not found");
+            }
+            if (!(device instanceof Controllable)) {
+                return new CommandResult(command, CommandResult.Status.NOT_CONTROLLABLE,
+                        device.getDeviceName() + " does not accept commands");
+            }
+            Controllable controllable = (Controllable) device;
+            ValidationCode code = controllable.validateCommand(command.getCommand());
+            if (!code.isValid()) {
+                return new CommandResult(command, code);
             }
+            try {
+                controllable.executeCommand(command.getCommand());
+                return new CommandResult(command, CommandResult.Status.APPLIED, null);
+            } catch (RuntimeException e) {
+                // A device constraint the validator does not know about
+                return new CommandResult(command, CommandResult.Status.FAILED, e.getMessage());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Executes a command on every controllable device of a named group, under the state write lock
+     * @param groupName Name of a group of the home
+     * @param command The command to execute
+     * @return Number of devices that rejected the command
+     */
+    public int executeGroupCommand(String groupName, String command) {
+        DeviceGroup group = home.getGroup(groupName);
+        if (group == null) {
+            System.out.println("\n✗ Group '" + groupName + "' not found");
+            return 0;
+        }
+        System.out.println("\n⚡ Executing group command on '" + groupName + "': " + command);
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            return group.multicast(command);
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Checks a batch against the current device state without executing it.
+     * Commands that depend on earlier commands of the same batch (e.g. a TV
+     * channel after turning the TV on) are judged on the current state only;
+     * executeBatch checks each command again just before applying it.
+     * @param commands The commands to check
+     * @return Results for the commands that would not be applied, in input order; empty if all are valid
+     */
+    public List<CommandResult> validateBatch(List<DeviceCommand> commands) {
+        List<CommandResult> problems = new ArrayList<>();
+        for (DeviceCommand command : commands) {
+            SmartDevice device = home.lookupDevice(command.getDeviceId());
+            if (device == null) {
+                problems.add(new CommandResult(command, CommandResult.Status.NOT_FOUND,
+                        "Device " + command.getDeviceId() + " not found"));
+            } else if (!(device instanceof Controllable)) {
+                problems.add(new CommandResult(command, CommandResult.Status.NOT_CONTROLLABLE,
+                        device.getDeviceName() + " does not accept commands"));
+            } else {
+                ValidationCode code = ((Controllable) device).validateCommand(command.getCommand());
+                if (!code.isValid()) {
+                    problems.add(new CommandResult(command, code));
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Executes a batch of commands in a single pass.
+     * Device IDs are resolved through the home's handle index, commands are
+     * grouped by room and device, and a plain setter or on/off that is immediately superseded by a valid
+     * next command for the same device (e.g. "setmode heat" followed by "setmode cool", or "off" followed
+     * by "on") is collapsed instead of applied.
+     * Each command is validated just before it is applied, so invalid ones are
+     * reported as REJECTED without the device throwing.
+     * @param commands The commands to execute, in arrival order
+     * @return One result per command, in the same order as the input
+     */
+    public List<CommandResult> executeBatch(List<DeviceCommand> commands) {
+        System.out.println("\n⚡ Executing batch of " + commands.size() + " command(s)");
+        CommandResult[] results = new CommandResult[commands.size()];
+
+        // Group command indexes by room, then by device, keeping arrival order
+        Map<Room, Map<SmartDevice, List<Integer>>> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            DeviceCommand command = commands.get(i);
+            SmartDevice device = home.lookupDevice(command.getDeviceId());
+            if (device == null) {
+                results[i] = new CommandResult(command, CommandResult.Status.NOT_FOUND,
+                        "Device " + command.getDeviceId() + " not found");
+            } else if (!(device instanceof Controllable)) {
+                results[i] = new CommandResult(command, CommandResult.Status.NOT_CONTROLLABLE,
+                        device.getDeviceName() + " does not accept commands");
+            } else {
+                grouped.computeIfAbsent(home.findRoomOf(command.getDeviceId()), r -> new LinkedHashMap<>())
+                        .computeIfAbsent(device, d -> new ArrayList<>())
+                        .add(i);
+            }
+        }
+
+        // Apply room by room, device by device, as one update that no scene interleaves with
+        Lock writeLock = stateLock.writeLock();
+        writeLock.lock();
+        try {
+            for (Map<SmartDevice, List<Integer>> roomCommands : grouped.values()) {
+                for (Map.Entry<SmartDevice, List<Integer>> entry : roomCommands.entrySet()) {
+                    applyDeviceCommands((Controllable) entry.getKey(), entry.getValue(), commands, results);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        int applied = 0, collapsed = 0, rejected = 0, failed = 0;
+        for (CommandResult result : results) {
+            if (result.getStatus() == CommandResult.Status.APPLIED) {
+                applied++;
+            } else if (result.getStatus() == CommandResult.Status.COLLAPSED) {
+                collapsed++;
+            } else if (result.getStatus() == CommandResult.Status.REJECTED) {
+                rejected++;
+            } else {
+                failed++;
+            }
+        }
+        System.out.println("✓ Batch done: " + applied + " applied, " + collapsed + " collapsed, "
+                + rejected + " rejected, " + failed + " failed");
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Applies the commands of one device in order, skipping superseded ones
+     */
+    private void applyDeviceCommands(Controllable device, List<Integer> indexes,
+                                     List<DeviceCommand> commands, CommandResult[] results) {
+        for (int n = 0; n < indexes.size(); n++) {
+            int index = indexes.get(n);
+            DeviceCommand command = commands.get(index);
+
+            ValidationCode code = device.validateCommand(command.getCommand());
+            if (!code.isValid()) {
+                results[index] = new CommandResult(command, code);
+                continue;
+            }
+
+            if (n + 1 < indexes.size()) {
+                String key = collapseKey(command.getCommand());
+                String next = commands.get(indexes.get(n + 1)).getCommand();
+                // Only a later command that will actually run may supersede this one
+                if (key != null && key.equals(collapseKey(next)) && device.validateCommand(next).isValid()
+                        && !hasPowerSideEffect((SmartDevice) device, command.getCommand())) {
+                    results[index] = new CommandResult(command, CommandResult.Status.COLLAPSED,
+                            "superseded by next command");
+                    continue;
+                }
+            }
+
+            try {
+                device.executeCommand(command.getCommand());
+                results[index] = new CommandResult(command, CommandResult.Status.APPLIED, null);
+            } catch (RuntimeException e) {
+                // A device constraint the validator does not know about
+                results[index] = new CommandResult(command, CommandResult.Status.FAILED, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the property a command sets, so that two consecutive commands with the
+     * same key can be collapsed into the last one. Only plain setters and on/off
+     * qualify; settemp (also steps the current temperature) and motion commands
+     * have side effects that collapsing would drop.
+     * @param command The command text
+     * @return The key, or null if the command must never be collapsed
+     */
+    private static String collapseKey(String command) {
+        String verb = command.trim().split(" ")[0].toLowerCase();
+        switch (verb) {
+            case "setmode":
+            case "channel":
+            case "stream":
+                return verb;
+            case "on":
+            case "off":
+                return "power";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks whether an on/off command would change more than the power state
+     * right now, so it must be applied even if the next command supersedes it:
+     * a light turned on at brightness 0 is also brightened, and a TV or motion
+     * sensor turned off also stops streaming or forgets its motion
+     */
+    private static boolean hasPowerSideEffect(SmartDevice device, String command) {
+        String verb = command.trim().split(" ")[0].toLowerCase();
+        if (verb.equals("on")) {
+            return device instanceof Light && ((Light) device).getBrightness() == 0;
+        }
+        if (verb.equals("off")) {
+            return (device instanceof SmartTV && ((SmartTV) device).isStreaming())
+                    || (device instanceof MotionSensor && ((MotionSensor) device).isMotionDetected());
+        }
+        return false;
+    }
+
     /**
      * Activates energy saving mode
      */
-    public void energySavingMode() {
+    public SceneRollback energySavingMode() {
         System.out.println("\n🌱 Activating Energy Saving Mode...");
-        List<SmartDevice> allDevices = home.getAllDevices();
-
-        for (SmartDevice device : allDevices) {
+        Scene scene = new Scene("Energy Saving");
+        for (SmartDevice device : home.getAllDevices()) {
             if (device instanceof Light) {
-                Light light = (Light) device;
-                if (light.isOn()) {
-                    light.setBrightness(30); // Reduce brightness
+                if (device.isOn()) {
+                    scene.set(device, DeviceProperty.BRIGHTNESS, 30); // Reduce brightness
                 }
             } else if (device instanceof SmartTV) {
-                device.turnOff(); // Turn off TVs
+                scene.power(device, false); // Turn off TVs (turnOff prints each one)
             }
         }
 
+        // Only lights above or below 30% and TVs still on are touched
+        SceneRollback rollback = sceneManager.apply(scene);
+        for (SmartDevice light : rollback.getChangedDevices(DeviceProperty.BRIGHTNESS)) {
+            System.out.println(light.getDeviceName() + " brightness set to "
+                    + light.getPropertyValue(DeviceProperty.BRIGHTNESS) + "%");
+        }
         System.out.println("✓ Energy saving mode activated");
+        return rollback;
+    }
+
+    /**
+     * Gets the lock guarding multi-device updates such as scenes: writers take
+     * the write lock, readers wanting a consistent view take the read lock
+     * @return The home state lock
+     */
+    public ReadWriteLock getStateLock() {
+        return stateLock;
+    }
+
+    public SceneManager getSceneManager() {
+        return sceneManager;
     }
 
     public Home getHome() {
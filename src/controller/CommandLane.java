@@ -0,0 +1,34 @@
+package controller;
+
+/**
+ * Priority lanes of the CommandScheduler. CRITICAL always runs first; the
+ * other lanes share the worker in proportion to their weights.
+ */
+public enum CommandLane {
+    CRITICAL(0, 1024),      // Safety actions, e.g. alarm-driven lights on
+    INTERACTIVE(8, 4096),   // A person waiting on a button press
+    BULK(2, 256),           // Home-wide fan-outs such as a global dim
+    BACKGROUND(1, 1024);    // Housekeeping nobody is waiting for
+
+    private final int weight;
+    private final int defaultCapacity;
+
+    CommandLane(int weight, int defaultCapacity) {
+        this.weight = weight;
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    /**
+     * @return Steps the lane may run per scheduling round; 0 for the strict-priority lane
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Queued jobs the lane accepts unless configured otherwise
+     */
+    public int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+}
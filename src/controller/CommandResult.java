@@ -0,0 +1,79 @@
+package controller;
+
+import devices.ValidationCode;
+
+/**
+ * Outcome of a single command within a batch
+ */
+public class CommandResult {
+
+    /**
+     * Possible outcomes of a batched command
+     */
+    public enum Status {
+        APPLIED,            // Command was executed on the device
+        COLLAPSED,          // Command was superseded by a later command for the same device
+        NOT_FOUND,          // No device with this ID exists
+        NOT_CONTROLLABLE,   // Device does not accept commands
+        REJECTED,           // Command failed validation and was not attempted
+        FAILED              // Device rejected the command
+    }
+
+    private final DeviceCommand command;
+    private final Status status;
+    private final String message;
+    private final ValidationCode code;
+
+    public CommandResult(DeviceCommand command, Status status, String message) {
+        this(command, status, message, ValidationCode.OK);
+    }
+
+    /**
+     * Constructor for a command that failed validation
+     * @param command The command
+     * @param code Why it is invalid
+     */
+    public CommandResult(DeviceCommand command, ValidationCode code) {
+        this(command, Status.REJECTED, code.getDescription(), code);
+    }
+
+    private CommandResult(DeviceCommand command, Status status, String message, ValidationCode code) {
+        this.command = command;
+        this.status = status;
+        this.message = message;
+        this.code = code;
+    }
+
+    /**
+     * @return true if the command was applied or safely collapsed into a later one
+     */
+    public boolean isSuccess() {
+        return status == Status.APPLIED || status == Status.COLLAPSED;
+    }
+
+    // Getters
+    public DeviceCommand getCommand() {
+        return command;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return Why validation rejected the command, or OK if it was not rejected
+     */
+    public ValidationCode getCode() {
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s%s", command, status,
+                message == null ? "" : " (" + message + ")");
+    }
+}
@@ -0,0 +1,371 @@
+package controller;
+
+import devices.SmartDevice;
+import devices.ValidationCode;
+import interfaces.Controllable;
+import simulation.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Runs device commands on one worker thread, taking them from priority lanes
+ * instead of in caller order.
+ *
+ * Each lane has a bounded queue; submitting to a full lane is rejected rather
+ * than queued without limit. The worker always serves CRITICAL first and
+ * shares the rest between INTERACTIVE, BULK and BACKGROUND by weighted round
+ * robin, one step at a time. A step is a single command, or one device of a
+ * fan-out: a global command is applied device by device with a scheduling
+ * decision in between, so an urgent command waits for at most one device of
+ * a bulk dim across the home, not for all of it. Steps hold the controller's
+ * state write lock, so they never interleave with a scene being applied.
+ *
+ * Latency from submission to completion is recorded per lane.
+ */
+public class CommandScheduler {
+    private static final CommandLane[] LANES = CommandLane.values();
+    private static final CommandLane[] FAIR_LANES = {
+            CommandLane.INTERACTIVE, CommandLane.BULK, CommandLane.BACKGROUND };
+
+    private final CentralController controller;
+    private final Lock writeLock;
+
+    // Guarded by this
+    private final List<ArrayDeque<Job<?>>> queues = new ArrayList<>(LANES.length);
+    private final int[] capacities = new int[LANES.length];
+    private final int[] credits = new int[LANES.length];
+    private final long[] submitted = new long[LANES.length];
+    private final long[] completed = new long[LANES.length];
+    private final long[] rejected = new long[LANES.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[LANES.length];
+    private int queuedCount;
+    private int cursor;
+    private boolean running;
+    private Thread worker;
+
+    public CommandScheduler(CentralController controller) {
+        this.controller = controller;
+        this.writeLock = controller.getStateLock().writeLock();
+        for (CommandLane lane : LANES) {
+            queues.add(new ArrayDeque<>());
+            capacities[lane.ordinal()] = lane.getDefaultCapacity();
+            latencies[lane.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Starts the worker thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::work, "command-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+        System.out.println("✓ Command scheduler started");
+    }
+
+    /**
+     * Stops the worker after its current step; queued jobs are cancelled
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = worker;
+            notifyAll();
+        }
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (ArrayDeque<Job<?>> queue : queues) {
+                for (Job<?> job : queue) {
+                    job.future.cancel(false);
+                }
+                queue.clear();
+            }
+            queuedCount = 0;
+        }
+        System.out.println("✓ Command scheduler stopped");
+    }
+
+    /**
+     * Queues a command for one device
+     * @param lane The lane to run it in
+     * @param command The command
+     * @return Completes with the command's result once it has run
+     * @throws RejectedExecutionException if the lane's queue is full
+     */
+    public CompletableFuture<CommandResult> submit(CommandLane lane, DeviceCommand command) {
+        return enqueue(lane, new SingleJob(command));
+    }
+
+    /**
+     * Queues a command for every controllable device in the home, applied one
+     * device per step
+     * @param lane The lane to run it in, normally BULK
+     * @param command The command
+     * @return Completes with the number of devices that rejected the command
+     * @throws RejectedExecutionException if the lane's queue is full
+     */
+    public CompletableFuture<Integer> submitGlobal(CommandLane lane, String command) {
+        return enqueue(lane, new FanOutJob(command));
+    }
+
+    private synchronized <T> CompletableFuture<T> enqueue(CommandLane lane, Job<T> job) {
+        int l = lane.ordinal();
+        if (!running) {
+            throw new RejectedExecutionException("Command scheduler is not running");
+        }
+        if (queues.get(l).size() >= capacities[l]) {
+            rejected[l]++;
+            throw new RejectedExecutionException(lane + " lane is full (" + capacities[l] + " jobs)");
+        }
+        job.lane = l;
+        job.submittedNanos = System.nanoTime();
+        queues.get(l).addLast(job);
+        submitted[l]++;
+        if (queuedCount++ == 0) {
+            notifyAll();
+        }
+        return job.future;
+    }
+
+    // Body of the worker thread
+    private void work() {
+        while (true) {
+            Job<?> job;
+            synchronized (this) {
+                while (running && queuedCount == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                job = queues.get(nextLane()).peekFirst(); // Only this thread removes jobs
+            }
+
+            boolean done;
+            writeLock.lock();
+            try {
+                done = job.step();
+            } catch (RuntimeException e) {
+                job.future.completeExceptionally(e);
+                done = true;
+            } finally {
+                writeLock.unlock();
+            }
+
+            if (done) {
+                synchronized (this) {
+                    queues.get(job.lane).pollFirst();
+                    queuedCount--;
+                    completed[job.lane]++;
+                    latencies[job.lane].record(System.nanoTime() - job.submittedNanos);
+                }
+                job.complete();
+            }
+        }
+    }
+
+    // Picks the lane of the next step: CRITICAL first, then weighted round robin
+    private int nextLane() {
+        if (!queues.get(CommandLane.CRITICAL.ordinal()).isEmpty()) {
+            return CommandLane.CRITICAL.ordinal();
+        }
+        while (true) {
+            for (int n = 0; n < FAIR_LANES.length; n++) {
+                int l = FAIR_LANES[(cursor + n) % FAIR_LANES.length].ordinal();
+                if (queues.get(l).isEmpty()) {
+                    credits[l] = 0; // An idle lane does not save up credits
+                } else if (credits[l] > 0) {
+                    credits[l]--;
+                    cursor = (cursor + n) % FAIR_LANES.length;
+                    return l;
+                }
+            }
+            for (CommandLane lane : FAIR_LANES) {
+                credits[lane.ordinal()] = lane.getWeight();
+            }
+        }
+    }
+
+    // ---- Configuration and metrics ----
+
+    /**
+     * Changes the number of jobs a lane accepts; jobs already queued stay
+     * @param lane The lane
+     * @param capacity Maximum queued jobs
+     */
+    public synchronized void setCapacity(CommandLane lane, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Lane capacity must be positive");
+        }
+        capacities[lane.ordinal()] = capacity;
+    }
+
+    public synchronized int getCapacity(CommandLane lane) {
+        return capacities[lane.ordinal()];
+    }
+
+    /**
+     * @return Jobs waiting or in progress in the lane
+     */
+    public synchronized int getQueueDepth(CommandLane lane) {
+        return queues.get(lane.ordinal()).size();
+    }
+
+    public synchronized long getSubmittedCount(CommandLane lane) {
+        return submitted[lane.ordinal()];
+    }
+
+    public synchronized long getCompletedCount(CommandLane lane) {
+        return completed[lane.ordinal()];
+    }
+
+    /**
+     * @return Submissions refused because the lane was full
+     */
+    public synchronized long getRejectedCount(CommandLane lane) {
+        return rejected[lane.ordinal()];
+    }
+
+    /**
+     * @return Copy of the lane's submission-to-completion latencies
+     */
+    public synchronized LatencyHistogram getLatency(CommandLane lane) {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.merge(latencies[lane.ordinal()]);
+        return copy;
+    }
+
+    /**
+     * Prints depth, throughput and latency of every lane
+     */
+    public synchronized void showLaneStats() {
+        System.out.println("\nℹ Command lanes:");
+        for (CommandLane lane : LANES) {
+            int l = lane.ordinal();
+            LatencyHistogram latency = latencies[l];
+            System.out.println(String.format("  %-11s depth %d/%d | %d done, %d rejected | p50 %.3fms p99 %.3fms max %.3fms",
+                    lane, queues.get(l).size(), capacities[l], completed[l], rejected[l],
+                    latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6, latency.getMax() / 1e6));
+        }
+    }
+
+    // ---- Jobs ----
+
+    /**
+     * Queued work that runs in one or more steps
+     */
+    private abstract static class Job<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        int lane;
+        long submittedNanos;
+
+        /**
+         * Runs the next step on the worker thread
+         * @return true once the job has finished
+         */
+        abstract boolean step();
+
+        /**
+         * Completes the future; called outside the scheduler's lock
+         */
+        abstract void complete();
+    }
+
+    private final class SingleJob extends Job<CommandResult> {
+        private final DeviceCommand command;
+        private CommandResult result;
+
+        SingleJob(DeviceCommand command) {
+            this.command = command;
+        }
+
+        @Override
+        boolean step() {
+            SmartDevice device = controller.getHome().lookupDevice(command.getDeviceId());
+            if (device == null) {
+                result = new CommandResult(command, CommandResult.Status.NOT_FOUND,
+                        "Device " + command.getDeviceId() + " not found");
+            } else if (!(device instanceof Controllable)) {
+                result = new CommandResult(command, CommandResult.Status.NOT_CONTROLLABLE,
+                        device.getDeviceName() + " does not accept commands");
+            } else {
+                result = execute((Controllable) device, command);
+            }
+            return true;
+        }
+
+        @Override
+        void complete() {
+            future.complete(result);
+        }
+    }
+
+    private final class FanOutJob extends Job<Integer> {
+        private final String command;
+        private List<SmartDevice> devices;
+        private int next;
+        private int rejectedDevices;
+
+        FanOutJob(String command) {
+            this.command = command;
+        }
+
+        @Override
+        boolean step() {
+            if (devices == null) {
+                devices = controller.getHome().getAllDevices(); // Devices as of the first step
+            }
+            // Skip devices that take no commands without spending a step on them
+            while (next < devices.size() && !(devices.get(next) instanceof Controllable)) {
+                next++;
+            }
+            if (next < devices.size()) {
+                SmartDevice device = devices.get(next++);
+                CommandResult result = execute((Controllable) device, new DeviceCommand(device.getDeviceId(), command));
+                if (!result.isSuccess()) {
+                    rejectedDevices++;
+                }
+            }
+            return next >= devices.size();
+        }
+
+        @Override
+        void complete() {
+            future.complete(rejectedDevices);
+        }
+    }
+
+    private static CommandResult execute(Controllable device, DeviceCommand command) {
+        ValidationCode code = device.validateCommand(command.getCommand());
+        if (!code.isValid()) {
+            return new CommandResult(command, code);
+        }
+        try {
+            device.executeCommand(command.getCommand());
+            return new CommandResult(command, CommandResult.Status.APPLIED, null);
+        } catch (RuntimeException e) {
+            return new CommandResult(command, CommandResult.Status.FAILED, e.getMessage());
+        }
+    }
+}
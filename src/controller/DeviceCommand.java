@@ -0,0 +1,33 @@
+package controller;
+
+/**
+ * A single command addressed to a device, as received from an upstream batch
+ */
+public class DeviceCommand {
+    private final String deviceId;
+    private final String command;
+
+    /**
+     * Constructor for DeviceCommand
+     * @param deviceId ID of the target device
+     * @param command The command to execute (same syntax as executeCommand)
+     */
+    public DeviceCommand(String deviceId, String command) {
+        this.deviceId = deviceId;
+        this.command = command;
+    }
+
+    // Getters
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public String toString() {
+        return deviceId + " <- " + command;
+    }
+}
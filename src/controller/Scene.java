@@ -0,0 +1,163 @@
+package controller;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A named target state for a set of devices, e.g. "Movie Night": TV on,
+ * living room lights at 20%. Targets are bound to device objects when they
+ * are added, so computing a scene's diff is a single pass with no lookups.
+ */
+public class Scene {
+    private final String name;
+
+    // Targets in insertion order, as parallel arrays
+    private SmartDevice[] devices = new SmartDevice[16];
+    private DeviceProperty[] properties = new DeviceProperty[16];
+    private long[] values = new long[16];
+    private String[] texts = new String[16];
+    private int size;
+
+    // Target index per device and property ordinal, so setting a target twice replaces it
+    private final Map<SmartDevice, int[]> indexByDevice = new IdentityHashMap<>();
+
+    public Scene(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the target value of a numeric or on/off property
+     * @param device The device
+     * @param property The property to set
+     * @param value Target value (booleans are 1 or 0)
+     * @return This scene, for chaining
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public Scene set(SmartDevice device, DeviceProperty property, long value) {
+        put(device, property, value, null);
+        return this;
+    }
+
+    /**
+     * Sets the target value of a text property such as a light's color
+     * @param device The device
+     * @param property The property to set
+     * @param text Target text
+     * @return This scene, for chaining
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public Scene setText(SmartDevice device, DeviceProperty property, String text) {
+        put(device, property, 0, Objects.requireNonNull(text, "text"));
+        return this;
+    }
+
+    /**
+     * Sets both parts of a property that has a value and a text, such as a
+     * TV's streaming flag and app
+     * @param device The device
+     * @param property The property to set
+     * @param value Target value (booleans are 1 or 0)
+     * @param text Target text, or null for a numeric-only property
+     * @return This scene, for chaining
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public Scene set(SmartDevice device, DeviceProperty property, long value, String text) {
+        put(device, property, value, text);
+        return this;
+    }
+
+    /**
+     * Sets whether a device should be on
+     * @return This scene, for chaining
+     */
+    public Scene power(SmartDevice device, boolean on) {
+        return set(device, DeviceProperty.POWER, on ? 1 : 0);
+    }
+
+    private void put(SmartDevice device, DeviceProperty property, long value, String text) {
+        if (!Arrays.asList(device.getSupportedProperties()).contains(property)) {
+            throw new IllegalArgumentException(device.getClass().getSimpleName() + " "
+                    + device.getDeviceId() + " has no property " + property);
+        }
+        int[] slots = indexByDevice.get(device);
+        if (slots == null) {
+            slots = new int[DeviceProperty.values().length];
+            indexByDevice.put(device, slots);
+        }
+        int index = slots[property.ordinal()] - 1;
+        if (index < 0) {
+            if (size == devices.length) {
+                grow();
+            }
+            index = size++;
+            slots[property.ordinal()] = index + 1;
+        }
+        devices[index] = device;
+        properties[index] = property;
+        values[index] = value;
+        texts[index] = text;
+    }
+
+    private void grow() {
+        int capacity = devices.length * 2;
+        devices = Arrays.copyOf(devices, capacity);
+        properties = Arrays.copyOf(properties, capacity);
+        values = Arrays.copyOf(values, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+
+    /**
+     * Checks whether a target already matches the device's current state
+     */
+    boolean isSatisfied(int index) {
+        SmartDevice device = devices[index];
+        if (texts[index] != null && !texts[index].equals(device.getPropertyText(properties[index]))) {
+            return false;
+        }
+        return device.getPropertyValue(properties[index]) == values[index];
+    }
+
+    SmartDevice getDevice(int index) {
+        return devices[index];
+    }
+
+    DeviceProperty getProperty(int index) {
+        return properties[index];
+    }
+
+    long getValue(int index) {
+        return values[index];
+    }
+
+    String getText(int index) {
+        return texts[index];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of device properties the scene sets
+     */
+    public int getTargetCount() {
+        return size;
+    }
+
+    /**
+     * @return Number of devices the scene covers
+     */
+    public int getDeviceCount() {
+        return indexByDevice.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Scene '" + name + "' (" + size + " target(s) on " + indexByDevice.size() + " device(s))";
+    }
+}
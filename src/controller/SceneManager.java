@@ -0,0 +1,161 @@
+package controller;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Defines, applies and rolls back scenes.
+ *
+ * Applying a scene first computes its diff against the current state, then
+ * writes only the differing properties, all under the controller's state
+ * write lock and with device notifications deferred until every write is
+ * done. Readers holding the read lock and state listeners therefore see
+ * either none or all of a scene.
+ */
+public class SceneManager {
+    private final Lock writeLock;
+    private final Map<String, Scene> scenes = new LinkedHashMap<>();
+
+    SceneManager(CentralController controller) {
+        this.writeLock = controller.getStateLock().writeLock();
+    }
+
+    /**
+     * Registers a scene under its name, replacing any scene with the same name
+     * @param scene The scene to register
+     */
+    public synchronized void define(Scene scene) {
+        scenes.put(scene.getName(), scene);
+        System.out.println("✓ Defined " + scene);
+    }
+
+    public synchronized Scene getScene(String name) {
+        return scenes.get(name);
+    }
+
+    public synchronized Map<String, Scene> getScenes() {
+        return new LinkedHashMap<>(scenes);
+    }
+
+    /**
+     * Applies a registered scene by name
+     * @param name The scene name
+     * @return Token to roll the scene back, or null if there is no such scene
+     */
+    public SceneRollback apply(String name) {
+        Scene scene = getScene(name);
+        if (scene == null) {
+            System.out.println("✗ Scene not found: " + name);
+            return null;
+        }
+        return apply(scene);
+    }
+
+    /**
+     * Applies a scene atomically, writing only properties that differ from it
+     * @param scene The scene to apply
+     * @return Token holding the previous values of every property written
+     */
+    public SceneRollback apply(Scene scene) {
+        Scene undo = new Scene("Undo " + scene.getName());
+        Scene applied = new Scene(scene.getName());
+        int changes = write(scene, undo, applied);
+        System.out.println("✓ Scene '" + scene.getName() + "' applied: " + changes + " change(s), "
+                + (scene.getTargetCount() - changes) + " already in place");
+        return new SceneRollback(scene.getName(), undo, applied);
+    }
+
+    /**
+     * Restores the properties a scene application changed, again only writing
+     * those that differ from the recorded values
+     * @param rollback Token returned by apply
+     * @throws IllegalStateException if the token was already rolled back
+     */
+    public void rollback(SceneRollback rollback) {
+        rollback.markRolledBack();
+        int changes = write(rollback.getUndo(), new Scene("Redo " + rollback.getSceneName()), null);
+        System.out.println("✓ Scene '" + rollback.getSceneName() + "' rolled back: " + changes + " change(s)");
+    }
+
+    /**
+     * Writes the scene's differing targets, recording their previous values into
+     * undo and, if given, the targets written into applied
+     * @return Number of properties written
+     */
+    private int write(Scene scene, Scene undo, Scene applied) {
+        int targetCount = scene.getTargetCount();
+        int[] diff = new int[targetCount];
+        int changes = 0;
+
+        writeLock.lock();
+        SmartDevice.beginDeferredNotifications();
+        try {
+            for (int i = 0; i < targetCount; i++) {
+                if (!scene.isSatisfied(i)) {
+                    diff[changes++] = i;
+                }
+            }
+            // Switching a device on or off can change its other properties too (a TV
+            // stops streaming), so such devices are recorded whole, power first
+            for (int k = 0; k < changes; k++) {
+                if (scene.getProperty(diff[k]) == DeviceProperty.POWER) {
+                    SmartDevice device = scene.getDevice(diff[k]);
+                    for (DeviceProperty property : device.getSupportedProperties()) {
+                        record(undo, device, property);
+                    }
+                }
+            }
+            for (int k = 0; k < changes; k++) {
+                record(undo, scene.getDevice(diff[k]), scene.getProperty(diff[k]));
+            }
+            try {
+                for (int k = 0; k < changes; k++) {
+                    int i = diff[k];
+                    writeTarget(scene.getDevice(i), scene.getProperty(i), scene.getValue(i), scene.getText(i));
+                }
+                if (applied != null) {
+                    for (int k = 0; k < changes; k++) {
+                        int i = diff[k];
+                        applied.set(scene.getDevice(i), scene.getProperty(i), scene.getValue(i), scene.getText(i));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Revert whatever the writes made so far changed
+                for (int k = 0; k < undo.getTargetCount(); k++) {
+                    if (!undo.isSatisfied(k)) {
+                        writeTarget(undo.getDevice(k), undo.getProperty(k), undo.getValue(k), undo.getText(k));
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+            SmartDevice.endDeferredNotifications();
+        }
+        return changes;
+    }
+
+    /**
+     * Sets one property. Power goes through turnOn()/turnOff(), so a device is
+     * switched by the same rules as anywhere else: a TV turned off stops
+     * streaming, a motion sensor forgets its motion.
+     */
+    private static void writeTarget(SmartDevice device, DeviceProperty property, long value, String text) {
+        if (property != DeviceProperty.POWER) {
+            device.restoreProperty(property, value, text);
+        } else if (value != 0) {
+            device.turnOn();
+        } else {
+            device.turnOff();
+        }
+    }
+
+    // Keeps both parts: a property such as STREAMING has a value and a text
+    private static void record(Scene undo, SmartDevice device, DeviceProperty property) {
+        undo.set(device, property, device.getPropertyValue(property), device.getPropertyText(property));
+    }
+}
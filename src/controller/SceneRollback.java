@@ -0,0 +1,64 @@
+package controller;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token returned by applying a scene; holds what is needed to undo it
+ */
+public class SceneRollback {
+    private final String sceneName;
+    private final Scene undo;
+    private final Scene applied;    // The targets the application actually wrote
+    private boolean rolledBack;
+
+    SceneRollback(String sceneName, Scene undo, Scene applied) {
+        this.sceneName = sceneName;
+        this.undo = undo;
+        this.applied = applied;
+    }
+
+    synchronized void markRolledBack() {
+        if (rolledBack) {
+            throw new IllegalStateException("Scene '" + sceneName + "' was already rolled back");
+        }
+        rolledBack = true;
+    }
+
+    Scene getUndo() {
+        return undo;
+    }
+
+    public String getSceneName() {
+        return sceneName;
+    }
+
+    /**
+     * @return Number of properties the scene application changed
+     */
+    public int getChangeCount() {
+        return applied.getTargetCount();
+    }
+
+    /**
+     * Gets the devices whose given property the scene application changed
+     * @param property The property, e.g. BRIGHTNESS
+     * @return The devices, in scene order
+     */
+    public List<SmartDevice> getChangedDevices(DeviceProperty property) {
+        List<SmartDevice> devices = new ArrayList<>();
+        for (int i = 0; i < applied.getTargetCount(); i++) {
+            if (applied.getProperty(i) == property) {
+                devices.add(applied.getDevice(i));
+            }
+        }
+        return devices;
+    }
+
+    public synchronized boolean isRolledBack() {
+        return rolledBack;
+    }
+}
@@ -0,0 +1,61 @@
+package devices;
+
+/**
+ * Parsing of command arguments that reports bad input by return value, so
+ * validating a command never costs an exception
+ */
+final class CommandArgs {
+    /** Returned by parseInt for anything that is not an int */
+    static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    private CommandArgs() {
+    }
+
+    /**
+     * @return The argument after the verb, or null if there is none
+     */
+    static String argument(String[] parts) {
+        return parts.length > 1 ? parts[1] : null;
+    }
+
+    /**
+     * Parses a decimal int the way Integer.parseInt does
+     * @return The value, or NOT_A_NUMBER if text is not a valid int
+     */
+    static long parseInt(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length || length - i > 10) {
+            return NOT_A_NUMBER;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0) {
+                return NOT_A_NUMBER;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_A_NUMBER : value;
+    }
+
+    /**
+     * Checks an int argument against an inclusive range
+     */
+    static ValidationCode checkInt(String text, int min, int max) {
+        if (text == null) {
+            return ValidationCode.MISSING_ARGUMENT;
+        }
+        long value = parseInt(text);
+        if (value == NOT_A_NUMBER) {
+            return ValidationCode.MALFORMED_NUMBER;
+        }
+        return value < min || value > max ? ValidationCode.OUT_OF_RANGE : ValidationCode.OK;
+    }
+}
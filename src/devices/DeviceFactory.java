@@ -0,0 +1,55 @@
+package devices;
+
+/**
+ * Creates devices by type name, and copies devices including their state
+ */
+public final class DeviceFactory {
+
+    private DeviceFactory() {
+    }
+
+    /**
+     * Creates a device with default state
+     * @param typeName Simple class name ("Light", "Thermostat", "SmartTV", "MotionSensor")
+     * @param deviceId ID for the new device
+     * @param deviceName Name for the new device
+     * @return The new device
+     * @throws IllegalArgumentException if the type is unknown
+     */
+    public static SmartDevice create(String typeName, String deviceId, String deviceName) {
+        switch (typeName) {
+            case "Light":
+                return new Light(deviceId, deviceName, 0);
+            case "Thermostat":
+                return new Thermostat(deviceId, deviceName, 20);
+            case "SmartTV":
+                return new SmartTV(deviceId, deviceName);
+            case "MotionSensor":
+                return new MotionSensor(deviceId, deviceName);
+            default:
+                throw new IllegalArgumentException("Unknown device type: " + typeName);
+        }
+    }
+
+    /**
+     * Creates an independent device with the same identity and state
+     * @param device The device to copy
+     * @return The copy (state listeners are not copied)
+     */
+    public static SmartDevice copyOf(SmartDevice device) {
+        SmartDevice copy = create(device.getClass().getSimpleName(), device.getDeviceId(), device.getDeviceName());
+        copyState(device, copy);
+        return copy;
+    }
+
+    /**
+     * Copies every supported property from one device to another of the same type
+     * @param from Source device
+     * @param to Destination device
+     */
+    public static void copyState(SmartDevice from, SmartDevice to) {
+        for (DeviceProperty property : from.getSupportedProperties()) {
+            to.restoreProperty(property, from.getPropertyValue(property), from.getPropertyText(property));
+        }
+    }
+}
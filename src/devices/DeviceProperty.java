@@ -0,0 +1,18 @@
+package devices;
+
+/**
+ * Observable properties of smart devices, reported to state listeners when they change
+ */
+public enum DeviceProperty {
+    POWER,
+    BRIGHTNESS,
+    COLOR,
+    MODE,
+    CURRENT_TEMPERATURE,
+    TARGET_TEMPERATURE,
+    CHANNEL,
+    VOLUME,
+    STREAMING,
+    MOTION,
+    SENSITIVITY
+}
@@ -0,0 +1,146 @@
+package devices;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns every device of a home a dense int handle, 0, 1, 2... in
+ * registration order, so indexes, events and logs can key on ints and
+ * arrays instead of ID strings.
+ *
+ * A handle belongs to a device ID for the life of the registry: a device
+ * object that is dropped and materialised again (e.g. an evicted room) gets
+ * its old handle back, and handles of removed devices are not reused. IDs
+ * and names are interned on registration, so devices share one copy.
+ * Like Home, a registry is not thread-safe.
+ */
+public class DeviceRegistry {
+    /** Handle of a device that is not registered */
+    public static final int NO_HANDLE = -1;
+
+    private String[] ids = new String[16];
+    private SmartDevice[] devices = new SmartDevice[16];
+    private int size;
+    private int liveCount;
+    // ID -> handle + 1, open addressing with linear probing, at most half full
+    private int[] table = new int[32];
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * Registers a device, or re-attaches a new object for a known ID
+     * @param device The device
+     * @return Its handle
+     */
+    public int register(SmartDevice device) {
+        int handle = handleOf(device.getDeviceId());
+        if (handle == NO_HANDLE) {
+            handle = size++;
+            if (handle == ids.length) {
+                ids = Arrays.copyOf(ids, handle * 2);
+                devices = Arrays.copyOf(devices, handle * 2);
+            }
+            ids[handle] = device.getDeviceId();
+            if (size * 2 > table.length) {
+                rehash(table.length * 2); // Inserts the new handle too
+            } else {
+                insert(handle);
+            }
+        }
+        if (devices[handle] == null) {
+            liveCount++;
+        }
+        devices[handle] = device;
+        device.handle = handle;
+        device.deviceId = ids[handle];
+        String name = names.putIfAbsent(device.getDeviceName(), device.getDeviceName());
+        if (name != null) {
+            device.deviceName = name;
+        }
+        return handle;
+    }
+
+    /**
+     * Drops the device object of a handle, e.g. when it is removed or its room
+     * is evicted; the handle stays assigned to the ID
+     * @param handle The handle
+     */
+    public void detach(int handle) {
+        if (handle >= 0 && handle < size && devices[handle] != null) {
+            devices[handle] = null;
+            liveCount--;
+        }
+    }
+
+    /**
+     * @param deviceId A device ID
+     * @return Its handle, or NO_HANDLE if it was never registered
+     */
+    public int handleOf(String deviceId) {
+        int mask = table.length - 1;
+        for (int slot = spread(deviceId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return NO_HANDLE;
+            }
+            String id = ids[entry - 1];
+            if (id == deviceId || id.equals(deviceId)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * @param handle A handle
+     * @return The attached device, or null if it is detached or the handle is unknown
+     */
+    public SmartDevice getDevice(int handle) {
+        return handle >= 0 && handle < size ? devices[handle] : null;
+    }
+
+    /**
+     * @param handle A handle
+     * @return The interned ID the handle belongs to
+     * @throws IllegalArgumentException if the handle was never assigned
+     */
+    public String getDeviceId(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IllegalArgumentException("Unknown device handle " + handle);
+        }
+        return ids[handle];
+    }
+
+    /**
+     * @return Number of handles assigned; every handle is below this
+     */
+    public int getHandleCount() {
+        return size;
+    }
+
+    /**
+     * @return Number of handles with a device attached
+     */
+    public int getDeviceCount() {
+        return liveCount;
+    }
+
+    private void insert(int handle) {
+        int mask = table.length - 1;
+        int slot = spread(ids[handle].hashCode()) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = handle + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int handle = 0; handle < size; handle++) {
+            insert(handle);
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
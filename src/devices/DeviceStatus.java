@@ -0,0 +1,118 @@
+package devices;
+
+import interfaces.EnergyConsumer;
+
+/**
+ * Immutable status of one device as of a state version: its status line and
+ * the property values and energy use it was rendered from. Obtained from
+ * SmartDevice.getStatusSnapshot(), which reuses it until the device changes.
+ */
+public final class DeviceStatus {
+    private final String deviceId;
+    private final String deviceName;
+    private final String deviceType;
+    private final long version;
+    private final DeviceProperty[] properties;
+    private final long[] values;
+    private final String[] texts;
+    private final double energyConsumption;
+    private final String text;
+
+    DeviceStatus(SmartDevice device, long version, String text) {
+        this.deviceId = device.getDeviceId();
+        this.deviceName = device.getDeviceName();
+        this.deviceType = device.getClass().getSimpleName();
+        this.version = version;
+        this.properties = device.getSupportedProperties();
+        this.values = new long[properties.length];
+        this.texts = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            values[i] = device.getPropertyValue(properties[i]);
+            texts[i] = device.getPropertyText(properties[i]);
+        }
+        this.energyConsumption = device instanceof EnergyConsumer
+                ? ((EnergyConsumer) device).getEnergyConsumption() : 0;
+        this.text = text;
+    }
+
+    /**
+     * Reads the numeric value of a property (booleans are 1 or 0)
+     * @param property The property to read
+     * @return The value, or 0 for text-only properties such as a light's color
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public long getPropertyValue(DeviceProperty property) {
+        return values[indexOf(property)];
+    }
+
+    /**
+     * Reads the text value of a property
+     * @param property The property to read
+     * @return The text, or null for numeric-only properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public String getPropertyText(DeviceProperty property) {
+        return texts[indexOf(property)];
+    }
+
+    private int indexOf(DeviceProperty property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] == property) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(deviceType + " has no property " + property);
+    }
+
+    public boolean isOn() {
+        return getPropertyValue(DeviceProperty.POWER) != 0;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * @return Simple class name of the device, e.g. "Light"
+     */
+    public String getDeviceType() {
+        return deviceType;
+    }
+
+    /**
+     * @return The device's state version this status was taken at
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The properties held by this status (do not modify)
+     */
+    public DeviceProperty[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return Energy consumption in watts, or 0 for devices that draw no power
+     */
+    public double getEnergyConsumption() {
+        return energyConsumption;
+    }
+
+    /**
+     * @return The status line, as returned by SmartDevice.getStatus()
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -4,10 +4,16 @@ import interfaces.Controllable;
 import interfaces.EnergyConsumer;
 import exceptions.InvalidDeviceStateException;
 
+import java.io.IOException;
+
 /**
  * Represents a smart light with brightness control
  */
 public class Light extends SmartDevice implements Controllable, EnergyConsumer {
+    private static final DeviceProperty[] PROPERTIES = {
+            DeviceProperty.POWER, DeviceProperty.BRIGHTNESS, DeviceProperty.COLOR, DeviceProperty.MODE
+    };
+
     private int brightness; // 0-100
     private String color;
     private String mode;
@@ -21,27 +27,38 @@ public class Light extends SmartDevice implements Controllable, EnergyConsumer {
 
     @Override
     public void turnOn() {
+        boolean wasOn = isOn;
         isOn = true;
         if (brightness == 0) {
             brightness = 100;
+            notifyStateChanged(DeviceProperty.BRIGHTNESS);
         }
         System.out.println(deviceName + " turned ON (Brightness: " + brightness + "%)");
+        if (!wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
     public void turnOff() {
+        boolean wasOn = isOn;
         isOn = false;
         System.out.println(deviceName + " turned OFF");
+        if (wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
-    public String getStatus() {
-        return String.format("%s | Status: %s | Brightness: %d%% | Color: %s | Energy: %.2fW",
-                deviceName,
-                isOn ? "ON" : "OFF",
-                brightness,
-                color,
-                getEnergyConsumption());
+    public void writeStatus(Appendable out) throws IOException {
+        out.append(deviceName)
+                .append(" | Status: ").append(isOn ? "ON" : "OFF")
+                .append(" | Brightness: ");
+        StatusFormat.appendInt(out, brightness);
+        out.append("% | Color: ").append(color)
+                .append(" | Energy: ");
+        StatusFormat.appendFixed2(out, getEnergyConsumption());
+        out.append('W');
     }
 
     /**
@@ -53,6 +70,8 @@ public class Light extends SmartDevice implements Controllable, EnergyConsumer {
         if (level < 0 || level > 100) {
             throw new InvalidDeviceStateException("Brightness must be between 0 and 100");
         }
+        boolean wasOn = isOn;
+        int oldBrightness = brightness;
         this.brightness = level;
         System.out.println(deviceName + " brightness set to " + level + "%");
 
@@ -61,11 +80,19 @@ public class Light extends SmartDevice implements Controllable, EnergyConsumer {
         } else if (!isOn) {
             isOn = true;
         }
+
+        if (brightness != oldBrightness) {
+            notifyStateChanged(DeviceProperty.BRIGHTNESS);
+        }
+        if (isOn != wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     public void setColor(String color) {
         this.color = color;
         System.out.println(deviceName + " color changed to " + color);
+        notifyStateChanged(DeviceProperty.COLOR);
     }
 
     public void dim() {
@@ -91,10 +118,23 @@ public class Light extends SmartDevice implements Controllable, EnergyConsumer {
         }
     }
 
+    @Override
+    public ValidationCode validateCommand(String command) {
+        switch (command.toLowerCase()) {
+            case "on":
+            case "off":
+            case "dim":
+                return ValidationCode.OK;
+            default:
+                return ValidationCode.UNKNOWN_COMMAND;
+        }
+    }
+
     @Override
     public void setMode(String mode) {
         this.mode = mode;
         System.out.println(deviceName + " mode set to " + mode);
+        notifyStateChanged(DeviceProperty.MODE);
     }
 
     @Override
@@ -108,6 +148,55 @@ public class Light extends SmartDevice implements Controllable, EnergyConsumer {
         return "A+"; // LED lights are very efficient
     }
 
+    @Override
+    public DeviceProperty[] getSupportedProperties() {
+        return PROPERTIES;
+    }
+
+    @Override
+    public long getPropertyValue(DeviceProperty property) {
+        if (property == DeviceProperty.BRIGHTNESS) {
+            return brightness;
+        }
+        if (property == DeviceProperty.COLOR || property == DeviceProperty.MODE) {
+            return 0;
+        }
+        return super.getPropertyValue(property);
+    }
+
+    @Override
+    public String getPropertyText(DeviceProperty property) {
+        switch (property) {
+            case BRIGHTNESS:
+                return null;
+            case COLOR:
+                return color;
+            case MODE:
+                return mode;
+            default:
+                return super.getPropertyText(property);
+        }
+    }
+
+    @Override
+    public void restoreProperty(DeviceProperty property, long value, String text) {
+        switch (property) {
+            case BRIGHTNESS:
+                brightness = (int) value;
+                break;
+            case COLOR:
+                color = text;
+                break;
+            case MODE:
+                mode = text;
+                break;
+            default:
+                super.restoreProperty(property, value, text);
+                return;
+        }
+        notifyStateChanged(property);
+    }
+
     // Getters
     public int getBrightness() {
         return brightness;
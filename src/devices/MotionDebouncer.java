@@ -0,0 +1,227 @@
+package devices;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Input conditioning stage for noisy motion sensors.
+ *
+ * Raw detect/clear events are reported here instead of straight to the
+ * sensor. A detect reaches the sensor immediately (leading edge), but a clear
+ * is only applied once the sensor has been quiet for its debounce window, and
+ * any events in between are coalesced. A flapping sensor therefore produces
+ * at most one detect/clear pair per window, whatever its raw event rate.
+ *
+ * The window comes from the sensor's sensitivity: (11 - sensitivity) times the
+ * base window, so a sensitivity 10 sensor settles in one base window and a
+ * sensitivity 1 sensor in ten.
+ */
+public class MotionDebouncer {
+    public static final long DEFAULT_BASE_WINDOW_MILLIS = 100;
+
+    private final long baseWindowMillis;
+    private final Map<MotionSensor, SensorState> states = new HashMap<>();
+    // Scheduled clears; entries whose sensor has since been rescheduled or cancelled are stale
+    private final PriorityQueue<PendingClear> pendingClears =
+            new PriorityQueue<>((a, b) -> Long.compare(a.deadline, b.deadline));
+    private int pendingCount;
+
+    private long rawEventCount;
+    private long transitionCount;
+    private long suppressedCount;
+
+    public MotionDebouncer() {
+        this(DEFAULT_BASE_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructor for MotionDebouncer
+     * @param baseWindowMillis Debounce window of a sensitivity 10 sensor
+     */
+    public MotionDebouncer(long baseWindowMillis) {
+        if (baseWindowMillis <= 0) {
+            throw new IllegalArgumentException("Base window must be positive");
+        }
+        this.baseWindowMillis = baseWindowMillis;
+    }
+
+    /**
+     * Per-sensor debounce state
+     */
+    private static final class SensorState {
+        final MotionSensor sensor;
+        long clearDeadline = -1; // -1 when no clear is pending
+        long suppressed;
+
+        SensorState(MotionSensor sensor) {
+            this.sensor = sensor;
+        }
+    }
+
+    private static final class PendingClear {
+        final SensorState state;
+        final long deadline;
+
+        PendingClear(SensorState state, long deadline) {
+            this.state = state;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Reports a raw motion detection
+     * @param sensor The sensor that fired
+     * @param now Event time in milliseconds
+     */
+    public synchronized void detect(MotionSensor sensor, long now) {
+        flush(now);
+        SensorState state = stateOf(sensor);
+        rawEventCount++;
+
+        if (!sensor.isOn()) {
+            suppress(state);
+            return;
+        }
+        if (state.clearDeadline >= 0) {
+            // Motion resumed within the window: the pending clear is absorbed
+            cancelClear(state);
+            suppress(state);
+        }
+        if (sensor.isMotionDetected()) {
+            suppress(state);
+            return;
+        }
+        transitionCount++;
+        sensor.detectMotion(now);
+    }
+
+    /**
+     * Reports a raw motion clear; applied once the sensor stays quiet for its window
+     * @param sensor The sensor that cleared
+     * @param now Event time in milliseconds
+     */
+    public synchronized void clear(MotionSensor sensor, long now) {
+        flush(now);
+        SensorState state = stateOf(sensor);
+        rawEventCount++;
+
+        if (!sensor.isMotionDetected()) {
+            suppress(state);
+            return;
+        }
+        if (state.clearDeadline >= 0) {
+            cancelClear(state);
+            suppress(state); // Coalesced into the rescheduled clear
+        }
+        state.clearDeadline = now + getWindow(sensor);
+        pendingClears.add(new PendingClear(state, state.clearDeadline));
+        pendingCount++;
+    }
+
+    public void detect(MotionSensor sensor) {
+        detect(sensor, System.currentTimeMillis());
+    }
+
+    public void clear(MotionSensor sensor) {
+        clear(sensor, System.currentTimeMillis());
+    }
+
+    /**
+     * Applies clears whose debounce window has elapsed; call periodically
+     * (e.g. once per automation cycle) so quiet sensors settle without new events
+     * @param now Current time in milliseconds
+     * @return Number of sensors cleared
+     */
+    public synchronized int poll(long now) {
+        return flush(now);
+    }
+
+    private int flush(long now) {
+        int cleared = 0;
+        while (!pendingClears.isEmpty() && pendingClears.peek().deadline <= now) {
+            PendingClear pending = pendingClears.poll();
+            SensorState state = pending.state;
+            if (state.clearDeadline != pending.deadline) {
+                continue; // Stale entry
+            }
+            cancelClear(state);
+            if (state.sensor.isMotionDetected()) {
+                transitionCount++;
+                state.sensor.clearMotion();
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+
+    private void cancelClear(SensorState state) {
+        state.clearDeadline = -1;
+        pendingCount--;
+    }
+
+    private SensorState stateOf(MotionSensor sensor) {
+        SensorState state = states.get(sensor);
+        if (state == null) {
+            state = new SensorState(sensor);
+            states.put(sensor, state);
+        }
+        return state;
+    }
+
+    private void suppress(SensorState state) {
+        state.suppressed++;
+        suppressedCount++;
+    }
+
+    /**
+     * @return Debounce window for the sensor at its current sensitivity
+     */
+    public long getWindow(MotionSensor sensor) {
+        return (11 - sensor.getSensitivity()) * baseWindowMillis;
+    }
+
+    /**
+     * Stops tracking a sensor, e.g. when it is removed from its room
+     * @param sensor The sensor to forget
+     */
+    public synchronized void forget(MotionSensor sensor) {
+        SensorState state = states.remove(sensor);
+        if (state != null && state.clearDeadline >= 0) {
+            cancelClear(state);
+        }
+    }
+
+    public synchronized long getRawEventCount() {
+        return rawEventCount;
+    }
+
+    /**
+     * @return Number of detect/clear transitions actually applied to sensors
+     */
+    public synchronized long getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * @return Number of raw events absorbed without reaching a sensor
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public synchronized long getSuppressedCount(MotionSensor sensor) {
+        SensorState state = states.get(sensor);
+        return state == null ? 0 : state.suppressed;
+    }
+
+    public synchronized int getPendingClearCount() {
+        return pendingCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Motion debouncer: %d raw event(s), %d transition(s), %d suppressed, %d pending clear(s)",
+                rawEventCount, transitionCount, suppressedCount, pendingCount);
+    }
+}
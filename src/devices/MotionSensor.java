@@ -2,10 +2,16 @@ package devices;
 
 import interfaces.Controllable;
 
+import java.io.IOException;
+
 /**
  * Represents a motion sensor that detects movement
  */
 public class MotionSensor extends SmartDevice implements Controllable {
+    private static final DeviceProperty[] PROPERTIES = {
+            DeviceProperty.POWER, DeviceProperty.MOTION, DeviceProperty.SENSITIVITY
+    };
+
     private boolean motionDetected;
     private int sensitivity; // 1-10
     private long lastDetectionTime;
@@ -19,39 +25,64 @@ public class MotionSensor extends SmartDevice implements Controllable {
 
     @Override
     public void turnOn() {
+        boolean wasOn = isOn;
         isOn = true;
         System.out.println(deviceName + " activated - Monitoring for motion...");
+        if (!wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
     public void turnOff() {
+        boolean wasOn = isOn;
+        boolean hadMotion = motionDetected;
         isOn = false;
         motionDetected = false;
         System.out.println(deviceName + " deactivated");
+        if (wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
+        if (hadMotion) {
+            notifyStateChanged(DeviceProperty.MOTION);
+        }
     }
 
     @Override
-    public String getStatus() {
-        return String.format("%s | Status: %s | Motion: %s | Sensitivity: %d",
-                deviceName,
-                isOn ? "ACTIVE" : "INACTIVE",
-                motionDetected ? "DETECTED" : "None",
-                sensitivity);
+    public void writeStatus(Appendable out) throws IOException {
+        out.append(deviceName)
+                .append(" | Status: ").append(isOn ? "ACTIVE" : "INACTIVE")
+                .append(" | Motion: ").append(motionDetected ? "DETECTED" : "None")
+                .append(" | Sensitivity: ");
+        StatusFormat.appendInt(out, sensitivity);
     }
 
     public void detectMotion() {
+        detectMotion(System.currentTimeMillis());
+    }
+
+    /**
+     * Detects motion at a given time, e.g. a virtual time during replay
+     * @param timestamp Detection time in milliseconds
+     */
+    public void detectMotion(long timestamp) {
         if (!isOn) {
             System.out.println(deviceName + " is not active");
             return;
         }
         this.motionDetected = true;
-        this.lastDetectionTime = System.currentTimeMillis();
+        this.lastDetectionTime = timestamp;
         System.out.println(deviceName + " MOTION DETECTED!");
+        notifyStateChanged(DeviceProperty.MOTION);
     }
 
     public void clearMotion() {
+        boolean hadMotion = motionDetected;
         this.motionDetected = false;
         System.out.println(deviceName + " motion cleared");
+        if (hadMotion) {
+            notifyStateChanged(DeviceProperty.MOTION);
+        }
     }
 
     public void setSensitivity(int level) {
@@ -61,6 +92,7 @@ public class MotionSensor extends SmartDevice implements Controllable {
         }
         this.sensitivity = level;
         System.out.println(deviceName + " sensitivity set to " + level);
+        notifyStateChanged(DeviceProperty.SENSITIVITY);
     }
 
     @Override
@@ -83,11 +115,66 @@ public class MotionSensor extends SmartDevice implements Controllable {
         }
     }
 
+    @Override
+    public ValidationCode validateCommand(String command) {
+        switch (command.toLowerCase()) {
+            case "on":
+            case "off":
+            case "clear":
+                return ValidationCode.OK;
+            case "detect":
+                return isOn ? ValidationCode.OK : ValidationCode.DEVICE_OFF;
+            default:
+                return ValidationCode.UNKNOWN_COMMAND;
+        }
+    }
+
     @Override
     public void setMode(String mode) {
         System.out.println(deviceName + " mode set to " + mode);
     }
 
+    @Override
+    public DeviceProperty[] getSupportedProperties() {
+        return PROPERTIES;
+    }
+
+    @Override
+    public long getPropertyValue(DeviceProperty property) {
+        switch (property) {
+            case MOTION:
+                return motionDetected ? 1 : 0;
+            case SENSITIVITY:
+                return sensitivity;
+            default:
+                return super.getPropertyValue(property);
+        }
+    }
+
+    @Override
+    public String getPropertyText(DeviceProperty property) {
+        if (property == DeviceProperty.MOTION || property == DeviceProperty.SENSITIVITY) {
+            return null;
+        }
+        return super.getPropertyText(property);
+    }
+
+    @Override
+    public void restoreProperty(DeviceProperty property, long value, String text) {
+        switch (property) {
+            case MOTION:
+                motionDetected = value != 0;
+                break;
+            case SENSITIVITY:
+                sensitivity = (int) value;
+                break;
+            default:
+                super.restoreProperty(property, value, text);
+                return;
+        }
+        notifyStateChanged(property);
+    }
+
     // Getters
     public boolean isMotionDetected() {
         return motionDetected && isOn;
@@ -96,4 +183,11 @@ public class MotionSensor extends SmartDevice implements Controllable {
     public int getSensitivity() {
         return sensitivity;
     }
+
+    /**
+     * @return Time of the last detection in milliseconds, or 0 if none
+     */
+    public long getLastDetectionTime() {
+        return lastDetectionTime;
+    }
 }
\ No newline at end of file
@@ -1,12 +1,37 @@
 package devices;
 
+import interfaces.DeviceStateListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Abstract base class for all smart devices in the home automation system.
  */
 public abstract class SmartDevice {
+    private static final DeviceProperty[] BASE_PROPERTIES = { DeviceProperty.POWER };
+
     protected String deviceId;
     protected String deviceName;
     protected boolean isOn;
+    int handle = DeviceRegistry.NO_HANDLE; // Assigned by the home's DeviceRegistry
+    private final List<DeviceStateListener> stateListeners = new CopyOnWriteArrayList<>();
+    // Bumped on every state change; the cached status is reused while it matches
+    private volatile long stateVersion;
+    private volatile DeviceStatus cachedStatus;
+
+    private static final AtomicLongFieldUpdater<SmartDevice> STATE_VERSION =
+            AtomicLongFieldUpdater.newUpdater(SmartDevice.class, "stateVersion");
+    private static final LongAdder statusCacheHits = new LongAdder();
+    private static final LongAdder statusCacheMisses = new LongAdder();
+
+    // Notifications held back on this thread until the outermost endDeferredNotifications()
+    private static final ThreadLocal<DeferredNotifications> deferred = new ThreadLocal<>();
 
     /**
      * Constructor for SmartDevice
@@ -30,16 +55,217 @@ public abstract class SmartDevice {
     public abstract void turnOff();
 
     /**
-     * Gets the current status of the device
+     * Gets the current status of the device. The line is rendered once per
+     * state change and reused until the next one.
      * @return String representation of device status
      */
-    public abstract String getStatus();
+    public String getStatus() {
+        return getStatusSnapshot().getText();
+    }
+
+    /**
+     * Gets the current status line together with the values it shows
+     * @return The cached status, rebuilt only if the device changed since
+     */
+    public DeviceStatus getStatusSnapshot() {
+        long version = stateVersion; // Read first: a change during the rebuild leaves the entry stale
+        DeviceStatus status = cachedStatus;
+        if (status != null && status.getVersion() == version) {
+            statusCacheHits.increment();
+            return status;
+        }
+        statusCacheMisses.increment();
+        StringBuilder text = new StringBuilder(96);
+        try {
+            writeStatus(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        status = new DeviceStatus(this, version, text.toString());
+        cachedStatus = status;
+        return status;
+    }
+
+    /**
+     * @return Number of changes made to the device's state so far
+     */
+    public long getStateVersion() {
+        return stateVersion;
+    }
+
+    /**
+     * @return Status requests answered from a device's cached status, across all devices
+     */
+    public static long getStatusCacheHits() {
+        return statusCacheHits.sum();
+    }
+
+    /**
+     * @return Status requests that had to render the status, across all devices
+     */
+    public static long getStatusCacheMisses() {
+        return statusCacheMisses.sum();
+    }
+
+    /**
+     * Resets the status cache hit and miss counters
+     */
+    public static void resetStatusCacheStats() {
+        statusCacheHits.reset();
+        statusCacheMisses.reset();
+    }
+
+    /**
+     * Writes the current status of the device into a caller-supplied buffer.
+     * This is the allocation-free path used by large reports.
+     * @param out Destination for the status line
+     * @throws IOException if the destination fails
+     */
+    public abstract void writeStatus(Appendable out) throws IOException;
+
+    /**
+     * Gets the properties this device type reports and can restore
+     * @return The supported properties (do not modify)
+     */
+    public DeviceProperty[] getSupportedProperties() {
+        return BASE_PROPERTIES;
+    }
+
+    /**
+     * Reads the numeric value of a property (booleans are 1 or 0)
+     * @param property The property to read
+     * @return The current value, or 0 for text-only properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public long getPropertyValue(DeviceProperty property) {
+        if (property == DeviceProperty.POWER) {
+            return isOn ? 1 : 0;
+        }
+        throw new IllegalArgumentException(getClass().getSimpleName() + " has no property " + property);
+    }
+
+    /**
+     * Reads the text value of a property
+     * @param property The property to read
+     * @return The current text value, or null for numeric-only properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public String getPropertyText(DeviceProperty property) {
+        if (property == DeviceProperty.POWER) {
+            return null;
+        }
+        throw new IllegalArgumentException(getClass().getSimpleName() + " has no property " + property);
+    }
+
+    /**
+     * Sets a property directly to a previously captured value, without
+     * validation, side effects or console output, then notifies listeners.
+     * Used to replay replicated or recorded state.
+     * @param property The property to set
+     * @param value The numeric value (booleans are 1 or 0)
+     * @param text The text value, for text properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public void restoreProperty(DeviceProperty property, long value, String text) {
+        if (property != DeviceProperty.POWER) {
+            throw new IllegalArgumentException(getClass().getSimpleName() + " has no property " + property);
+        }
+        isOn = value != 0;
+        notifyStateChanged(property);
+    }
+
+    /**
+     * Registers a listener to be notified of state changes
+     * @param listener The listener to add
+     */
+    public void addStateListener(DeviceStateListener listener) {
+        stateListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a state listener
+     * @param listener The listener to remove
+     */
+    public void removeStateListener(DeviceStateListener listener) {
+        stateListeners.remove(listener);
+    }
+
+    /**
+     * @return Number of registered state listeners
+     */
+    public int getStateListenerCount() {
+        return stateListeners.size();
+    }
+
+    /**
+     * Notifies all listeners that a property has changed.
+     * Subclasses must call this after every mutation of their state.
+     * @param property The property that changed
+     */
+    protected void notifyStateChanged(DeviceProperty property) {
+        STATE_VERSION.incrementAndGet(this); // Even while deferred: the state itself has already changed
+        DeferredNotifications pending = deferred.get();
+        if (pending != null) {
+            pending.devices.add(this);
+            pending.properties.add(property);
+            return;
+        }
+        for (DeviceStateListener listener : stateListeners) {
+            listener.onStateChanged(this, property);
+        }
+    }
+
+    /**
+     * Holds back state notifications made on the current thread until the
+     * matching endDeferredNotifications(), so a multi-device update is only
+     * seen by listeners once all of its writes are done. Calls may be nested.
+     */
+    public static void beginDeferredNotifications() {
+        DeferredNotifications pending = deferred.get();
+        if (pending == null) {
+            pending = new DeferredNotifications();
+            deferred.set(pending);
+        }
+        pending.depth++;
+    }
+
+    /**
+     * Ends a deferral started by beginDeferredNotifications(); the outermost
+     * call delivers every held notification in order
+     */
+    public static void endDeferredNotifications() {
+        DeferredNotifications pending = deferred.get();
+        if (pending == null) {
+            throw new IllegalStateException("No deferred notifications in progress");
+        }
+        if (--pending.depth > 0) {
+            return;
+        }
+        deferred.remove();
+        for (int i = 0; i < pending.devices.size(); i++) {
+            pending.devices.get(i).notifyStateChanged(pending.properties.get(i));
+        }
+    }
+
+    private static final class DeferredNotifications {
+        int depth;
+        final List<SmartDevice> devices = new ArrayList<>();
+        final List<DeviceProperty> properties = new ArrayList<>();
+    }
 
     // Getters
     public String getDeviceId() {
         return deviceId;
     }
 
+    /**
+     * @return Dense handle assigned by the registry of the device's home, or
+     *         DeviceRegistry.NO_HANDLE if the device is not in a home
+     */
+    public int getHandle() {
+        return handle;
+    }
+
     public String getDeviceName() {
         return deviceName;
     }
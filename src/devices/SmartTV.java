@@ -4,10 +4,18 @@ import interfaces.Controllable;
 import interfaces.EnergyConsumer;
 import exceptions.InvalidDeviceStateException;
 
+import java.io.IOException;
+
 /**
  * Represents a smart TV with channel and volume control
  */
 public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer {
+    private static final DeviceProperty[] PROPERTIES = {
+            DeviceProperty.POWER, DeviceProperty.CHANNEL, DeviceProperty.VOLUME, DeviceProperty.STREAMING
+    };
+    private static final int MIN_CHANNEL = 1;
+    private static final int MAX_CHANNEL = 999;
+
     private int currentChannel;
     private int volume;
     private boolean isStreaming;
@@ -23,41 +31,60 @@ public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer
 
     @Override
     public void turnOn() {
+        boolean wasOn = isOn;
         isOn = true;
         System.out.println(deviceName + " turned ON - Channel: " + currentChannel);
+        if (!wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
     public void turnOff() {
+        boolean wasOn = isOn;
+        boolean wasStreaming = isStreaming;
         isOn = false;
         isStreaming = false;
         System.out.println(deviceName + " turned OFF");
+        if (wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
+        if (wasStreaming) {
+            notifyStateChanged(DeviceProperty.STREAMING);
+        }
     }
 
     @Override
-    public String getStatus() {
-        String status = String.format("%s | Status: %s | Channel: %d | Volume: %d | Energy: %.2fW",
-                deviceName,
-                isOn ? "ON" : "OFF",
-                currentChannel,
-                volume,
-                getEnergyConsumption());
+    public void writeStatus(Appendable out) throws IOException {
+        out.append(deviceName)
+                .append(" | Status: ").append(isOn ? "ON" : "OFF")
+                .append(" | Channel: ");
+        StatusFormat.appendInt(out, currentChannel);
+        out.append(" | Volume: ");
+        StatusFormat.appendInt(out, volume);
+        out.append(" | Energy: ");
+        StatusFormat.appendFixed2(out, getEnergyConsumption());
+        out.append('W');
         if (isStreaming) {
-            status += " | Streaming: " + streamingApp;
+            out.append(" | Streaming: ").append(streamingApp);
         }
-        return status;
     }
 
     public void changeChannel(int channel) {
         if (!isOn) {
             throw new InvalidDeviceStateException("TV must be on to change channel");
         }
-        if (channel < 1 || channel > 999) {
+        if (channel < MIN_CHANNEL || channel > MAX_CHANNEL) {
             throw new InvalidDeviceStateException("Invalid channel number");
         }
+        boolean wasStreaming = isStreaming;
         this.currentChannel = channel;
         this.isStreaming = false;
         System.out.println(deviceName + " changed to channel " + channel);
+        notifyStateChanged(DeviceProperty.CHANNEL);
+        if (wasStreaming) {
+            notifyStateChanged(DeviceProperty.STREAMING);
+        }
     }
 
     public void adjustVolume(int change) {
@@ -68,6 +95,7 @@ public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer
         if (volume < 0) volume = 0;
         if (volume > 100) volume = 100;
         System.out.println(deviceName + " volume set to " + volume);
+        notifyStateChanged(DeviceProperty.VOLUME);
     }
 
     public void startStreaming(String app) {
@@ -77,12 +105,14 @@ public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer
         this.isStreaming = true;
         this.streamingApp = app;
         System.out.println(deviceName + " now streaming from " + app);
+        notifyStateChanged(DeviceProperty.STREAMING);
     }
 
     public void stopStreaming() {
         this.isStreaming = false;
         this.streamingApp = "none";
         System.out.println(deviceName + " stopped streaming");
+        notifyStateChanged(DeviceProperty.STREAMING);
     }
 
     @Override
@@ -116,6 +146,31 @@ public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer
         }
     }
 
+    @Override
+    public ValidationCode validateCommand(String command) {
+        String[] parts = command.split(" ");
+        switch (parts[0].toLowerCase()) {
+            case "on":
+            case "off":
+                return ValidationCode.OK;
+            case "channel": {
+                ValidationCode code = CommandArgs.checkInt(CommandArgs.argument(parts), MIN_CHANNEL, MAX_CHANNEL);
+                boolean parsed = code == ValidationCode.OK || code == ValidationCode.OUT_OF_RANGE;
+                return parsed && !isOn ? ValidationCode.DEVICE_OFF : code;
+            }
+            case "volumeup":
+            case "volumedown":
+                return isOn ? ValidationCode.OK : ValidationCode.DEVICE_OFF;
+            case "stream":
+                if (parts.length < 2) {
+                    return ValidationCode.MISSING_ARGUMENT;
+                }
+                return isOn ? ValidationCode.OK : ValidationCode.DEVICE_OFF;
+            default:
+                return ValidationCode.UNKNOWN_COMMAND;
+        }
+    }
+
     @Override
     public void setMode(String mode) {
         System.out.println(deviceName + " mode set to " + mode);
@@ -132,6 +187,58 @@ public class SmartTV extends SmartDevice implements Controllable, EnergyConsumer
         return "B";
     }
 
+    @Override
+    public DeviceProperty[] getSupportedProperties() {
+        return PROPERTIES;
+    }
+
+    @Override
+    public long getPropertyValue(DeviceProperty property) {
+        switch (property) {
+            case CHANNEL:
+                return currentChannel;
+            case VOLUME:
+                return volume;
+            case STREAMING:
+                return isStreaming ? 1 : 0;
+            default:
+                return super.getPropertyValue(property);
+        }
+    }
+
+    @Override
+    public String getPropertyText(DeviceProperty property) {
+        switch (property) {
+            case CHANNEL:
+            case VOLUME:
+                return null;
+            case STREAMING:
+                return streamingApp;
+            default:
+                return super.getPropertyText(property);
+        }
+    }
+
+    @Override
+    public void restoreProperty(DeviceProperty property, long value, String text) {
+        switch (property) {
+            case CHANNEL:
+                currentChannel = (int) value;
+                break;
+            case VOLUME:
+                volume = (int) value;
+                break;
+            case STREAMING:
+                isStreaming = value != 0;
+                streamingApp = text != null ? text : "none";
+                break;
+            default:
+                super.restoreProperty(property, value, text);
+                return;
+        }
+        notifyStateChanged(property);
+    }
+
     // Getters
     public int getCurrentChannel() {
         return currentChannel;
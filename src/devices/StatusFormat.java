@@ -0,0 +1,58 @@
+package devices;
+
+import java.io.IOException;
+
+/**
+ * Number formatting helpers for status rendering that write straight into an
+ * Appendable, without String.format parsing or temporary strings
+ */
+public final class StatusFormat {
+
+    private StatusFormat() {
+    }
+
+    /**
+     * Appends a whole number in decimal
+     * @param out Destination
+     * @param value The number to write
+     */
+    public static void appendInt(Appendable out, long value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            if (value == Long.MIN_VALUE) {
+                out.append("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.append((char) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Appends a number with exactly two decimals, like "%.2f"
+     * @param out Destination
+     * @param value The number to write
+     */
+    public static void appendFixed2(Appendable out, double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(Double.toString(value));
+            return;
+        }
+        long hundredths = Math.round(Math.abs(value) * 100);
+        if (value < 0 && hundredths != 0) {
+            out.append('-');
+        }
+        appendInt(out, hundredths / 100);
+        out.append('.');
+        long fraction = hundredths % 100;
+        out.append((char) ('0' + fraction / 10));
+        out.append((char) ('0' + fraction % 10));
+    }
+}
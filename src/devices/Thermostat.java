@@ -5,6 +5,7 @@ import interfaces.EnergyConsumer;
 import interfaces.Schedulable;
 import exceptions.InvalidDeviceStateException;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +13,13 @@ import java.util.Map;
  * Represents a smart thermostat with temperature control
  */
 public class Thermostat extends SmartDevice implements Controllable, EnergyConsumer, Schedulable {
+    private static final DeviceProperty[] PROPERTIES = {
+            DeviceProperty.POWER, DeviceProperty.CURRENT_TEMPERATURE,
+            DeviceProperty.TARGET_TEMPERATURE, DeviceProperty.MODE
+    };
+    private static final int MIN_TEMPERATURE = 10;
+    private static final int MAX_TEMPERATURE = 35;
+
     private int currentTemperature;
     private int targetTemperature;
     private String mode; // "heat", "cool", "auto"
@@ -27,33 +35,45 @@ public class Thermostat extends SmartDevice implements Controllable, EnergyConsu
 
     @Override
     public void turnOn() {
+        boolean wasOn = isOn;
         isOn = true;
         System.out.println(deviceName + " turned ON - Mode: " + mode);
+        if (!wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
     public void turnOff() {
+        boolean wasOn = isOn;
         isOn = false;
         System.out.println(deviceName + " turned OFF");
+        if (wasOn) {
+            notifyStateChanged(DeviceProperty.POWER);
+        }
     }
 
     @Override
-    public String getStatus() {
-        return String.format("%s | Status: %s | Current: %d°C | Target: %d°C | Mode: %s | Energy: %.2fW",
-                deviceName,
-                isOn ? "ON" : "OFF",
-                currentTemperature,
-                targetTemperature,
-                mode,
-                getEnergyConsumption());
+    public void writeStatus(Appendable out) throws IOException {
+        out.append(deviceName)
+                .append(" | Status: ").append(isOn ? "ON" : "OFF")
+                .append(" | Current: ");
+        StatusFormat.appendInt(out, currentTemperature);
+        out.append("°C | Target: ");
+        StatusFormat.appendInt(out, targetTemperature);
+        out.append("°C | Mode: ").append(mode)
+                .append(" | Energy: ");
+        StatusFormat.appendFixed2(out, getEnergyConsumption());
+        out.append('W');
     }
 
     public void setTemperature(int temperature) {
-        if (temperature < 10 || temperature > 35) {
+        if (temperature < MIN_TEMPERATURE || temperature > MAX_TEMPERATURE) {
             throw new InvalidDeviceStateException("Temperature must be between 10°C and 35°C");
         }
         this.targetTemperature = temperature;
         System.out.println(deviceName + " target temperature set to " + temperature + "°C");
+        notifyStateChanged(DeviceProperty.TARGET_TEMPERATURE);
 
         // Simulate temperature adjustment
         adjustTemperature();
@@ -65,9 +85,11 @@ public class Thermostat extends SmartDevice implements Controllable, EnergyConsu
         if (currentTemperature < targetTemperature) {
             currentTemperature++;
             System.out.println(deviceName + " heating... Current: " + currentTemperature + "°C");
+            notifyStateChanged(DeviceProperty.CURRENT_TEMPERATURE);
         } else if (currentTemperature > targetTemperature) {
             currentTemperature--;
             System.out.println(deviceName + " cooling... Current: " + currentTemperature + "°C");
+            notifyStateChanged(DeviceProperty.CURRENT_TEMPERATURE);
         } else {
             System.out.println(deviceName + " temperature reached target.");
         }
@@ -98,16 +120,42 @@ public class Thermostat extends SmartDevice implements Controllable, EnergyConsu
         }
     }
 
+    @Override
+    public ValidationCode validateCommand(String command) {
+        String[] parts = command.split(" ");
+        switch (parts[0].toLowerCase()) {
+            case "on":
+            case "off":
+                return ValidationCode.OK;
+            case "settemp":
+                return CommandArgs.checkInt(CommandArgs.argument(parts), MIN_TEMPERATURE, MAX_TEMPERATURE);
+            case "setmode": {
+                String mode = CommandArgs.argument(parts);
+                if (mode == null) {
+                    return ValidationCode.MISSING_ARGUMENT;
+                }
+                return isValidMode(mode) ? ValidationCode.OK : ValidationCode.INVALID_MODE;
+            }
+            default:
+                return ValidationCode.UNKNOWN_COMMAND;
+        }
+    }
+
     @Override
     public void setMode(String mode) {
-        if (mode.equals("heat") || mode.equals("cool") || mode.equals("auto")) {
+        if (isValidMode(mode)) {
             this.mode = mode;
             System.out.println(deviceName + " mode set to " + mode);
+            notifyStateChanged(DeviceProperty.MODE);
         } else {
             throw new InvalidDeviceStateException("Invalid mode. Use: heat, cool, or auto");
         }
     }
 
+    private static boolean isValidMode(String mode) {
+        return mode.equals("heat") || mode.equals("cool") || mode.equals("auto");
+    }
+
     @Override
     public double getEnergyConsumption() {
         if (!isOn) return 0;
@@ -136,6 +184,57 @@ public class Thermostat extends SmartDevice implements Controllable, EnergyConsu
         System.out.println("Scheduled task " + taskId + " cancelled for " + deviceName);
     }
 
+    @Override
+    public DeviceProperty[] getSupportedProperties() {
+        return PROPERTIES;
+    }
+
+    @Override
+    public long getPropertyValue(DeviceProperty property) {
+        switch (property) {
+            case CURRENT_TEMPERATURE:
+                return currentTemperature;
+            case TARGET_TEMPERATURE:
+                return targetTemperature;
+            case MODE:
+                return 0;
+            default:
+                return super.getPropertyValue(property);
+        }
+    }
+
+    @Override
+    public String getPropertyText(DeviceProperty property) {
+        switch (property) {
+            case CURRENT_TEMPERATURE:
+            case TARGET_TEMPERATURE:
+                return null;
+            case MODE:
+                return mode;
+            default:
+                return super.getPropertyText(property);
+        }
+    }
+
+    @Override
+    public void restoreProperty(DeviceProperty property, long value, String text) {
+        switch (property) {
+            case CURRENT_TEMPERATURE:
+                currentTemperature = (int) value;
+                break;
+            case TARGET_TEMPERATURE:
+                targetTemperature = (int) value;
+                break;
+            case MODE:
+                mode = text;
+                break;
+            default:
+                super.restoreProperty(property, value, text);
+                return;
+        }
+        notifyStateChanged(property);
+    }
+
     // Getters
     public int getCurrentTemperature() {
         return currentTemperature;
@@ -0,0 +1,31 @@
+package devices;
+
+/**
+ * Result of checking a command against a device's constraints without running it
+ */
+public enum ValidationCode {
+    OK("valid"),
+    UNKNOWN_COMMAND("unknown command"),
+    MISSING_ARGUMENT("missing argument"),
+    MALFORMED_NUMBER("argument is not a whole number"),
+    OUT_OF_RANGE("value out of range"),
+    INVALID_MODE("invalid mode"),
+    DEVICE_OFF("device must be on");
+
+    private final String description;
+
+    ValidationCode(String description) {
+        this.description = description;
+    }
+
+    public boolean isValid() {
+        return this == OK;
+    }
+
+    /**
+     * @return Short, constant description of the problem
+     */
+    public String getDescription() {
+        return description;
+    }
+}
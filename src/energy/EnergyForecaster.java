@@ -0,0 +1,272 @@
+package energy;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import interfaces.EnergyConsumer;
+import structure.Home;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.LongSupplier;
+
+/**
+ * Forecasts energy use from a stream of per-device power readings.
+ *
+ * Every energy consumer and every room has an exponential smoothing model
+ * with daily seasonality (a level plus one offset per time-of-day slot), so
+ * memory is constant per model and each reading is an O(1) update. Readings
+ * can be pushed with record(), polled with sample(), or taken from device
+ * state changes with listen(). Home forecasts sum the room models, so they
+ * cost O(rooms).
+ */
+public class EnergyForecaster implements DeviceStateListener {
+    /** Default number of time-of-day slots (hourly) */
+    public static final int DEFAULT_SLOTS = 24;
+    /** Default time constant of the level (the daily mean), in milliseconds */
+    public static final long DEFAULT_LEVEL_TAU_MILLIS = 24L * 60 * 60 * 1000;
+    /** Default time constant of the daily pattern, in milliseconds */
+    public static final long DEFAULT_SEASON_TAU_MILLIS = 3L * 24 * 60 * 60 * 1000;
+    /** How long the current reading keeps influencing a forecast, in milliseconds */
+    public static final long PERSISTENCE_TAU_MILLIS = 30L * 60 * 1000;
+
+    private static final double WATT_MILLIS_PER_KWH = 3_600_000_000.0;
+
+    private final SmartDevice[] devices;
+    private final int[] roomOfDevice;
+    private final String[] roomNames;
+    private final Map<SmartDevice, Integer> deviceIndex = new IdentityHashMap<>();
+    private final Map<String, Integer> roomIndex = new HashMap<>();
+
+    private SeasonalModels deviceModels;
+    private SeasonalModels roomModels;
+    private double[] deviceWatts;
+    private double[] roomWatts;
+    private LongSupplier clock = System::currentTimeMillis;
+    private boolean listening;
+    private long readingCount;
+
+    public EnergyForecaster(Home home) {
+        this(home, DEFAULT_SLOTS, DEFAULT_LEVEL_TAU_MILLIS, DEFAULT_SEASON_TAU_MILLIS);
+    }
+
+    /**
+     * Constructor for EnergyForecaster; models the home's current energy consumers
+     * @param home The home to forecast
+     * @param slots Time-of-day slots per day (must divide a day evenly into milliseconds)
+     * @param levelTauMillis How quickly the daily mean follows new readings
+     * @param seasonTauMillis How quickly the daily pattern follows new readings
+     */
+    public EnergyForecaster(Home home, int slots, long levelTauMillis, long seasonTauMillis) {
+        if (slots <= 0 || SeasonalModels.DAY_MILLIS % slots != 0) {
+            throw new IllegalArgumentException("Slots must divide a day evenly: " + slots);
+        }
+        List<SmartDevice> consumers = new ArrayList<>();
+        List<Integer> rooms = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Room room : home.getRooms().values()) {
+            int r = names.size();
+            names.add(room.getRoomName());
+            roomIndex.put(room.getRoomName(), r);
+            for (SmartDevice device : room.getDevices()) {
+                if (device instanceof EnergyConsumer) {
+                    deviceIndex.put(device, consumers.size());
+                    consumers.add(device);
+                    rooms.add(r);
+                }
+            }
+        }
+        devices = consumers.toArray(new SmartDevice[0]);
+        roomNames = names.toArray(new String[0]);
+        roomOfDevice = new int[devices.length];
+        for (int d = 0; d < devices.length; d++) {
+            roomOfDevice[d] = rooms.get(d);
+        }
+
+        long dayOffset = TimeZone.getDefault().getRawOffset(); // Slots follow local time of day
+        deviceModels = new SeasonalModels(devices.length, slots, levelTauMillis, seasonTauMillis,
+                PERSISTENCE_TAU_MILLIS, dayOffset);
+        roomModels = new SeasonalModels(roomNames.length, slots, levelTauMillis, seasonTauMillis,
+                PERSISTENCE_TAU_MILLIS, dayOffset);
+        deviceWatts = new double[devices.length];
+        roomWatts = new double[roomNames.length];
+    }
+
+    // ---- Input ----
+
+    /**
+     * Records a power reading
+     * @param device The device read
+     * @param watts Its power draw
+     * @param timestamp Reading time in milliseconds
+     * @return False if the device is not modelled
+     */
+    public synchronized boolean record(SmartDevice device, double watts, long timestamp) {
+        Integer d = deviceIndex.get(device);
+        if (d == null) {
+            return false;
+        }
+        int r = roomOfDevice[d];
+        roomWatts[r] += watts - deviceWatts[d];
+        deviceWatts[d] = watts;
+        deviceModels.update(d, timestamp, watts);
+        roomModels.update(r, timestamp, roomWatts[r]);
+        readingCount++;
+        return true;
+    }
+
+    /**
+     * Reads every modelled device once
+     * @param now Reading time in milliseconds
+     */
+    public synchronized void sample(long now) {
+        for (SmartDevice device : devices) {
+            record(device, ((EnergyConsumer) device).getEnergyConsumption(), now);
+        }
+    }
+
+    /**
+     * Records a reading whenever a modelled device changes state, timed by the forecaster clock
+     */
+    public synchronized void listen() {
+        if (!listening) {
+            listening = true;
+            long now = clock.getAsLong();
+            for (SmartDevice device : devices) {
+                device.addStateListener(this);
+                record(device, ((EnergyConsumer) device).getEnergyConsumption(), now);
+            }
+        }
+    }
+
+    /**
+     * Stops listening to device changes
+     */
+    public synchronized void close() {
+        if (listening) {
+            listening = false;
+            for (SmartDevice device : devices) {
+                device.removeStateListener(this);
+            }
+        }
+    }
+
+    @Override
+    public void onStateChanged(SmartDevice device, DeviceProperty property) {
+        record(device, ((EnergyConsumer) device).getEnergyConsumption(), clock.getAsLong());
+    }
+
+    /**
+     * Replaces the clock used for listened readings and forecasts
+     * @param clock Supplier of the current time in milliseconds
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    // ---- Forecasts ----
+
+    /**
+     * @param minutes Forecast horizon
+     * @return Expected home consumption over the next minutes, in kWh
+     */
+    public synchronized double forecastKWh(int minutes) {
+        long now = clock.getAsLong();
+        long horizon = minutes * 60_000L;
+        double energy = 0;
+        for (int r = 0; r < roomNames.length; r++) {
+            energy += roomModels.forecastEnergy(r, now, horizon);
+        }
+        return energy / WATT_MILLIS_PER_KWH;
+    }
+
+    /**
+     * @param roomName The room
+     * @param minutes Forecast horizon
+     * @return Expected room consumption over the next minutes, in kWh
+     */
+    public synchronized double forecastRoomKWh(String roomName, int minutes) {
+        Integer r = roomIndex.get(roomName);
+        if (r == null) {
+            throw new IllegalArgumentException("Room not modelled: " + roomName);
+        }
+        return roomModels.forecastEnergy(r, clock.getAsLong(), minutes * 60_000L) / WATT_MILLIS_PER_KWH;
+    }
+
+    /**
+     * @param device The device
+     * @param minutes Forecast horizon
+     * @return Expected device consumption over the next minutes, in kWh
+     */
+    public synchronized double forecastDeviceKWh(SmartDevice device, int minutes) {
+        Integer d = deviceIndex.get(device);
+        if (d == null) {
+            throw new IllegalArgumentException("Device not modelled: " + device.getDeviceId());
+        }
+        return deviceModels.forecastEnergy(d, clock.getAsLong(), minutes * 60_000L) / WATT_MILLIS_PER_KWH;
+    }
+
+    /**
+     * @return Seasonal forecast of the home's power draw at a time of day, in watts
+     */
+    public synchronized double forecastWatts(long time) {
+        double watts = 0;
+        for (int r = 0; r < roomNames.length; r++) {
+            watts += roomModels.forecastWatts(r, time);
+        }
+        return watts;
+    }
+
+    // ---- Snapshots ----
+
+    /**
+     * @return A copy of every model, taken atomically
+     */
+    public synchronized ForecastSnapshot snapshot() {
+        String[] deviceIds = new String[devices.length];
+        for (int d = 0; d < devices.length; d++) {
+            deviceIds[d] = devices[d].getDeviceId();
+        }
+        return new ForecastSnapshot(deviceIds, roomNames.clone(), deviceModels.copy(), roomModels.copy(),
+                deviceWatts.clone(), roomWatts.clone());
+    }
+
+    /**
+     * Replaces every model with a snapshot's
+     * @param snapshot Snapshot of a forecaster over the same devices and rooms
+     * @throws IllegalArgumentException if the snapshot models different devices or rooms
+     */
+    public synchronized void restore(ForecastSnapshot snapshot) {
+        if (!Arrays.equals(snapshot.roomNames, roomNames) || !deviceModels.sameShape(snapshot.deviceModels)
+                || !roomModels.sameShape(snapshot.roomModels)) {
+            throw new IllegalArgumentException("Snapshot does not match this home");
+        }
+        for (int d = 0; d < devices.length; d++) {
+            if (!devices[d].getDeviceId().equals(snapshot.deviceIds[d])) {
+                throw new IllegalArgumentException("Snapshot does not match this home");
+            }
+        }
+        deviceModels = snapshot.deviceModels.copy();
+        roomModels = snapshot.roomModels.copy();
+        deviceWatts = snapshot.deviceWatts.clone();
+        roomWatts = snapshot.roomWatts.clone();
+    }
+
+    public synchronized long getReadingCount() {
+        return readingCount;
+    }
+
+    public int getDeviceCount() {
+        return devices.length;
+    }
+
+    public int getRoomCount() {
+        return roomNames.length;
+    }
+}
@@ -0,0 +1,101 @@
+package energy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable copy of an EnergyForecaster's models, to restore later or to
+ * persist so forecasts survive a restart without relearning
+ */
+public class ForecastSnapshot {
+    private static final int FORMAT_VERSION = 1;
+
+    final String[] deviceIds;
+    final String[] roomNames;
+    final SeasonalModels deviceModels;
+    final SeasonalModels roomModels;
+    final double[] deviceWatts;
+    final double[] roomWatts;
+
+    ForecastSnapshot(String[] deviceIds, String[] roomNames, SeasonalModels deviceModels,
+                     SeasonalModels roomModels, double[] deviceWatts, double[] roomWatts) {
+        this.deviceIds = deviceIds;
+        this.roomNames = roomNames;
+        this.deviceModels = deviceModels;
+        this.roomModels = roomModels;
+        this.deviceWatts = deviceWatts;
+        this.roomWatts = roomWatts;
+    }
+
+    /**
+     * Writes the snapshot in a compact binary form
+     * @param out Destination
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        writeStrings(out, deviceIds);
+        writeStrings(out, roomNames);
+        for (double watts : deviceWatts) {
+            out.writeDouble(watts);
+        }
+        for (double watts : roomWatts) {
+            out.writeDouble(watts);
+        }
+        deviceModels.writeTo(out);
+        roomModels.writeTo(out);
+    }
+
+    /**
+     * Reads a snapshot written by writeTo
+     * @param in Source
+     * @return The snapshot
+     * @throws IOException if reading fails or the data is not a snapshot
+     */
+    public static ForecastSnapshot readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported forecast snapshot version " + version);
+        }
+        String[] deviceIds = readStrings(in);
+        String[] roomNames = readStrings(in);
+        double[] deviceWatts = new double[deviceIds.length];
+        for (int i = 0; i < deviceWatts.length; i++) {
+            deviceWatts[i] = in.readDouble();
+        }
+        double[] roomWatts = new double[roomNames.length];
+        for (int i = 0; i < roomWatts.length; i++) {
+            roomWatts[i] = in.readDouble();
+        }
+        SeasonalModels deviceModels = SeasonalModels.readFrom(in);
+        SeasonalModels roomModels = SeasonalModels.readFrom(in);
+        if (deviceModels.count != deviceIds.length || roomModels.count != roomNames.length) {
+            throw new IOException("Corrupt forecast snapshot");
+        }
+        return new ForecastSnapshot(deviceIds, roomNames, deviceModels, roomModels, deviceWatts, roomWatts);
+    }
+
+    private static void writeStrings(DataOutput out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInput in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    public int getDeviceCount() {
+        return deviceIds.length;
+    }
+
+    public int getRoomCount() {
+        return roomNames.length;
+    }
+}
@@ -0,0 +1,324 @@
+package energy;
+
+import controller.CentralController;
+import controller.SceneRollback;
+import devices.DeviceFactory;
+import devices.DeviceProperty;
+import devices.Light;
+import devices.SmartDevice;
+import devices.SmartTV;
+import devices.Thermostat;
+import interfaces.DeviceStateListener;
+import interfaces.EnergyConsumer;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Picks the cheapest set of actions that brings the home under a power cap.
+ *
+ * Every energy consumer offers a short ladder of shedding steps (dim, stop
+ * streaming, hold the current temperature, turn off). A step's comfort cost
+ * is its kind's cost times the device priority, scaled by the efficiency
+ * rating so inefficient devices are shed first. Plans are greedy by comfort
+ * cost per watt saved.
+ *
+ * Each device's first step is kept in a sorted set that is updated as devices
+ * change, so planning only walks the steps it actually takes, plus each
+ * taken device's follow-up step.
+ */
+public class LoadShedder implements DeviceStateListener {
+    public static final int DIM_LEVEL = 30;
+    public static final int DEFAULT_PRIORITY = 5;
+
+    private static final Comparator<Candidate> BY_COST_PER_WATT = (a, b) -> {
+        int byCost = Double.compare(a.first.getCostPerWatt(), b.first.getCostPerWatt());
+        return byCost != 0 ? byCost : Long.compare(a.sequence, b.sequence);
+    };
+
+    private final CentralController controller;
+    private final Map<SmartDevice, Candidate> candidates = new IdentityHashMap<>();
+    private final TreeSet<Candidate> ranked = new TreeSet<>(BY_COST_PER_WATT);
+    private final Map<String, Integer> priorities = new HashMap<>();
+    private final Map<ShedAction.Kind, Double> comfortCosts = new EnumMap<>(ShedAction.Kind.class);
+    private final Map<Class<?>, SmartDevice> scratch = new HashMap<>();  // one simulated device per type
+    private double totalWatts;
+    private long nextSequence;
+
+    /**
+     * A tracked energy consumer and its next shedding steps
+     */
+    private static final class Candidate {
+        final SmartDevice device;
+        long sequence;
+        double watts;
+        ShedAction first;
+        ShedAction second; // Follow-up once the first step is taken
+
+        Candidate(SmartDevice device) {
+            this.device = device;
+        }
+    }
+
+    /**
+     * Constructor for LoadShedder; starts tracking the controller's home
+     * @param controller Controller whose home to shed and whose scenes apply plans
+     */
+    public LoadShedder(CentralController controller) {
+        this.controller = controller;
+        for (ShedAction.Kind kind : ShedAction.Kind.values()) {
+            comfortCosts.put(kind, kind.getDefaultComfortCost());
+        }
+        refresh();
+    }
+
+    /**
+     * Re-reads the home's devices, e.g. after devices were added or removed
+     */
+    public synchronized void refresh() {
+        close();
+        totalWatts = 0;
+        for (Room room : controller.getHome().getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                if (device instanceof EnergyConsumer) {
+                    Candidate candidate = new Candidate(device);
+                    candidates.put(device, candidate);
+                    device.addStateListener(this);
+                    update(candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops tracking the home's devices
+     */
+    public synchronized void close() {
+        for (SmartDevice device : candidates.keySet()) {
+            device.removeStateListener(this);
+        }
+        candidates.clear();
+        ranked.clear();
+    }
+
+    @Override
+    public synchronized void onStateChanged(SmartDevice device, DeviceProperty property) {
+        Candidate candidate = candidates.get(device);
+        if (candidate != null) {
+            update(candidate);
+        }
+    }
+
+    /**
+     * Sets how much a device matters; shedding it costs proportionally more
+     * @param deviceId The device ID
+     * @param priority Priority from 1 (shed first) to 10 (shed last)
+     */
+    public synchronized void setPriority(String deviceId, int priority) {
+        if (priority < 1 || priority > 10) {
+            throw new IllegalArgumentException("Priority must be between 1 and 10");
+        }
+        priorities.put(deviceId, priority);
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.device.getDeviceId().equals(deviceId)) {
+                update(candidate);
+            }
+        }
+    }
+
+    /**
+     * Overrides the base comfort cost of a kind of step
+     * @param kind The kind of step
+     * @param cost Comfort cost for a priority 1, B-rated device
+     */
+    public synchronized void setComfortCost(ShedAction.Kind kind, double cost) {
+        comfortCosts.put(kind, cost);
+        for (Candidate candidate : candidates.values()) {
+            update(candidate);
+        }
+    }
+
+    /**
+     * Plans the cheapest actions to get under a cap without applying them
+     * @param capWatts The power cap in watts
+     * @return The plan; empty if the home is already under the cap
+     */
+    public synchronized SheddingPlan plan(double capWatts) {
+        double excess = totalWatts - capWatts;
+        List<ShedAction> actions = new ArrayList<>();
+        PriorityQueue<ShedAction> followUps =
+                new PriorityQueue<>(Comparator.comparingDouble(ShedAction::getCostPerWatt));
+        Iterator<Candidate> iterator = ranked.iterator();
+        Candidate nextRanked = iterator.hasNext() ? iterator.next() : null;
+
+        double saved = 0;
+        while (saved < excess && (nextRanked != null || !followUps.isEmpty())) {
+            ShedAction action;
+            if (nextRanked != null && (followUps.isEmpty()
+                    || nextRanked.first.getCostPerWatt() <= followUps.peek().getCostPerWatt())) {
+                action = nextRanked.first;
+                if (nextRanked.second != null) {
+                    followUps.add(nextRanked.second);
+                }
+                nextRanked = iterator.hasNext() ? iterator.next() : null;
+            } else {
+                action = followUps.poll();
+            }
+            actions.add(action);
+            saved += action.getWattsSaved();
+        }
+        return new SheddingPlan(capWatts, totalWatts, actions);
+    }
+
+    /**
+     * Plans and applies the cheapest actions to get under a cap
+     * @param capWatts The power cap in watts
+     * @return Token to roll the actions back, or null if nothing needed shedding
+     */
+    public SceneRollback shed(double capWatts) {
+        SheddingPlan plan = plan(capWatts);
+        System.out.println(plan);
+        if (plan.getActions().isEmpty()) {
+            return null;
+        }
+        return controller.getSceneManager().apply(plan.toScene());
+    }
+
+    /**
+     * @return Current tracked power draw in watts
+     */
+    public synchronized double getTotalWatts() {
+        return totalWatts;
+    }
+
+    /**
+     * @return Number of devices that currently have a shedding step
+     */
+    public synchronized int getCandidateCount() {
+        return ranked.size();
+    }
+
+    // ---- Step model ----
+
+    private void update(Candidate candidate) {
+        if (candidate.first != null) {
+            ranked.remove(candidate);
+        }
+        totalWatts -= candidate.watts;
+        candidate.watts = ((EnergyConsumer) candidate.device).getEnergyConsumption();
+        totalWatts += candidate.watts;
+
+        candidate.first = null;
+        candidate.second = null;
+        if (!candidate.device.isOn()) {
+            return;
+        }
+        // Steps are measured on a scratch device, so savings follow the devices' own energy model
+        SmartDevice simulated = scratchFor(candidate.device);
+        candidate.first = nextStep(candidate.device, simulated, 0);
+        if (candidate.first == null) {
+            return;
+        }
+        candidate.second = nextStep(candidate.device, simulated, candidate.first.getKind().ordinal() + 1);
+        candidate.sequence = nextSequence++;
+        ranked.add(candidate);
+    }
+
+    /**
+     * Loads a device's state into the reusable scratch device of its type
+     */
+    private SmartDevice scratchFor(SmartDevice device) {
+        SmartDevice simulated = scratch.get(device.getClass());
+        if (simulated == null) {
+            simulated = DeviceFactory.create(device.getClass().getSimpleName(), "scratch", "scratch");
+            scratch.put(device.getClass(), simulated);
+        }
+        DeviceFactory.copyState(device, simulated);
+        return simulated;
+    }
+
+    /**
+     * Finds the mildest saving step from the given kind on, leaving it applied to the simulated device
+     */
+    private ShedAction nextStep(SmartDevice device, SmartDevice simulated, int fromKind) {
+        ShedAction.Kind[] kinds = ShedAction.Kind.values();
+        for (int k = fromKind; k < kinds.length; k++) {
+            ShedAction.Kind kind = kinds[k];
+            DeviceProperty property;
+            long target;
+            switch (kind) {
+                case DIM:
+                    if (!(simulated instanceof Light)
+                            || simulated.getPropertyValue(DeviceProperty.BRIGHTNESS) <= DIM_LEVEL) {
+                        continue;
+                    }
+                    property = DeviceProperty.BRIGHTNESS;
+                    target = DIM_LEVEL;
+                    break;
+                case STOP_STREAMING:
+                    if (!(simulated instanceof SmartTV) || simulated.getPropertyValue(DeviceProperty.STREAMING) == 0) {
+                        continue;
+                    }
+                    property = DeviceProperty.STREAMING;
+                    target = 0;
+                    break;
+                case RELAX_TARGET:
+                    if (!(simulated instanceof Thermostat)) {
+                        continue;
+                    }
+                    target = simulated.getPropertyValue(DeviceProperty.CURRENT_TEMPERATURE);
+                    if (simulated.getPropertyValue(DeviceProperty.TARGET_TEMPERATURE) == target) {
+                        continue;
+                    }
+                    property = DeviceProperty.TARGET_TEMPERATURE;
+                    break;
+                default:
+                    property = DeviceProperty.POWER;
+                    target = 0;
+                    break;
+            }
+
+            double before = ((EnergyConsumer) simulated).getEnergyConsumption();
+            long previous = simulated.getPropertyValue(property);
+            String previousText = simulated.getPropertyText(property);
+            simulated.restoreProperty(property, target, null);
+            double wattsSaved = before - ((EnergyConsumer) simulated).getEnergyConsumption();
+            if (wattsSaved > 1e-9) {
+                return new ShedAction(device, kind, target, wattsSaved, comfortCost(device, kind));
+            }
+            simulated.restoreProperty(property, previous, previousText);
+        }
+        return null;
+    }
+
+    private double comfortCost(SmartDevice device, ShedAction.Kind kind) {
+        Integer priority = priorities.get(device.getDeviceId());
+        return comfortCosts.get(kind) * (priority != null ? priority : DEFAULT_PRIORITY)
+                * efficiencyFactor(((EnergyConsumer) device).getEnergyEfficiencyRating());
+    }
+
+    /**
+     * Scales comfort cost so that less efficient devices are cheaper to shed
+     * @param rating Efficiency rating from A+ to F
+     */
+    static double efficiencyFactor(String rating) {
+        switch (rating) {
+            case "A+": return 1.5;
+            case "A": return 1.25;
+            case "B": return 1.0;
+            case "C": return 0.85;
+            case "D": return 0.7;
+            case "E": return 0.6;
+            default: return 0.5;
+        }
+    }
+}
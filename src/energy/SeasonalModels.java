@@ -0,0 +1,200 @@
+package energy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A fixed number of exponential smoothing models with daily seasonality,
+ * stored in flat primitive arrays.
+ *
+ * Each model tracks a piecewise-constant signal (watts): a reading holds
+ * until the next one, and the level and the seasonal offset of the time
+ * slots it covered are smoothed with weights that depend on how long it held.
+ * Polled and event-driven feeds therefore give the same model, and each
+ * update is O(1) (bounded by the number of slots it spans).
+ */
+final class SeasonalModels {
+    static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    final int count;
+    final int slots;
+    final long slotMillis;
+    final double levelTauMillis;
+    final double seasonTauMillis;
+    final double persistenceTauMillis;
+    final long dayOffsetMillis;
+
+    final double[] level;
+    final double[] seasonal; // count * slots
+    final double[] held;
+    final long[] lastTime;
+    final boolean[] started;
+
+    SeasonalModels(int count, int slots, double levelTauMillis, double seasonTauMillis,
+                   double persistenceTauMillis, long dayOffsetMillis) {
+        this.count = count;
+        this.slots = slots;
+        this.slotMillis = DAY_MILLIS / slots;
+        this.levelTauMillis = levelTauMillis;
+        this.seasonTauMillis = seasonTauMillis;
+        this.persistenceTauMillis = persistenceTauMillis;
+        this.dayOffsetMillis = dayOffsetMillis;
+        this.level = new double[count];
+        this.seasonal = new double[count * slots];
+        this.held = new double[count];
+        this.lastTime = new long[count];
+        this.started = new boolean[count];
+    }
+
+    private SeasonalModels(SeasonalModels other) {
+        this.count = other.count;
+        this.slots = other.slots;
+        this.slotMillis = other.slotMillis;
+        this.levelTauMillis = other.levelTauMillis;
+        this.seasonTauMillis = other.seasonTauMillis;
+        this.persistenceTauMillis = other.persistenceTauMillis;
+        this.dayOffsetMillis = other.dayOffsetMillis;
+        this.level = other.level.clone();
+        this.seasonal = other.seasonal.clone();
+        this.held = other.held.clone();
+        this.lastTime = other.lastTime.clone();
+        this.started = other.started.clone();
+    }
+
+    SeasonalModels copy() {
+        return new SeasonalModels(this);
+    }
+
+    private int slotOf(long time) {
+        return (int) (Math.floorMod(time + dayOffsetMillis, DAY_MILLIS) / slotMillis);
+    }
+
+    /**
+     * Records a new reading for a model; the previous reading is smoothed in
+     * for the time it held
+     */
+    void update(int model, long time, double value) {
+        if (!started[model]) {
+            started[model] = true;
+            level[model] = value;
+            held[model] = value;
+            lastTime[model] = time;
+            return;
+        }
+        long from = lastTime[model];
+        if (time > from) {
+            smooth(model, from, time, held[model]);
+            lastTime[model] = time;
+        }
+        held[model] = value;
+    }
+
+    /**
+     * Brings a model up to the given time without a new reading
+     */
+    void advance(int model, long time) {
+        if (started[model] && time > lastTime[model]) {
+            smooth(model, lastTime[model], time, held[model]);
+            lastTime[model] = time;
+        }
+    }
+
+    private void smooth(int model, long from, long to, double value) {
+        int base = model * slots;
+        long t = from;
+        // Walk the slots covered, at most one full day; anything older has fully decayed into the level
+        if (to - t > DAY_MILLIS) {
+            t = to - DAY_MILLIS;
+        }
+        while (t < to) {
+            long slotEnd = (Math.floorDiv(t + dayOffsetMillis, slotMillis) + 1) * slotMillis - dayOffsetMillis;
+            long end = Math.min(slotEnd, to);
+            double dt = end - t;
+            int s = base + slotOf(t);
+
+            double alpha = 1 - Math.exp(-dt / levelTauMillis);
+            level[model] += alpha * (value - seasonal[s] - level[model]);
+            // A slot is only seen 1/slots of the time, so its clock runs slots times faster
+            double gamma = 1 - Math.exp(-dt * slots / seasonTauMillis);
+            seasonal[s] += gamma * (value - level[model] - seasonal[s]);
+            t = end;
+        }
+    }
+
+    /**
+     * Integrates the model's forecast watts over an interval. The current
+     * reading's deviation from the seasonal forecast decays with the
+     * persistence time constant, so near-term forecasts follow what is on now.
+     * @return Forecast energy in watt-milliseconds
+     */
+    double forecastEnergy(int model, long from, long durationMillis) {
+        if (!started[model] || durationMillis <= 0) {
+            return 0;
+        }
+        int base = model * slots;
+        double deviation = held[model] - forecastWatts(model, from);
+        double energy = deviation * persistenceTauMillis * (1 - Math.exp(-durationMillis / persistenceTauMillis));
+        long fullDays = durationMillis / DAY_MILLIS;
+        if (fullDays > 0) {
+            double daySum = 0;
+            for (int s = 0; s < slots; s++) {
+                daySum += seasonal[base + s];
+            }
+            energy += fullDays * (level[model] * DAY_MILLIS + daySum * slotMillis);
+        }
+        long t = from;
+        long to = from + durationMillis % DAY_MILLIS;
+        while (t < to) {
+            long slotEnd = (Math.floorDiv(t + dayOffsetMillis, slotMillis) + 1) * slotMillis - dayOffsetMillis;
+            long end = Math.min(slotEnd, to);
+            energy += (end - t) * Math.max(0, level[model] + seasonal[base + slotOf(t)]);
+            t = end;
+        }
+        return energy;
+    }
+
+    double forecastWatts(int model, long time) {
+        if (!started[model]) {
+            return 0;
+        }
+        return Math.max(0, level[model] + seasonal[model * slots + slotOf(time)]);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(slots);
+        out.writeDouble(levelTauMillis);
+        out.writeDouble(seasonTauMillis);
+        out.writeDouble(persistenceTauMillis);
+        out.writeLong(dayOffsetMillis);
+        for (int m = 0; m < count; m++) {
+            out.writeBoolean(started[m]);
+            out.writeDouble(level[m]);
+            out.writeDouble(held[m]);
+            out.writeLong(lastTime[m]);
+        }
+        for (double value : seasonal) {
+            out.writeDouble(value);
+        }
+    }
+
+    static SeasonalModels readFrom(DataInput in) throws IOException {
+        SeasonalModels models = new SeasonalModels(in.readInt(), in.readInt(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readLong());
+        for (int m = 0; m < models.count; m++) {
+            models.started[m] = in.readBoolean();
+            models.level[m] = in.readDouble();
+            models.held[m] = in.readDouble();
+            models.lastTime[m] = in.readLong();
+        }
+        for (int i = 0; i < models.seasonal.length; i++) {
+            models.seasonal[i] = in.readDouble();
+        }
+        return models;
+    }
+
+    boolean sameShape(SeasonalModels other) {
+        return count == other.count && slots == other.slots;
+    }
+}
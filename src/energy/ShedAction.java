@@ -0,0 +1,104 @@
+package energy;
+
+import controller.Scene;
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+/**
+ * One step that reduces a device's power draw, with its predicted saving
+ * and comfort cost
+ */
+public class ShedAction {
+
+    /**
+     * Kinds of shedding step, mildest first
+     */
+    public enum Kind {
+        DIM("dim to " + LoadShedder.DIM_LEVEL + "%", 1.0),
+        STOP_STREAMING("stop streaming", 1.5),
+        RELAX_TARGET("hold current temperature", 2.0),
+        TURN_OFF("turn off", 4.0);
+
+        private final String description;
+        private final double defaultComfortCost;
+
+        Kind(String description, double defaultComfortCost) {
+            this.description = description;
+            this.defaultComfortCost = defaultComfortCost;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * @return Comfort cost of the step for a priority 1 device with a B efficiency rating
+         */
+        public double getDefaultComfortCost() {
+            return defaultComfortCost;
+        }
+    }
+
+    private final SmartDevice device;
+    private final Kind kind;
+    private final long targetValue;
+    private final double wattsSaved;
+    private final double comfortCost;
+
+    ShedAction(SmartDevice device, Kind kind, long targetValue, double wattsSaved, double comfortCost) {
+        this.device = device;
+        this.kind = kind;
+        this.targetValue = targetValue;
+        this.wattsSaved = wattsSaved;
+        this.comfortCost = comfortCost;
+    }
+
+    /**
+     * Adds this step's target state to a scene
+     */
+    void addTo(Scene scene) {
+        switch (kind) {
+            case DIM:
+                scene.set(device, DeviceProperty.BRIGHTNESS, targetValue);
+                break;
+            case STOP_STREAMING:
+                scene.set(device, DeviceProperty.STREAMING, 0);
+                break;
+            case RELAX_TARGET:
+                scene.set(device, DeviceProperty.TARGET_TEMPERATURE, targetValue);
+                break;
+            default:
+                scene.power(device, false);
+                break;
+        }
+    }
+
+    public SmartDevice getDevice() {
+        return device;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public double getWattsSaved() {
+        return wattsSaved;
+    }
+
+    public double getComfortCost() {
+        return comfortCost;
+    }
+
+    /**
+     * @return Comfort cost per watt saved; the shedder picks the lowest first
+     */
+    public double getCostPerWatt() {
+        return comfortCost / wattsSaved;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s (-%.2fW, cost %.2f)",
+                device.getDeviceName(), kind.getDescription(), wattsSaved, comfortCost);
+    }
+}
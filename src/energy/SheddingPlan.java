@@ -0,0 +1,86 @@
+package energy;
+
+import controller.Scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Actions chosen to bring the home's power draw under a cap
+ */
+public class SheddingPlan {
+    private final double capWatts;
+    private final double wattsBefore;
+    private final List<ShedAction> actions;
+    private final double wattsSaved;
+    private final double comfortCost;
+
+    SheddingPlan(double capWatts, double wattsBefore, List<ShedAction> actions) {
+        this.capWatts = capWatts;
+        this.wattsBefore = wattsBefore;
+        this.actions = actions;
+        double saved = 0;
+        double cost = 0;
+        for (ShedAction action : actions) {
+            saved += action.getWattsSaved();
+            cost += action.getComfortCost();
+        }
+        this.wattsSaved = saved;
+        this.comfortCost = cost;
+    }
+
+    /**
+     * Builds the scene that carries out this plan
+     * @return Scene with one target per action
+     */
+    public Scene toScene() {
+        Scene scene = new Scene(String.format("Load shedding to %.0fW", capWatts));
+        for (ShedAction action : actions) {
+            action.addTo(scene);
+        }
+        return scene;
+    }
+
+    public List<ShedAction> getActions() {
+        return Collections.unmodifiableList(actions);
+    }
+
+    public double getCapWatts() {
+        return capWatts;
+    }
+
+    public double getWattsBefore() {
+        return wattsBefore;
+    }
+
+    /**
+     * @return Predicted power draw once the plan is applied
+     */
+    public double getWattsAfter() {
+        return wattsBefore - wattsSaved;
+    }
+
+    public double getComfortCost() {
+        return comfortCost;
+    }
+
+    /**
+     * @return True if the plan gets the home under its cap
+     */
+    public boolean isFeasible() {
+        return getWattsAfter() <= capWatts;
+    }
+
+    @Override
+    public String toString() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Shedding plan: %.2fW -> %.2fW (cap %.2fW, %d action(s), comfort cost %.2f)%s",
+                wattsBefore, getWattsAfter(), capWatts, actions.size(), comfortCost,
+                isFeasible() ? "" : " - cap not reachable"));
+        for (ShedAction action : actions) {
+            lines.add("  " + action);
+        }
+        return String.join(System.lineSeparator(), lines);
+    }
+}
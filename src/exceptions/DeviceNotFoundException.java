@@ -1,10 +1,11 @@
 package exceptions;
 
 /**
- * Exception thrown when a device cannot be found
+ * Exception thrown when a device cannot be found.
+ * Lookups throw it routinely, so no stack trace is captured.
  */
 public class DeviceNotFoundException extends Exception {
     public DeviceNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package exceptions;
 
 /**
- * Exception thrown when a device operation is invalid for current state
+ * Exception thrown when a device operation is invalid for current state.
+ * It is an expected outcome of bad input, not a bug, so no stack trace is
+ * captured; use validateCommand to check commands without throwing.
  */
 public class InvalidDeviceStateException extends RuntimeException {
     public InvalidDeviceStateException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package exceptions;
+
+/**
+ * Exception thrown when a rule expression cannot be parsed or resolved
+ */
+public class InvalidRuleException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRuleException(String message) {
+        super(message);
+    }
+}
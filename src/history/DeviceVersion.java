@@ -0,0 +1,107 @@
+package history;
+
+import devices.DeviceProperty;
+
+/**
+ * Immutable state of one device as of a version of the home. Versions of a
+ * device are chained from newest to oldest.
+ */
+public class DeviceVersion {
+    private final String deviceId;
+    private final String roomName;
+    private final long version;
+    private final long timestamp;
+    private final DeviceProperty[] properties;
+    private final long[] values;
+    private final String[] texts;
+
+    // Next older version; cut to null when older versions are collected
+    volatile DeviceVersion previous;
+
+    DeviceVersion(String deviceId, String roomName, long version, long timestamp, DeviceProperty[] properties,
+                  long[] values, String[] texts, DeviceVersion previous) {
+        this.deviceId = deviceId;
+        this.roomName = roomName;
+        this.version = version;
+        this.timestamp = timestamp;
+        this.properties = properties;
+        this.values = values;
+        this.texts = texts;
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the numeric value of a property (booleans are 1 or 0)
+     * @param property The property to read
+     * @return The value, or 0 for text-only properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public long getPropertyValue(DeviceProperty property) {
+        return values[indexOf(property)];
+    }
+
+    /**
+     * Reads the text value of a property
+     * @param property The property to read
+     * @return The text, or null for numeric-only properties
+     * @throws IllegalArgumentException if the device has no such property
+     */
+    public String getPropertyText(DeviceProperty property) {
+        return texts[indexOf(property)];
+    }
+
+    private int indexOf(DeviceProperty property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i] == property) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(deviceId + " has no property " + property);
+    }
+
+    public boolean isOn() {
+        return getPropertyValue(DeviceProperty.POWER) != 0;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    /**
+     * @return Home version at which the device entered this state
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Time at which the device entered this state, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The properties held by this version (do not modify)
+     */
+    public DeviceProperty[] getProperties() {
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(deviceId).append(" @v").append(version).append(" {");
+        for (int i = 0; i < properties.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(properties[i].name().toLowerCase()).append('=')
+                    .append(texts[i] != null ? texts[i] : String.valueOf(values[i]));
+        }
+        return out.append('}').toString();
+    }
+}
@@ -0,0 +1,75 @@
+package history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consistent view of every tracked device as of one home version. Devices
+ * whose history at that version has already been collected are missing.
+ */
+public class HomeSnapshot {
+    private final long version;
+    private final long timestamp;
+    private final Map<String, DeviceVersion> devices;
+    private final int missingCount;
+
+    HomeSnapshot(long version, long timestamp, Map<String, DeviceVersion> devices, int missingCount) {
+        this.version = version;
+        this.timestamp = timestamp;
+        this.devices = devices;
+        this.missingCount = missingCount;
+    }
+
+    /**
+     * @param deviceId ID of the device
+     * @return The device's state, or null if it is not tracked or no longer retained
+     */
+    public DeviceVersion getDevice(String deviceId) {
+        return devices.get(deviceId);
+    }
+
+    /**
+     * @param roomName Name of the room
+     * @return States of the room's devices, in home order
+     */
+    public List<DeviceVersion> getRoom(String roomName) {
+        List<DeviceVersion> states = new ArrayList<>();
+        for (DeviceVersion state : devices.values()) {
+            if (state.getRoomName().equals(roomName)) {
+                states.add(state);
+            }
+        }
+        return states;
+    }
+
+    public List<DeviceVersion> getDevices() {
+        return Collections.unmodifiableList(new ArrayList<>(devices.values()));
+    }
+
+    /**
+     * @return Version of the newest change the snapshot includes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Time of the newest change the snapshot includes, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Number of tracked devices whose state at this version was already collected
+     */
+    public int getMissingCount() {
+        return missingCount;
+    }
+
+    public boolean isComplete() {
+        return missingCount == 0;
+    }
+}
@@ -0,0 +1,273 @@
+package history;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps past states of every device so the home can be read as of an earlier
+ * version or time ("what was on in the living room at 19:42").
+ *
+ * Each state change creates a new immutable DeviceVersion at the head of the
+ * device's chain and bumps the home version. Writers serialise only on that
+ * short append; readers never lock. A reader takes the current version, then
+ * walks each chain back to the newest state at or before it, so a snapshot is
+ * a consistent cut even while devices keep changing.
+ *
+ * Versions older than the retention window are collected, except the newest
+ * one before the window, which is still the state at its start. Each device
+ * keeps at most 2 x maxVersions versions, so memory is bounded per device.
+ */
+public class StateHistory implements DeviceStateListener {
+    /** Default time for which past states stay queryable */
+    public static final long DEFAULT_RETENTION_MILLIS = 24L * 60 * 60 * 1000;
+    /** Default number of versions kept per device */
+    public static final int DEFAULT_MAX_VERSIONS = 256;
+
+    private final Home home;
+    private final long retentionMillis;
+    private final int maxVersions;
+    private final Map<SmartDevice, Chain> chains = new IdentityHashMap<>();
+    private volatile Chain[] ordered = new Chain[0];
+    private volatile long currentVersion;
+    private LongSupplier clock = System::currentTimeMillis;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long collectedCount;
+
+    public StateHistory(Home home) {
+        this(home, DEFAULT_RETENTION_MILLIS, DEFAULT_MAX_VERSIONS);
+    }
+
+    /**
+     * Constructor for StateHistory; call attach() to start recording
+     * @param home The home to track
+     * @param retentionMillis How long past states stay queryable
+     * @param maxVersions Versions kept per device, whatever their age
+     */
+    public StateHistory(Home home, long retentionMillis, int maxVersions) {
+        if (retentionMillis < 0 || maxVersions <= 0) {
+            throw new IllegalArgumentException("Retention and version limit must be positive");
+        }
+        this.home = home;
+        this.retentionMillis = retentionMillis;
+        this.maxVersions = maxVersions;
+    }
+
+    /**
+     * Starts tracking every device in the home, including ones added since the
+     * last call, recording their current state as a first version
+     */
+    public synchronized void attach() {
+        List<Chain> all = new ArrayList<>();
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                Chain chain = chains.get(device);
+                if (chain == null) {
+                    chain = new Chain(device, room.getRoomName(), currentVersion + 1);
+                    chains.put(device, chain);
+                    device.addStateListener(this);
+                    append(chain);
+                }
+                all.add(chain);
+            }
+        }
+        ordered = all.toArray(new Chain[0]);
+    }
+
+    /**
+     * Stops tracking; recorded history stays queryable
+     */
+    public synchronized void close() {
+        for (SmartDevice device : chains.keySet()) {
+            device.removeStateListener(this);
+        }
+    }
+
+    @Override
+    public synchronized void onStateChanged(SmartDevice device, DeviceProperty property) {
+        Chain chain = chains.get(device);
+        if (chain != null) {
+            append(chain);
+        }
+    }
+
+    // Records the device's current state as a new version; caller holds the lock
+    private void append(Chain chain) {
+        SmartDevice device = chain.device;
+        long[] values = new long[chain.properties.length];
+        String[] texts = new String[chain.properties.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = device.getPropertyValue(chain.properties[i]);
+            texts[i] = device.getPropertyText(chain.properties[i]);
+        }
+        // Timestamps never go backwards, so "at time t" is always a consistent cut
+        long now = Math.max(clock.getAsLong(), lastTimestamp);
+        lastTimestamp = now;
+        long version = currentVersion + 1;
+        chain.head = new DeviceVersion(device.getDeviceId(), chain.roomName, version, now, chain.properties,
+                values, texts, chain.head);
+        if (++chain.size > 2 * maxVersions) {
+            collect(chain, now - retentionMillis);
+        }
+        currentVersion = version; // Publishes the new head to readers
+    }
+
+    /**
+     * Drops versions older than the retention window from every device
+     * @return Number of versions dropped
+     */
+    public synchronized long collectGarbage() {
+        long before = collectedCount;
+        long cutoff = Math.max(clock.getAsLong(), lastTimestamp) - retentionMillis;
+        for (Chain chain : ordered) {
+            collect(chain, cutoff);
+        }
+        return collectedCount - before;
+    }
+
+    // Keeps the newest maxVersions versions that are inside the window or still current at its start
+    private void collect(Chain chain, long cutoff) {
+        DeviceVersion last = chain.head;
+        int kept = 1;
+        while (last.previous != null && kept < maxVersions && last.getTimestamp() > cutoff) {
+            last = last.previous;
+            kept++;
+        }
+        if (last.previous != null) {
+            last.previous = null;
+            collectedCount += chain.size - kept;
+            chain.size = kept;
+        }
+    }
+
+    // ---- Reads ----
+
+    /**
+     * @return Snapshot of the current state of every tracked device
+     */
+    public HomeSnapshot snapshot() {
+        return snapshotAt(currentVersion);
+    }
+
+    /**
+     * @param version A home version, as returned by getVersion
+     * @return Snapshot of every tracked device as of that version
+     */
+    public HomeSnapshot snapshotAt(long version) {
+        return read(Math.min(version, currentVersion), Long.MAX_VALUE);
+    }
+
+    /**
+     * @param timestamp Time in milliseconds
+     * @return Snapshot of every tracked device as of that time
+     */
+    public HomeSnapshot snapshotAtTime(long timestamp) {
+        return read(currentVersion, timestamp);
+    }
+
+    private HomeSnapshot read(long version, long timestamp) {
+        Map<String, DeviceVersion> states = new LinkedHashMap<>();
+        long newestVersion = 0;
+        long newestTimestamp = Long.MIN_VALUE;
+        int missing = 0;
+        for (Chain chain : ordered) {
+            if (chain.firstVersion > version) {
+                continue; // Not tracked yet at that version
+            }
+            DeviceVersion state = find(chain, version, timestamp);
+            if (state == null) {
+                missing++;
+                continue;
+            }
+            states.put(state.getDeviceId(), state);
+            newestVersion = Math.max(newestVersion, state.getVersion());
+            newestTimestamp = Math.max(newestTimestamp, state.getTimestamp());
+        }
+        return new HomeSnapshot(newestVersion, newestTimestamp, states, missing);
+    }
+
+    /**
+     * @param deviceId ID of a tracked device
+     * @param timestamp Time in milliseconds
+     * @return The device's state at that time, or null if unknown or no longer retained
+     */
+    public DeviceVersion getDeviceAtTime(String deviceId, long timestamp) {
+        long version = currentVersion;
+        for (Chain chain : ordered) {
+            if (chain.device.getDeviceId().equals(deviceId)) {
+                return find(chain, version, timestamp);
+            }
+        }
+        return null;
+    }
+
+    private static DeviceVersion find(Chain chain, long version, long timestamp) {
+        DeviceVersion state = chain.head;
+        while (state != null && (state.getVersion() > version || state.getTimestamp() > timestamp)) {
+            state = state.previous;
+        }
+        return state;
+    }
+
+    /**
+     * Replaces the clock used to timestamp versions
+     * @param clock Supplier of the current time in milliseconds
+     */
+    public synchronized void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return The current home version; increases by one per device change
+     */
+    public long getVersion() {
+        return currentVersion;
+    }
+
+    /**
+     * @return Versions currently retained across all devices
+     */
+    public synchronized long getRetainedCount() {
+        long count = 0;
+        for (Chain chain : ordered) {
+            count += chain.size;
+        }
+        return count;
+    }
+
+    public synchronized long getCollectedCount() {
+        return collectedCount;
+    }
+
+    public int getDeviceCount() {
+        return ordered.length;
+    }
+
+    /**
+     * Version chain of one device
+     */
+    private static final class Chain {
+        final SmartDevice device;
+        final String roomName;
+        final DeviceProperty[] properties;
+        final long firstVersion;
+        volatile DeviceVersion head;
+        int size;
+
+        Chain(SmartDevice device, String roomName, long firstVersion) {
+            this.device = device;
+            this.roomName = roomName;
+            this.properties = device.getSupportedProperties();
+            this.firstVersion = firstVersion;
+        }
+    }
+}
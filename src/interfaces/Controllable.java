@@ -1,5 +1,7 @@
 package interfaces;
 
+import devices.ValidationCode;
+
 /**
  * Interface for devices that can be controlled with commands
  */
@@ -10,6 +12,14 @@ public interface Controllable {
      */
     void executeCommand(String command);
 
+    /**
+     * Checks a command against the device's constraints and current state
+     * without executing it or throwing
+     * @param command The command to check
+     * @return OK if executeCommand would apply it, otherwise why not
+     */
+    ValidationCode validateCommand(String command);
+
     /**
      * Sets the operating mode of the device
      * @param mode The mode to set
@@ -0,0 +1,16 @@
+package interfaces;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+/**
+ * Interface for components that need to be told when a device's state changes
+ */
+public interface DeviceStateListener {
+    /**
+     * Called after a property of the device has changed
+     * @param device The device whose state changed
+     * @param property The property that changed
+     */
+    void onStateChanged(SmartDevice device, DeviceProperty property);
+}
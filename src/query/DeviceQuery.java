@@ -0,0 +1,120 @@
+package query;
+
+import devices.SmartDevice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Describes an ad-hoc device query.
+ * Example: lights that are ON with brightness > 50 on floor 2
+ * <pre>
+ *     DeviceQuery.of(Light.class).on().greaterThan(IndexedProperty.BRIGHTNESS, 50).onFloor(2)
+ * </pre>
+ */
+public class DeviceQuery {
+
+    /**
+     * Inclusive range condition on an indexed numeric property
+     */
+    static class Range {
+        final IndexedProperty property;
+        final int min;
+        final int max;
+
+        Range(IndexedProperty property, int min, int max) {
+            this.property = property;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return property + " in [" + min + ", " + max + "]";
+        }
+    }
+
+    Class<? extends SmartDevice> type;
+    Boolean on;
+    Integer floor;
+    String roomName;
+    final List<Range> ranges = new ArrayList<>();
+    final List<Predicate<SmartDevice>> filters = new ArrayList<>();
+
+    private DeviceQuery(Class<? extends SmartDevice> type) {
+        this.type = type;
+    }
+
+    /**
+     * Starts a query over devices of a given type (subclasses included)
+     * @param type The device class
+     * @return A new query
+     */
+    public static DeviceQuery of(Class<? extends SmartDevice> type) {
+        return new DeviceQuery(type);
+    }
+
+    /**
+     * Starts a query over all devices
+     * @return A new query
+     */
+    public static DeviceQuery all() {
+        return new DeviceQuery(null);
+    }
+
+    public DeviceQuery on() {
+        this.on = Boolean.TRUE;
+        return this;
+    }
+
+    public DeviceQuery off() {
+        this.on = Boolean.FALSE;
+        return this;
+    }
+
+    public DeviceQuery onFloor(int floor) {
+        this.floor = floor;
+        return this;
+    }
+
+    public DeviceQuery inRoom(String roomName) {
+        this.roomName = roomName;
+        return this;
+    }
+
+    /**
+     * Restricts an indexed property to an inclusive range; min > max matches nothing
+     */
+    public DeviceQuery between(IndexedProperty property, int min, int max) {
+        ranges.add(new Range(property, min, max));
+        return this;
+    }
+
+    public DeviceQuery greaterThan(IndexedProperty property, int value) {
+        if (value == Integer.MAX_VALUE) {
+            return between(property, 1, 0); // Nothing is greater; value + 1 would wrap around
+        }
+        return between(property, value + 1, Integer.MAX_VALUE);
+    }
+
+    public DeviceQuery lessThan(IndexedProperty property, int value) {
+        if (value == Integer.MIN_VALUE) {
+            return between(property, 1, 0);
+        }
+        return between(property, Integer.MIN_VALUE, value - 1);
+    }
+
+    public DeviceQuery equalTo(IndexedProperty property, int value) {
+        return between(property, value, value);
+    }
+
+    /**
+     * Adds a non-indexed condition, checked on each candidate after index filtering
+     * @param filter The residual predicate
+     */
+    public DeviceQuery where(Predicate<SmartDevice> filter) {
+        filters.add(filter);
+        return this;
+    }
+}
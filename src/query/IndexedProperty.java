@@ -0,0 +1,105 @@
+package query;
+
+import devices.Light;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import devices.SmartTV;
+import devices.Thermostat;
+
+/**
+ * Numeric device properties that have a sorted secondary index
+ */
+public enum IndexedProperty {
+    BRIGHTNESS {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof Light;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((Light) device).getBrightness();
+        }
+    },
+    CURRENT_TEMPERATURE {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof Thermostat;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((Thermostat) device).getCurrentTemperature();
+        }
+    },
+    TARGET_TEMPERATURE {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof Thermostat;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((Thermostat) device).getTargetTemperature();
+        }
+    },
+    /** Absolute distance between current and target temperature */
+    TEMPERATURE_DEVIATION {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof Thermostat;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            Thermostat thermostat = (Thermostat) device;
+            return Math.abs(thermostat.getCurrentTemperature() - thermostat.getTargetTemperature());
+        }
+    },
+    CHANNEL {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof SmartTV;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((SmartTV) device).getCurrentChannel();
+        }
+    },
+    VOLUME {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof SmartTV;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((SmartTV) device).getVolume();
+        }
+    },
+    SENSITIVITY {
+        @Override
+        boolean appliesTo(SmartDevice device) {
+            return device instanceof MotionSensor;
+        }
+
+        @Override
+        int valueOf(SmartDevice device) {
+            return ((MotionSensor) device).getSensitivity();
+        }
+    };
+
+    /**
+     * @param device The device to check
+     * @return true if the device has this property
+     */
+    abstract boolean appliesTo(SmartDevice device);
+
+    /**
+     * Reads the current value of the property
+     * @param device A device for which appliesTo() is true
+     * @return The property value
+     */
+    abstract int valueOf(SmartDevice device);
+}
@@ -0,0 +1,87 @@
+package query;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sorted secondary index mapping a numeric property value to the slots holding it
+ */
+class NumericIndex {
+    private final TreeMap<Integer, BitSet> buckets = new TreeMap<>();
+    private final BitSet present = new BitSet();
+    private int[] values = new int[64];
+
+    /**
+     * Sets the indexed value of a slot, moving it between buckets if needed
+     */
+    void put(int slot, int value) {
+        if (present.get(slot)) {
+            if (values[slot] == value) {
+                return;
+            }
+            removeFromBucket(slot, values[slot]);
+        }
+        if (slot >= values.length) {
+            int[] grown = new int[Math.max(values.length * 2, slot + 1)];
+            System.arraycopy(values, 0, grown, 0, values.length);
+            values = grown;
+        }
+        values[slot] = value;
+        present.set(slot);
+        buckets.computeIfAbsent(value, v -> new BitSet()).set(slot);
+    }
+
+    /**
+     * Removes a slot from the index
+     */
+    void remove(int slot) {
+        if (present.get(slot)) {
+            removeFromBucket(slot, values[slot]);
+            present.clear(slot);
+        }
+    }
+
+    private void removeFromBucket(int slot, int value) {
+        BitSet bucket = buckets.get(value);
+        bucket.clear(slot);
+        if (bucket.isEmpty()) {
+            buckets.remove(value);
+        }
+    }
+
+    /**
+     * Estimates how many slots fall in the range without materialising it
+     */
+    long estimate(int min, int max) {
+        if (min > max) {
+            return 0;
+        }
+        long count = 0;
+        for (BitSet bucket : buckets.subMap(min, true, max, true).values()) {
+            count += bucket.cardinality();
+        }
+        return count;
+    }
+
+    /**
+     * Collects all slots whose value lies in [min, max]
+     */
+    BitSet range(int min, int max) {
+        BitSet result = new BitSet();
+        if (min > max) {
+            return result;
+        }
+        for (Map.Entry<Integer, BitSet> entry : buckets.subMap(min, true, max, true).entrySet()) {
+            result.or(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Checks a single slot against the range (used when probing a small candidate set)
+     */
+    boolean matches(int slot, int min, int max) {
+        return present.get(slot) && values[slot] >= min && values[slot] <= max;
+    }
+}
@@ -0,0 +1,318 @@
+package query;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Query engine over device state backed by secondary indexes.
+ * Bitmap indexes cover on/off, type, floor and room; sorted indexes cover the
+ * numeric properties in IndexedProperty. Indexes are kept up to date through
+ * device state listeners, so queries never scan the whole home. Bitmap slots
+ * are the devices' handles in the home's DeviceRegistry.
+ */
+public class QueryEngine implements DeviceStateListener {
+    // A candidate set this many times smaller than an index scan is probed slot by slot instead
+    private static final int PROBE_FACTOR = 4;
+
+    private final Home home;
+    private final List<SmartDevice> slots = new ArrayList<>();
+    private final BitSet allBits = new BitSet();
+    private final BitSet onBits = new BitSet();
+    private final Map<Class<?>, BitSet> typeBits = new HashMap<>();
+    private final Map<Integer, BitSet> floorBits = new HashMap<>();
+    private final Map<String, BitSet> roomBits = new HashMap<>();
+    private final EnumMap<IndexedProperty, NumericIndex> numericIndexes = new EnumMap<>(IndexedProperty.class);
+
+    public QueryEngine(Home home) {
+        this.home = home;
+        for (IndexedProperty property : IndexedProperty.values()) {
+            numericIndexes.put(property, new NumericIndex());
+        }
+        refresh();
+        System.out.println("✓ Query engine indexed " + allBits.cardinality() + " device(s)");
+    }
+
+    /**
+     * Re-synchronises the indexes with the rooms and devices of the home.
+     * Call this after adding or removing rooms or devices.
+     */
+    public synchronized void refresh() {
+        BitSet current = new BitSet();
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                int slot = device.getHandle();
+                current.set(slot);
+                if (deviceAt(slot) != device) {
+                    if (allBits.get(slot)) {
+                        removeDevice(slot); // Replaced by a reloaded copy
+                    }
+                    addDevice(slot, device, room);
+                }
+            }
+        }
+        BitSet gone = (BitSet) allBits.clone();
+        gone.andNot(current);
+        for (int slot = gone.nextSetBit(0); slot >= 0; slot = gone.nextSetBit(slot + 1)) {
+            removeDevice(slot);
+        }
+    }
+
+    /**
+     * Detaches the engine from all devices
+     */
+    public synchronized void close() {
+        for (int slot = allBits.nextSetBit(0); slot >= 0; slot = allBits.nextSetBit(slot + 1)) {
+            slots.get(slot).removeStateListener(this);
+        }
+    }
+
+    private void addDevice(int slot, SmartDevice device, Room room) {
+        while (slots.size() <= slot) {
+            slots.add(null);
+        }
+        slots.set(slot, device);
+        allBits.set(slot);
+        typeBits.computeIfAbsent(device.getClass(), c -> new BitSet()).set(slot);
+        floorBits.computeIfAbsent(room.getFloor(), f -> new BitSet()).set(slot);
+        roomBits.computeIfAbsent(room.getRoomName(), r -> new BitSet()).set(slot);
+        updateState(slot, device);
+        device.addStateListener(this);
+    }
+
+    private void removeDevice(int slot) {
+        slots.set(slot, null).removeStateListener(this);
+        allBits.clear(slot);
+        onBits.clear(slot);
+        clearSlot(typeBits, slot);
+        clearSlot(floorBits, slot);
+        clearSlot(roomBits, slot);
+        for (NumericIndex index : numericIndexes.values()) {
+            index.remove(slot);
+        }
+    }
+
+    private static void clearSlot(Map<?, BitSet> bitmaps, int slot) {
+        for (BitSet bits : bitmaps.values()) {
+            bits.clear(slot);
+        }
+    }
+
+    private void updateState(int slot, SmartDevice device) {
+        onBits.set(slot, device.isOn());
+        for (Map.Entry<IndexedProperty, NumericIndex> entry : numericIndexes.entrySet()) {
+            if (entry.getKey().appliesTo(device)) {
+                entry.getValue().put(slot, entry.getKey().valueOf(device));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onStateChanged(SmartDevice device, DeviceProperty property) {
+        int slot = device.getHandle();
+        if (deviceAt(slot) == device) {
+            updateState(slot, device);
+        }
+    }
+
+    /**
+     * Runs a query and streams the matching devices
+     * @param query The query to run
+     * @return Stream of matching devices
+     */
+    public Stream<SmartDevice> stream(DeviceQuery query) {
+        BitSet candidates;
+        synchronized (this) {
+            candidates = plan(query, null);
+        }
+        Stream<SmartDevice> result = candidates.stream().mapToObj(this::deviceAt);
+        for (Predicate<SmartDevice> filter : query.filters) {
+            result = result.filter(filter);
+        }
+        return result;
+    }
+
+    /**
+     * Counts devices matching a query
+     * @param query The query to run
+     * @return Number of matches
+     */
+    public long count(DeviceQuery query) {
+        if (query.filters.isEmpty()) {
+            synchronized (this) {
+                return plan(query, null).cardinality();
+            }
+        }
+        return stream(query).count();
+    }
+
+    /**
+     * Describes the plan the engine would use for a query
+     * @param query The query to explain
+     * @return Human-readable plan
+     */
+    public synchronized String explain(DeviceQuery query) {
+        StringBuilder plan = new StringBuilder();
+        plan(query, plan);
+        if (!query.filters.isEmpty()) {
+            plan.append("  filter ").append(query.filters.size()).append(" residual predicate(s)\n");
+        }
+        return plan.toString();
+    }
+
+    private synchronized SmartDevice deviceAt(int slot) {
+        return slot >= 0 && slot < slots.size() ? slots.get(slot) : null;
+    }
+
+    /**
+     * Picks the most selective index first, then either intersects the next
+     * index or probes the remaining candidates directly when they are few.
+     */
+    private BitSet plan(DeviceQuery query, StringBuilder explain) {
+        List<IndexScan> scans = new ArrayList<>();
+        if (query.type != null) {
+            BitSet bits = new BitSet();
+            for (Map.Entry<Class<?>, BitSet> entry : typeBits.entrySet()) {
+                if (query.type.isAssignableFrom(entry.getKey())) {
+                    bits.or(entry.getValue());
+                }
+            }
+            scans.add(new BitmapScan("type = " + query.type.getSimpleName(), bits));
+        }
+        if (query.on != null) {
+            BitSet bits = (BitSet) onBits.clone();
+            if (!query.on) {
+                bits.xor(allBits);
+            }
+            scans.add(new BitmapScan(query.on ? "status = ON" : "status = OFF", bits));
+        }
+        if (query.floor != null) {
+            scans.add(new BitmapScan("floor = " + query.floor, floorBits.getOrDefault(query.floor, new BitSet())));
+        }
+        if (query.roomName != null) {
+            scans.add(new BitmapScan("room = " + query.roomName, roomBits.getOrDefault(query.roomName, new BitSet())));
+        }
+        for (DeviceQuery.Range range : query.ranges) {
+            scans.add(new RangeScan(range, numericIndexes.get(range.property)));
+        }
+
+        if (scans.isEmpty()) {
+            if (explain != null) {
+                explain.append("  full scan of ").append(allBits.cardinality()).append(" device(s)\n");
+            }
+            return (BitSet) allBits.clone();
+        }
+
+        scans.sort(Comparator.comparingLong(IndexScan::estimate));
+        BitSet candidates = scans.get(0).bits();
+        if (explain != null) {
+            explain.append("  scan ").append(scans.get(0).label)
+                    .append(" (~").append(scans.get(0).estimate()).append(")\n");
+        }
+
+        for (int i = 1; i < scans.size() && !candidates.isEmpty(); i++) {
+            IndexScan scan = scans.get(i);
+            long remaining = candidates.cardinality();
+            if (remaining * PROBE_FACTOR < scan.estimate()) {
+                for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                    if (!scan.matches(slot)) {
+                        candidates.clear(slot);
+                    }
+                }
+                if (explain != null) {
+                    explain.append("  probe ").append(scan.label).append(" on ").append(remaining).append(" candidate(s)\n");
+                }
+            } else {
+                candidates.and(scan.bits());
+                if (explain != null) {
+                    explain.append("  intersect ").append(scan.label).append(" (~").append(scan.estimate()).append(")\n");
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * One index access path considered by the planner
+     */
+    private abstract static class IndexScan {
+        final String label;
+
+        IndexScan(String label) {
+            this.label = label;
+        }
+
+        abstract long estimate();
+
+        /** Materialises a fresh, modifiable set of matching slots */
+        abstract BitSet bits();
+
+        abstract boolean matches(int slot);
+    }
+
+    private static class BitmapScan extends IndexScan {
+        private final BitSet bitmap;
+
+        BitmapScan(String label, BitSet bitmap) {
+            super(label);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        long estimate() {
+            return bitmap.cardinality();
+        }
+
+        @Override
+        BitSet bits() {
+            return (BitSet) bitmap.clone();
+        }
+
+        @Override
+        boolean matches(int slot) {
+            return bitmap.get(slot);
+        }
+    }
+
+    private static class RangeScan extends IndexScan {
+        private final DeviceQuery.Range range;
+        private final NumericIndex index;
+        private long estimate = -1;
+
+        RangeScan(DeviceQuery.Range range, NumericIndex index) {
+            super(range.toString());
+            this.range = range;
+            this.index = index;
+        }
+
+        @Override
+        long estimate() {
+            if (estimate < 0) {
+                estimate = index.estimate(range.min, range.max);
+            }
+            return estimate;
+        }
+
+        @Override
+        BitSet bits() {
+            return index.range(range.min, range.max);
+        }
+
+        @Override
+        boolean matches(int slot) {
+            return index.matches(slot, range.min, range.max);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package replication;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Captures every state change of the devices in a home into a ChangeLog
+ */
+public class ChangeCapture implements DeviceStateListener {
+    private final Home home;
+    private final ChangeLog log;
+    private final List<SmartDevice> attached = new ArrayList<>();
+
+    /**
+     * Starts capturing changes of all devices currently in the home
+     * @param home The primary home
+     * @param log Destination log
+     */
+    public ChangeCapture(Home home, ChangeLog log) {
+        this.home = home;
+        this.log = log;
+        refresh();
+        System.out.println("✓ Change capture started for " + home.getHomeName());
+    }
+
+    /**
+     * Attaches to devices added since the capture started
+     */
+    public synchronized void refresh() {
+        stop();
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                device.addStateListener(this);
+                attached.add(device);
+            }
+        }
+    }
+
+    /**
+     * Detaches from all devices
+     */
+    public synchronized void stop() {
+        for (SmartDevice device : attached) {
+            device.removeStateListener(this);
+        }
+        attached.clear();
+    }
+
+    @Override
+    public void onStateChanged(SmartDevice device, DeviceProperty property) {
+        log.append(device.getHandle(), device.getDeviceId(), property,
+                device.getPropertyValue(property), device.getPropertyText(property));
+    }
+
+    public ChangeLog getLog() {
+        return log;
+    }
+}
@@ -0,0 +1,99 @@
+package replication;
+
+import devices.DeviceProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory log of device changes.
+ * Sequence numbers start at 1 and increase by one per record. When the log is
+ * full the oldest records are overwritten; consumers that fall behind the
+ * oldest retained sequence must resynchronise from a full snapshot.
+ */
+public class ChangeLog {
+    private final ChangeRecord[] ring;
+    private long nextSequence = 1;
+
+    /**
+     * Constructor for ChangeLog
+     * @param capacity Maximum number of records retained
+     */
+    public ChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.ring = new ChangeRecord[capacity];
+    }
+
+    /**
+     * Appends a change and wakes up waiting consumers
+     * @return The sequence number assigned to the record
+     */
+    public synchronized long append(int handle, String deviceId, DeviceProperty property, long value, String text) {
+        long sequence = nextSequence++;
+        ring[(int) (sequence % ring.length)] =
+                new ChangeRecord(sequence, System.currentTimeMillis(), handle, deviceId, property, value, text);
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * Reads records starting at a sequence number
+     * @param fromSequence First sequence to read
+     * @param maxRecords Maximum number of records to return
+     * @return Records in sequence order (empty if none are available yet)
+     * @throws IllegalStateException if fromSequence has already been overwritten
+     */
+    public synchronized List<ChangeRecord> read(long fromSequence, int maxRecords) {
+        if (fromSequence < getOldestSequence()) {
+            throw new IllegalStateException("Sequence " + fromSequence + " is no longer retained (oldest is "
+                    + getOldestSequence() + ")");
+        }
+        long end = Math.min(nextSequence, fromSequence + maxRecords);
+        List<ChangeRecord> records = new ArrayList<>((int) Math.max(0, end - fromSequence));
+        for (long sequence = fromSequence; sequence < end; sequence++) {
+            records.add(ring[(int) (sequence % ring.length)]);
+        }
+        return records;
+    }
+
+    /**
+     * Tails the log: waits until a record at or after fromSequence exists
+     * @param fromSequence First sequence to read
+     * @param maxRecords Maximum number of records to return
+     * @param timeoutMillis Maximum time to wait
+     * @return Available records, or an empty list on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized List<ChangeRecord> await(long fromSequence, int maxRecords, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (nextSequence <= fromSequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        return read(fromSequence, maxRecords);
+    }
+
+    /**
+     * @return The oldest sequence number still retained
+     */
+    public synchronized long getOldestSequence() {
+        return Math.max(1, nextSequence - ring.length);
+    }
+
+    /**
+     * @return The sequence number the next record will get
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+}
@@ -0,0 +1,65 @@
+package replication;
+
+import devices.DeviceProperty;
+
+/**
+ * One captured device state change. Carries the new absolute value, so
+ * applying the same record twice is harmless.
+ */
+public class ChangeRecord {
+    private final long sequence;
+    private final long timestamp;
+    private final int handle;
+    private final String deviceId;
+    private final DeviceProperty property;
+    private final long value;
+    private final String text;
+
+    public ChangeRecord(long sequence, long timestamp, int handle, String deviceId,
+                        DeviceProperty property, long value, String text) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.handle = handle;
+        this.deviceId = deviceId;
+        this.property = property;
+        this.value = value;
+        this.text = text;
+    }
+
+    // Getters
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Handle of the device in the primary home's registry
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public DeviceProperty getProperty() {
+        return property;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + deviceId + "." + property + " = " + (text != null ? text : String.valueOf(value));
+    }
+}
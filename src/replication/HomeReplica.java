@@ -0,0 +1,160 @@
+package replication;
+
+import devices.DeviceFactory;
+import devices.SmartDevice;
+import exceptions.DuplicateDeviceException;
+import structure.Home;
+import structure.Room;
+
+import java.util.List;
+
+/**
+ * Read-only copy of a home kept in sync by applying a change log.
+ * Reporting and dashboards can read the replica's Home without touching
+ * the primary. The primary is only read again if the replica falls so far
+ * behind that the log no longer holds the records it needs.
+ */
+public class HomeReplica {
+    private static final int BATCH_SIZE = 1024;
+
+    private final Home primary;
+    private final ChangeLog log;
+    private final Home replica;
+    private final SmartDevice[] copyByHandle; // Indexed by the primary's device handles
+    private long position;
+    private long appliedCount;
+    private int resyncCount;
+    private volatile Thread follower;
+
+    /**
+     * Builds the replica from the current state of the primary
+     * @param primary The primary home (its devices must be captured into the log)
+     * @param log The change log fed by a ChangeCapture on the primary
+     */
+    public HomeReplica(Home primary, ChangeLog log) {
+        this.primary = primary;
+        this.log = log;
+        this.replica = new Home(primary.getHomeName() + " (replica)");
+        this.position = log.getNextSequence();
+        this.copyByHandle = new SmartDevice[primary.getRegistry().getHandleCount()];
+
+        for (Room room : primary.getRooms().values()) {
+            Room copy = new Room(room.getRoomName(), room.getFloor());
+            try {
+                for (SmartDevice device : room.getDevices()) {
+                    SmartDevice deviceCopy = DeviceFactory.copyOf(device);
+                    copy.addDevice(deviceCopy);
+                    copyByHandle[device.getHandle()] = deviceCopy;
+                }
+                replica.addRoom(copy);
+            } catch (DuplicateDeviceException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies all records available in the log
+     * @return Number of records applied
+     */
+    public synchronized int sync() {
+        if (position < log.getOldestSequence()) {
+            resync();
+        }
+        int applied = 0;
+        List<ChangeRecord> records;
+        do {
+            records = log.read(position, BATCH_SIZE);
+            apply(records);
+            applied += records.size();
+        } while (records.size() == BATCH_SIZE);
+        return applied;
+    }
+
+    private void apply(List<ChangeRecord> records) {
+        for (ChangeRecord record : records) {
+            SmartDevice device = copyOf(record.getHandle());
+            if (device != null) {
+                device.restoreProperty(record.getProperty(), record.getValue(), record.getText());
+            }
+            position = record.getSequence() + 1;
+            appliedCount++;
+        }
+    }
+
+    /**
+     * Copies the full state again after falling behind the log
+     */
+    private void resync() {
+        position = log.getNextSequence();
+        for (Room room : primary.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                SmartDevice copy = copyOf(device.getHandle());
+                if (copy != null) {
+                    DeviceFactory.copyState(device, copy);
+                }
+            }
+        }
+        resyncCount++;
+        System.out.println("ℹ Replica fell behind the change log and was resynchronised");
+    }
+
+    // Devices added to the primary after the replica was built are not replicated
+    private SmartDevice copyOf(int handle) {
+        return handle >= 0 && handle < copyByHandle.length ? copyByHandle[handle] : null;
+    }
+
+    /**
+     * Starts a background thread that tails the log and applies records as they arrive
+     */
+    public synchronized void startFollowing() {
+        if (follower != null) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            while (follower == Thread.currentThread()) {
+                try {
+                    log.await(position, BATCH_SIZE, 500);
+                    sync();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IllegalStateException e) {
+                    // Fell behind between await and sync; the next sync resynchronises
+                }
+            }
+        }, "replica-follower");
+        thread.setDaemon(true);
+        follower = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the background follower thread
+     */
+    public void stopFollowing() {
+        Thread thread = follower;
+        follower = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return The replica home, for read-only use
+     */
+    public Home getHome() {
+        return replica;
+    }
+
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    public synchronized long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public synchronized int getResyncCount() {
+        return resyncCount;
+    }
+}
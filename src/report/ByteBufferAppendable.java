@@ -0,0 +1,93 @@
+package report;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Appendable that encodes characters as UTF-8 directly into a ByteBuffer.
+ * Lets status rendering write into network or file buffers with no
+ * intermediate String. Throws BufferOverflowException when the buffer is full.
+ */
+public class ByteBufferAppendable implements Appendable {
+    private ByteBuffer buffer;
+    private char pendingHighSurrogate;
+
+    public ByteBufferAppendable(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Switches to another destination buffer so the adapter can be reused
+     * @param buffer The new destination
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.pendingHighSurrogate = 0;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+        for (int i = start; i < end; i++) {
+            append(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        if (pendingHighSurrogate != 0) {
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                writeCodePoint(Character.toCodePoint(high, c));
+                return this;
+            }
+            writeCodePoint('?'); // unpaired surrogate
+        }
+        if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            writeCodePoint('?');
+        } else {
+            writeCodePoint(c);
+        }
+        return this;
+    }
+
+    private void writeCodePoint(int cp) {
+        if (cp < 0x80) {
+            buffer.put((byte) cp);
+        } else if (cp < 0x800) {
+            ensure(2);
+            buffer.put((byte) (0xC0 | (cp >> 6)));
+            buffer.put((byte) (0x80 | (cp & 0x3F)));
+        } else if (cp < 0x10000) {
+            ensure(3);
+            buffer.put((byte) (0xE0 | (cp >> 12)));
+            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (cp & 0x3F)));
+        } else {
+            ensure(4);
+            buffer.put((byte) (0xF0 | (cp >> 18)));
+            buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (cp & 0x3F)));
+        }
+    }
+
+    // Never leave half a character in the buffer
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            throw new BufferOverflowException();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package report;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import devices.StatusFormat;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Streams the full-home status report in pages into a caller-supplied
+ * Appendable, and can render only the devices changed since the last render.
+ */
+public class HomeReportWriter implements DeviceStateListener {
+    private final Home home;
+    private final List<SmartDevice> devices = new ArrayList<>();
+    private final List<Room> roomOfDevice = new ArrayList<>();
+    private final LinkedHashSet<SmartDevice> changed = new LinkedHashSet<>();
+
+    public HomeReportWriter(Home home) {
+        this.home = home;
+        refresh();
+    }
+
+    /**
+     * Re-reads the room and device layout of the home.
+     * Call this after adding or removing rooms or devices.
+     */
+    public synchronized void refresh() {
+        for (SmartDevice device : devices) {
+            device.removeStateListener(this);
+        }
+        devices.clear();
+        roomOfDevice.clear();
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                devices.add(device);
+                roomOfDevice.add(room);
+                device.addStateListener(this);
+            }
+        }
+        changed.clear();
+        changed.addAll(devices);
+    }
+
+    /**
+     * Detaches the writer from all devices
+     */
+    public synchronized void close() {
+        for (SmartDevice device : devices) {
+            device.removeStateListener(this);
+        }
+        changed.clear();
+    }
+
+    @Override
+    public synchronized void onStateChanged(SmartDevice device, DeviceProperty property) {
+        changed.add(device);
+    }
+
+    /**
+     * Writes one page of the full report
+     * @param out Destination for the page
+     * @param cursor Index of the first device to write (0 for the first page)
+     * @param pageSize Maximum number of devices to write
+     * @return Cursor for the next page, or -1 when the report is complete
+     * @throws IOException if the destination fails
+     */
+    public synchronized int writePage(Appendable out, int cursor, int pageSize) throws IOException {
+        int end = Math.min(devices.size(), cursor + pageSize);
+        for (int i = cursor; i < end; i++) {
+            Room room = roomOfDevice.get(i);
+            if (i == cursor || room != roomOfDevice.get(i - 1)) {
+                room.writeHeader(out);
+            }
+            out.append("  • ");
+            devices.get(i).writeStatus(out);
+            out.append('\n');
+            changed.remove(devices.get(i));
+        }
+        if (end < devices.size()) {
+            return end;
+        }
+        out.append("\n  Total Rooms: ");
+        StatusFormat.appendInt(out, home.getRoomCount());
+        out.append("\n  Total Devices: ");
+        StatusFormat.appendInt(out, devices.size());
+        out.append('\n');
+        return -1;
+    }
+
+    /**
+     * Writes the devices whose state changed since they were last rendered
+     * @param out Destination for the status lines
+     * @param maxDevices Maximum number of devices to write
+     * @return Number of devices written
+     * @throws IOException if the destination fails
+     */
+    public synchronized int writeChanges(Appendable out, int maxDevices) throws IOException {
+        int written = 0;
+        Iterator<SmartDevice> iterator = changed.iterator();
+        while (iterator.hasNext() && written < maxDevices) {
+            SmartDevice device = iterator.next();
+            iterator.remove();
+            out.append("  • ");
+            device.writeStatus(out);
+            out.append('\n');
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Streams the full report to a print stream, one page at a time,
+     * reusing a single buffer
+     * @param out Destination stream
+     * @param pageSize Number of devices per page
+     */
+    public void printReport(PrintStream out, int pageSize) {
+        StringBuilder page = new StringBuilder(pageSize * 96);
+        int cursor = 0;
+        try {
+            while (cursor >= 0) {
+                page.setLength(0);
+                cursor = writePage(page, cursor, pageSize);
+                out.print(page);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+    }
+
+    /**
+     * @return Number of devices changed since they were last rendered
+     */
+    public synchronized int getChangedCount() {
+        return changed.size();
+    }
+}
@@ -0,0 +1,163 @@
+package server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking client for the control server.
+ * Requests are buffered and only sent on flush() (or when the buffer fills),
+ * so many requests can be in flight before reading their responses.
+ */
+public class ControlClient implements Closeable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE + 4);
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE + 4);
+
+    /**
+     * A decoded server frame
+     */
+    public static class Response {
+        public byte opcode;
+        public int requestId;
+        public byte errorCode;
+        public String text;         // status text, error message or event device ID
+        public int property = -1;   // DeviceProperty ordinal for events
+
+        public boolean isOk() {
+            return opcode == Protocol.OK || opcode == Protocol.STATUS_REPLY;
+        }
+    }
+
+    /**
+     * Connects to a control server on the loopback interface
+     * @param port Server port
+     * @throws IOException if the connection fails
+     */
+    public ControlClient(int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+        in.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the strings do not fit in one frame; nothing is sent
+     */
+    public void sendCommand(int requestId, String deviceId, String command) throws IOException {
+        byte[] id = Protocol.encode(deviceId);
+        byte[] text = Protocol.encode(command);
+        int start = beginFrame(Protocol.COMMAND, requestId, 2 + id.length + 2 + text.length);
+        Protocol.putEncoded(out, id);
+        Protocol.putEncoded(out, text);
+        endFrame(start);
+    }
+
+    public void sendStatusQuery(int requestId, String deviceId) throws IOException {
+        byte[] id = Protocol.encode(deviceId);
+        int start = beginFrame(Protocol.STATUS, requestId, 2 + id.length);
+        Protocol.putEncoded(out, id);
+        endFrame(start);
+    }
+
+    /**
+     * Subscribes to state change events
+     * @param subscriptionId Request ID that events for this subscription will carry
+     * @param deviceId Device to watch, or "" for every device
+     */
+    public void subscribe(int subscriptionId, String deviceId) throws IOException {
+        byte[] id = Protocol.encode(deviceId);
+        int start = beginFrame(Protocol.SUBSCRIBE, subscriptionId, 2 + id.length);
+        Protocol.putEncoded(out, id);
+        endFrame(start);
+    }
+
+    public void unsubscribe(int subscriptionId) throws IOException {
+        endFrame(beginFrame(Protocol.UNSUBSCRIBE, subscriptionId, 0));
+    }
+
+    public void ping(int requestId) throws IOException {
+        endFrame(beginFrame(Protocol.PING, requestId, 0));
+    }
+
+    /**
+     * Sends all buffered requests
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Reads the next frame from the server, flushing pending requests first
+     * @return The decoded frame
+     * @throws IOException if the connection fails or is closed
+     */
+    public Response readResponse() throws IOException {
+        if (out.position() > 0) {
+            flush();
+        }
+        fill(4);
+        int length = in.getInt();
+        fill(length);
+        int end = in.position() + length;
+
+        Response response = new Response();
+        response.opcode = in.get();
+        response.requestId = in.getInt();
+        if (response.opcode == Protocol.ERROR) {
+            response.errorCode = in.get();
+            response.text = Protocol.getString(in);
+        } else if (response.opcode == Protocol.STATUS_REPLY) {
+            response.text = Protocol.getString(in);
+        } else if (response.opcode == Protocol.EVENT) {
+            response.text = Protocol.getString(in);
+            response.property = in.get();
+        }
+        in.position(end);
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int beginFrame(byte opcode, int requestId, int payload) throws IOException {
+        if (Protocol.HEADER_SIZE + payload > Protocol.MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Request of " + payload + " bytes exceeds the frame limit");
+        }
+        if (out.remaining() < 4 + Protocol.HEADER_SIZE + payload) {
+            flush();
+        }
+        int start = out.position();
+        out.putInt(0);
+        out.put(opcode);
+        out.putInt(requestId);
+        return start;
+    }
+
+    private void endFrame(int start) {
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    // Makes sure at least the given number of bytes are readable from 'in'
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        in.compact();
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+        }
+        in.flip();
+    }
+}
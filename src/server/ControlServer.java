@@ -0,0 +1,519 @@
+package server;
+
+import controller.CentralController;
+import controller.CommandResult;
+import controller.DeviceCommand;
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Local control server built on a single NIO selector thread.
+ * Accepts many client connections speaking the binary Protocol, processes
+ * every complete frame in a read (so clients can pipeline requests), and
+ * dispatches commands through the controller, which validates them and runs
+ * them under its state lock. All device access from the network happens on
+ * the selector thread.
+ *
+ * Devices are looked up in the home on each request. The server listens to a
+ * device's changes only while a client subscribes to it; a whole-home
+ * subscription loads every room and keeps it loaded until it is cancelled.
+ * Pending events are coalesced per device and property.
+ */
+public class ControlServer implements Runnable, DeviceStateListener {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    // Stop reading from a client whose unsent responses exceed this
+    private static final int WRITE_HIGH_WATER = 1024 * 1024;
+    // Drop events for a client whose unsent data exceeds this
+    private static final int EVENT_LIMIT = 4 * 1024 * 1024;
+
+    private final CentralController controller;
+    private final int requestedPort;
+    // Devices this server listens to, for subscriptions
+    private final Set<SmartDevice> watched = ConcurrentHashMap.newKeySet();
+    // Number of single-device subscriptions per device ID (selector thread only)
+    private final Map<String, Integer> deviceSubscribers = new HashMap<>();
+    // Changes waiting to be pushed, at most one per device and property: events
+    // carry no value, so a repeat adds nothing and the queue stays bounded
+    private final ConcurrentLinkedQueue<Event> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final Set<Event> queuedEvents = ConcurrentHashMap.newKeySet();
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<Connection> pendingOutput = new ArrayList<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile int subscriptionCount;
+    private volatile int homeSubscriptionCount;
+    private long framesHandled;
+    private long eventsDropped;
+
+    /**
+     * Constructor for ControlServer
+     * @param controller The controller whose home the server drives
+     * @param port Port to listen on (0 picks a free port)
+     */
+    public ControlServer(CentralController controller, int port) {
+        this.controller = controller;
+        this.requestedPort = port;
+    }
+
+    /**
+     * Binds to the loopback interface and starts the selector thread
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort), 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this, "control-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        System.out.println("✓ Control server listening on port " + getPort());
+    }
+
+    /**
+     * Stops the selector thread and closes all connections
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SmartDevice device : watched) {
+            device.removeStateListener(this);
+        }
+        watched.clear();
+        System.out.println("✓ Control server stopped");
+    }
+
+    /**
+     * Starts listening to devices added to the home since a client subscribed
+     * to the whole home. Call this after adding rooms or devices.
+     */
+    public void refreshDevices() {
+        if (homeSubscriptionCount > 0) {
+            watchAll();
+        }
+    }
+
+    private void watch(SmartDevice device) {
+        if (watched.add(device)) {
+            device.addStateListener(this);
+        }
+    }
+
+    private void watchAll() {
+        for (SmartDevice device : controller.getHome().getAllDevices()) {
+            watch(device);
+        }
+    }
+
+    // Drops a cancelled subscription and stops listening to devices no subscription covers any more
+    private void release(String filter) {
+        subscriptionCount--;
+        if (filter.isEmpty()) {
+            homeSubscriptionCount--;
+        } else {
+            deviceSubscribers.computeIfPresent(filter, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        if (homeSubscriptionCount > 0) {
+            return;
+        }
+        for (Iterator<SmartDevice> iterator = watched.iterator(); iterator.hasNext(); ) {
+            SmartDevice device = iterator.next();
+            if (!deviceSubscribers.containsKey(device.getDeviceId())) {
+                iterator.remove();
+                device.removeStateListener(this);
+            }
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getFramesHandled() {
+        return framesHandled;
+    }
+
+    public long getEventsDropped() {
+        return eventsDropped;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                }
+                drainEvents();
+                for (Connection connection : pendingOutput) {
+                    flush(connection);
+                }
+                pendingOutput.clear();
+            }
+        } catch (IOException e) {
+            System.out.println("✗ Control server error: " + e.getMessage());
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                close(connection);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Already shutting down
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        ByteBuffer in = connection.readBuffer;
+        int bytesRead;
+        try {
+            bytesRead = connection.channel.read(in);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (bytesRead < 0) {
+            close(connection);
+            return;
+        }
+
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < Protocol.HEADER_SIZE || length > Protocol.MAX_FRAME_SIZE) {
+                close(connection); // Corrupt stream, cannot resynchronise
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            int frameEnd = in.position() + 4 + length;
+            in.position(in.position() + 4);
+            byte opcode = in.get();
+            int requestId = in.getInt();
+
+            int limit = in.limit();
+            in.limit(frameEnd);
+            handleFrame(connection, opcode, requestId, in);
+            in.limit(limit);
+            in.position(frameEnd);
+            framesHandled++;
+        }
+        in.compact();
+        if (in.position() == in.capacity()) {
+            close(connection); // Frame larger than the read buffer
+        }
+    }
+
+    private void handleFrame(Connection connection, byte opcode, int requestId, ByteBuffer payload) {
+        try {
+            switch (opcode) {
+                case Protocol.COMMAND: {
+                    String deviceId = Protocol.getString(payload);
+                    String command = Protocol.getString(payload);
+                    CommandResult result = controller.executeCommand(new DeviceCommand(deviceId, command));
+                    switch (result.getStatus()) {
+                        case APPLIED:
+                            connection.writeHeader(Protocol.OK, requestId, 0);
+                            break;
+                        case NOT_FOUND:
+                            connection.writeError(requestId, Protocol.ERR_DEVICE_NOT_FOUND, result.getMessage());
+                            break;
+                        case NOT_CONTROLLABLE:
+                            connection.writeError(requestId, Protocol.ERR_NOT_CONTROLLABLE, result.getMessage());
+                            break;
+                        case REJECTED:
+                            connection.writeError(requestId, Protocol.ERR_INVALID_COMMAND, result.getMessage());
+                            break;
+                        default:
+                            connection.writeError(requestId, Protocol.ERR_COMMAND_FAILED, String.valueOf(result.getMessage()));
+                    }
+                    break;
+                }
+                case Protocol.STATUS: {
+                    String deviceId = Protocol.getString(payload);
+                    SmartDevice device = controller.getHome().lookupDevice(deviceId);
+                    if (device == null) {
+                        connection.writeError(requestId, Protocol.ERR_DEVICE_NOT_FOUND, "Device " + deviceId + " not found");
+                    } else {
+                        connection.writeText(Protocol.STATUS_REPLY, requestId, device.getStatus());
+                    }
+                    break;
+                }
+                case Protocol.SUBSCRIBE: {
+                    String deviceId = Protocol.getString(payload);
+                    if (deviceId.isEmpty()) {
+                        homeSubscriptionCount++;
+                        watchAll();
+                    } else {
+                        SmartDevice device = controller.getHome().lookupDevice(deviceId);
+                        if (device == null) {
+                            connection.writeError(requestId, Protocol.ERR_DEVICE_NOT_FOUND, "Device " + deviceId + " not found");
+                            break;
+                        }
+                        watch(device);
+                        deviceSubscribers.merge(deviceId, 1, Integer::sum);
+                    }
+                    String replaced = connection.subscriptions.put(requestId, deviceId);
+                    if (replaced != null) {
+                        release(replaced); // The client reused a subscription ID
+                    }
+                    subscriptionCount++;
+                    connection.writeHeader(Protocol.OK, requestId, 0);
+                    break;
+                }
+                case Protocol.UNSUBSCRIBE: {
+                    String filter = connection.subscriptions.remove(requestId);
+                    if (filter != null) {
+                        release(filter);
+                    }
+                    connection.writeHeader(Protocol.OK, requestId, 0);
+                    break;
+                }
+                case Protocol.PING:
+                    connection.writeHeader(Protocol.OK, requestId, 0);
+                    break;
+                default:
+                    connection.writeError(requestId, Protocol.ERR_UNKNOWN_OPCODE, "Unknown opcode " + opcode);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            connection.writeError(requestId, Protocol.ERR_MALFORMED, "Malformed frame");
+        }
+        markPending(connection);
+    }
+
+    @Override
+    public void onStateChanged(SmartDevice device, DeviceProperty property) {
+        if (subscriptionCount == 0 || !running) {
+            return;
+        }
+        Event event = new Event(device.getDeviceId(), property);
+        if (queuedEvents.add(event)) {
+            pendingEvents.add(event);
+            if (Thread.currentThread() != selectorThread) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private void drainEvents() {
+        Event event;
+        while ((event = pendingEvents.poll()) != null) {
+            queuedEvents.remove(event); // A change from now on queues a new event
+            byte[] deviceId;
+            try {
+                deviceId = Protocol.encode(event.deviceId);
+            } catch (IllegalArgumentException e) {
+                eventsDropped++; // An ID too long for a frame cannot be pushed
+                continue;
+            }
+            for (Connection connection : connections) {
+                for (Map.Entry<Integer, String> subscription : connection.subscriptions.entrySet()) {
+                    String filter = subscription.getValue();
+                    if (!filter.isEmpty() && !filter.equals(event.deviceId)) {
+                        continue;
+                    }
+                    if (connection.writeBuffer.position() > EVENT_LIMIT) {
+                        eventsDropped++;
+                        continue;
+                    }
+                    connection.writeEvent(subscription.getKey(), deviceId, event.property);
+                    markPending(connection);
+                }
+            }
+        }
+    }
+
+    private void markPending(Connection connection) {
+        if (!connection.pending) {
+            connection.pending = true;
+            pendingOutput.add(connection);
+        }
+    }
+
+    private void flush(Connection connection) {
+        connection.pending = false;
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        ByteBuffer out = connection.writeBuffer;
+        out.flip();
+        try {
+            connection.channel.write(out);
+        } catch (IOException e) {
+            out.compact();
+            close(connection);
+            return;
+        }
+        out.compact();
+
+        int interest = SelectionKey.OP_READ;
+        if (out.position() > 0) {
+            interest |= SelectionKey.OP_WRITE;
+            if (out.position() > WRITE_HIGH_WATER) {
+                interest = SelectionKey.OP_WRITE; // Backpressure: stop reading until drained
+            }
+        }
+        connection.key.interestOps(interest);
+    }
+
+    private void close(Connection connection) {
+        connections.remove(connection);
+        for (String filter : connection.subscriptions.values()) {
+            release(filter);
+        }
+        connection.subscriptions.clear();
+        try {
+            connection.key.cancel();
+            connection.channel.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+
+    /**
+     * A state change waiting to be pushed to subscribers
+     */
+    private static class Event {
+        final String deviceId;
+        final DeviceProperty property;
+
+        Event(String deviceId, DeviceProperty property) {
+            this.deviceId = deviceId;
+            this.property = property;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Event && ((Event) other).deviceId.equals(deviceId)
+                    && ((Event) other).property == property;
+        }
+
+        @Override
+        public int hashCode() {
+            return deviceId.hashCode() * 31 + property.ordinal();
+        }
+    }
+
+    /**
+     * Per-client buffers and subscriptions
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        final Map<Integer, String> subscriptions = new HashMap<>();
+        SelectionKey key;
+        boolean pending;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeHeader(byte opcode, int requestId, int payloadLength) {
+            ensureWritable(4 + Protocol.HEADER_SIZE + payloadLength);
+            writeBuffer.putInt(Protocol.HEADER_SIZE + payloadLength);
+            writeBuffer.put(opcode);
+            writeBuffer.putInt(requestId);
+        }
+
+        // Throws IllegalArgumentException before writing anything if the text does not fit a frame
+        void writeText(byte opcode, int requestId, String text) {
+            byte[] bytes = Protocol.encode(text);
+            writeHeader(opcode, requestId, 2 + bytes.length);
+            Protocol.putEncoded(writeBuffer, bytes);
+        }
+
+        void writeError(int requestId, byte code, String message) {
+            // Messages may quote a client's command; cut them so they always fit a frame
+            if (message.length() > Protocol.MAX_STRING_BYTES / 3) {
+                message = message.substring(0, Protocol.MAX_STRING_BYTES / 3);
+            }
+            byte[] bytes = Protocol.encode(message);
+            writeHeader(Protocol.ERROR, requestId, 1 + 2 + bytes.length);
+            writeBuffer.put(code);
+            Protocol.putEncoded(writeBuffer, bytes);
+        }
+
+        void writeEvent(int subscriptionId, byte[] deviceId, DeviceProperty property) {
+            writeHeader(Protocol.EVENT, subscriptionId, 2 + deviceId.length + 1);
+            Protocol.putEncoded(writeBuffer, deviceId);
+            writeBuffer.put((byte) property.ordinal());
+        }
+
+        private void ensureWritable(int bytes) {
+            if (writeBuffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes));
+                writeBuffer.flip();
+                grown.put(writeBuffer);
+                writeBuffer = grown;
+            }
+        }
+    }
+}
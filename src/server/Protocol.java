@@ -0,0 +1,89 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol spoken by the control server.
+ *
+ * Every frame is: [int length][byte opcode][int requestId][payload], where
+ * length counts the bytes after itself. Strings are encoded as an unsigned
+ * short byte count followed by UTF-8 bytes. Responses echo the requestId of
+ * the request they answer, so clients can pipeline many requests without
+ * waiting. Events carry the subscription's requestId.
+ */
+public final class Protocol {
+    // Requests
+    public static final byte COMMAND = 0x01;      // payload: deviceId, command
+    public static final byte STATUS = 0x02;       // payload: deviceId
+    public static final byte SUBSCRIBE = 0x03;    // payload: deviceId, or "" for every device
+    public static final byte UNSUBSCRIBE = 0x04;  // payload: none, requestId = subscription to cancel
+    public static final byte PING = 0x05;         // payload: none
+
+    // Responses
+    public static final byte OK = (byte) 0x80;    // payload: none
+    public static final byte ERROR = (byte) 0x81; // payload: byte error code, message
+    public static final byte STATUS_REPLY = (byte) 0x82; // payload: status text
+    public static final byte EVENT = (byte) 0x83; // payload: deviceId, byte property ordinal
+
+    // Error codes
+    public static final byte ERR_UNKNOWN_OPCODE = 1;
+    public static final byte ERR_DEVICE_NOT_FOUND = 2;
+    public static final byte ERR_NOT_CONTROLLABLE = 3;
+    public static final byte ERR_COMMAND_FAILED = 4;
+    public static final byte ERR_MALFORMED = 5;
+    public static final byte ERR_INVALID_COMMAND = 6; // Failed validation, nothing was attempted
+
+    /** Size of the frame header after the length field: opcode + requestId */
+    public static final int HEADER_SIZE = 5;
+    /** Largest frame a peer may send */
+    public static final int MAX_FRAME_SIZE = 64 * 1024;
+    /** Longest encoded string, so that a frame with one string and an error code fits MAX_FRAME_SIZE */
+    public static final int MAX_STRING_BYTES = MAX_FRAME_SIZE - HEADER_SIZE - 3;
+
+    private Protocol() {
+    }
+
+    /**
+     * Encodes a string for putEncoded, so its length is checked before anything is written
+     * @throws IllegalArgumentException if it is longer than MAX_STRING_BYTES in UTF-8
+     */
+    public static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes exceeds "
+                    + MAX_STRING_BYTES);
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes a string as unsigned short length + UTF-8 bytes
+     * @throws IllegalArgumentException if it is too long, before writing anything
+     */
+    public static void putString(ByteBuffer buffer, String value) {
+        putEncoded(buffer, encode(value));
+    }
+
+    /**
+     * Writes a string returned by encode()
+     */
+    public static void putEncoded(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string written by putString
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String length exceeds frame");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
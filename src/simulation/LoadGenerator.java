@@ -0,0 +1,407 @@
+package simulation;
+
+import controller.CentralController;
+import controller.DeviceCommand;
+import devices.DeviceProperty;
+import devices.Light;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import devices.SmartTV;
+import devices.Thermostat;
+import exceptions.DuplicateDeviceException;
+import interfaces.Controllable;
+import structure.Home;
+import structure.Room;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates realistic household traffic against a synthetic home.
+ *
+ * The home and every thread's operation sequence are derived from the seed,
+ * so runs with the same configuration end in the same device state (see
+ * LoadReport.getStateChecksum) and can be compared between builds. Rooms are
+ * partitioned between threads, since devices are not thread-safe.
+ *
+ * Traffic follows a simulated day that advances with each operation:
+ * occupancy-driven motion and lights, evening TV use, thermostat schedule
+ * changes and occasional bulk commands through CentralController.executeBatch.
+ * Latency is measured from each operation's scheduled start, so falling
+ * behind the target rate shows up as latency rather than being hidden.
+ * Console output from devices is discarded while the generator runs.
+ */
+public class LoadGenerator {
+
+    /**
+     * Kinds of generated operation
+     */
+    public enum Operation { MOTION, LIGHT, TV, THERMOSTAT, BULK }
+
+    /** Simulated seconds that pass per operation of one thread */
+    private static final int SIMULATED_SECONDS_PER_OPERATION = 60;
+
+    // Probability that a room is occupied, by hour of day
+    private static final double[] OCCUPANCY = {
+            0.05, 0.05, 0.05, 0.05, 0.05, 0.1, 0.4, 0.8, 0.6, 0.2, 0.15, 0.15,
+            0.3, 0.2, 0.15, 0.2, 0.4, 0.7, 0.9, 0.9, 0.85, 0.8, 0.6, 0.2
+    };
+
+    private long seed = 42;
+    private int roomCount = 100;
+    private int devicesPerRoom = 10;
+    private int lightWeight = 5;
+    private int thermostatWeight = 1;
+    private int tvWeight = 2;
+    private int sensorWeight = 2;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long operations = 1_000_000;
+    private double targetRate; // Operations per second over all threads; 0 for unthrottled
+
+    private Home home;
+    private CentralController controller;
+
+    // ---- Configuration ----
+
+    public LoadGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param rooms Number of rooms
+     * @param devicesPerRoom Devices in each room
+     */
+    public LoadGenerator setHomeSize(int rooms, int devicesPerRoom) {
+        if (rooms <= 0 || devicesPerRoom <= 0) {
+            throw new IllegalArgumentException("Home must have at least one room and one device per room");
+        }
+        this.roomCount = rooms;
+        this.devicesPerRoom = devicesPerRoom;
+        return this;
+    }
+
+    /**
+     * Sets the relative share of each device type
+     */
+    public LoadGenerator setDeviceMix(int lights, int thermostats, int tvs, int sensors) {
+        if (lights + thermostats + tvs + sensors <= 0) {
+            throw new IllegalArgumentException("Device mix must not be empty");
+        }
+        this.lightWeight = lights;
+        this.thermostatWeight = thermostats;
+        this.tvWeight = tvs;
+        this.sensorWeight = sensors;
+        return this;
+    }
+
+    public LoadGenerator setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * @param operations Total operations to run, split evenly between threads
+     */
+    public LoadGenerator setOperations(long operations) {
+        this.operations = operations;
+        return this;
+    }
+
+    /**
+     * @param operationsPerSecond Target rate over all threads, or 0 to run flat out
+     */
+    public LoadGenerator setTargetRate(double operationsPerSecond) {
+        this.targetRate = operationsPerSecond;
+        return this;
+    }
+
+    // ---- Home ----
+
+    /**
+     * Builds the synthetic home from the seed
+     * @return The home
+     */
+    public Home buildHome() {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(NULL_OUTPUT));
+        try {
+            Random random = new Random(seed);
+            home = new Home("Load Test Home");
+            int totalWeight = lightWeight + thermostatWeight + tvWeight + sensorWeight;
+            int sequence = 0;
+            for (int r = 0; r < roomCount; r++) {
+                Room room = new Room("Room " + r, r % 3);
+                for (int d = 0; d < devicesPerRoom; d++) {
+                    int pick = random.nextInt(totalWeight);
+                    String id = String.format("%06d", sequence++);
+                    SmartDevice device;
+                    if ((pick -= lightWeight) < 0) {
+                        device = new Light("L" + id, "Light " + id, 20 + random.nextInt(81));
+                    } else if ((pick -= thermostatWeight) < 0) {
+                        device = new Thermostat("T" + id, "Thermostat " + id, 17 + random.nextInt(6));
+                        device.turnOn();
+                    } else if ((pick -= tvWeight) < 0) {
+                        device = new SmartTV("TV" + id, "TV " + id);
+                    } else {
+                        device = new MotionSensor("S" + id, "Sensor " + id);
+                        device.turnOn();
+                    }
+                    room.addDevice(device);
+                }
+                home.addRoom(room);
+            }
+            controller = new CentralController(home);
+        } catch (DuplicateDeviceException e) {
+            throw new IllegalStateException(e); // IDs are generated unique
+        } finally {
+            System.setOut(console);
+        }
+        return home;
+    }
+
+    // ---- Run ----
+
+    /**
+     * Runs the workload, building the home first if needed
+     * @return The report
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public LoadReport run() throws InterruptedException {
+        if (home == null) {
+            buildHome();
+        }
+        List<Room> rooms = new ArrayList<>(home.getRooms().values());
+        rooms.sort((a, b) -> Integer.compare(roomNumber(a), roomNumber(b))); // HashMap order is not seeded
+        int workerCount = Math.min(threads, rooms.size());
+        Worker[] workers = new Worker[workerCount];
+        for (int w = 0; w < workerCount; w++) {
+            List<RoomDevices> partition = new ArrayList<>();
+            for (int r = w; r < rooms.size(); r += workerCount) {
+                partition.add(new RoomDevices(rooms.get(r)));
+            }
+            long share = operations / workerCount + (w < operations % workerCount ? 1 : 0);
+            double interval = targetRate > 0 ? 1e9 * workerCount / targetRate : 0;
+            workers[w] = new Worker(seed * 31 + w, partition, share, interval);
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(NULL_OUTPUT));
+        long elapsed;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] running = new Thread[workerCount];
+            for (int w = 0; w < workerCount; w++) {
+                Worker worker = workers[w];
+                running[w] = new Thread(() -> {
+                    try {
+                        start.await();
+                        worker.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "load-" + w);
+                running[w].start();
+            }
+            long begin = System.nanoTime();
+            for (Worker worker : workers) {
+                worker.startNanos = begin;
+            }
+            start.countDown();
+            for (Thread thread : running) {
+                thread.join();
+            }
+            elapsed = System.nanoTime() - begin;
+        } finally {
+            System.setOut(console);
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        Map<Operation, Long> counts = new EnumMap<>(Operation.class);
+        long errors = 0;
+        for (Worker worker : workers) {
+            latency.merge(worker.latency);
+            errors += worker.errors;
+            for (Operation operation : Operation.values()) {
+                counts.merge(operation, worker.counts[operation.ordinal()], Long::sum);
+            }
+        }
+        return new LoadReport(seed, workerCount, home.getDeviceCount(), elapsed, targetRate,
+                latency, counts, errors, checksum(rooms));
+    }
+
+    private static int roomNumber(Room room) {
+        return Integer.parseInt(room.getRoomName().substring("Room ".length()));
+    }
+
+    private static long checksum(List<Room> rooms) {
+        long hash = 1;
+        for (Room room : rooms) {
+            for (SmartDevice device : room.getDevices()) {
+                for (DeviceProperty property : device.getSupportedProperties()) {
+                    String text = device.getPropertyText(property);
+                    hash = hash * 31 + device.getPropertyValue(property);
+                    hash = hash * 31 + (text != null ? text.hashCode() : 0);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * A room's devices grouped by type
+     */
+    private static final class RoomDevices {
+        final List<Light> lights = new ArrayList<>();
+        final List<Thermostat> thermostats = new ArrayList<>();
+        final List<SmartTV> tvs = new ArrayList<>();
+        final List<MotionSensor> sensors = new ArrayList<>();
+        final List<SmartDevice> all;
+
+        RoomDevices(Room room) {
+            all = room.getDevices();
+            for (SmartDevice device : all) {
+                if (device instanceof Light) {
+                    lights.add((Light) device);
+                } else if (device instanceof Thermostat) {
+                    thermostats.add((Thermostat) device);
+                } else if (device instanceof SmartTV) {
+                    tvs.add((SmartTV) device);
+                } else if (device instanceof MotionSensor) {
+                    sensors.add((MotionSensor) device);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drives one partition of rooms with its own random sequence and histogram
+     */
+    private final class Worker {
+        final Random random;
+        final List<RoomDevices> rooms;
+        final long operationCount;
+        final double intervalNanos;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final long[] counts = new long[Operation.values().length];
+        long errors;
+        volatile long startNanos;
+
+        Worker(long seed, List<RoomDevices> rooms, long operationCount, double intervalNanos) {
+            this.random = new Random(seed);
+            this.rooms = rooms;
+            this.operationCount = operationCount;
+            this.intervalNanos = intervalNanos;
+        }
+
+        void run() {
+            for (long i = 0; i < operationCount; i++) {
+                long scheduled = intervalNanos > 0 ? startNanos + (long) (i * intervalNanos) : System.nanoTime();
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int hour = (int) ((i * SIMULATED_SECONDS_PER_OPERATION / 3600) % 24);
+                RoomDevices room = rooms.get(random.nextInt(rooms.size()));
+                Operation operation = perform(room, hour);
+                latency.record(System.nanoTime() - scheduled);
+                counts[operation.ordinal()]++;
+            }
+        }
+
+        private Operation perform(RoomDevices room, int hour) {
+            boolean occupied = random.nextDouble() < OCCUPANCY[hour];
+            int roll = random.nextInt(100);
+
+            if (roll < 2) {
+                bulk(room, hour);
+                return Operation.BULK;
+            }
+            if (roll < 40 && !room.sensors.isEmpty()) {
+                send(pick(room.sensors), occupied ? "detect" : "clear");
+                return Operation.MOTION;
+            }
+            if (roll < 70 && !room.lights.isEmpty()) {
+                boolean dark = hour < 7 || hour >= 18;
+                Light light = pick(room.lights);
+                if (occupied && dark) {
+                    send(light, light.isOn() && random.nextInt(4) == 0 ? "dim" : "on");
+                } else {
+                    send(light, "off");
+                }
+                return Operation.LIGHT;
+            }
+            if (roll < 88 && !room.tvs.isEmpty()) {
+                SmartTV tv = pick(room.tvs);
+                boolean evening = hour >= 19 && hour <= 23;
+                if (!evening || !occupied) {
+                    send(tv, "off");
+                } else if (!tv.isOn()) {
+                    send(tv, "on");
+                } else {
+                    switch (random.nextInt(4)) {
+                        case 0: send(tv, "channel " + (1 + random.nextInt(99))); break;
+                        case 1: send(tv, "volumeup"); break;
+                        case 2: send(tv, "volumedown"); break;
+                        default: send(tv, "stream " + (random.nextBoolean() ? "Netflix" : "YouTube")); break;
+                    }
+                }
+                return Operation.TV;
+            }
+            if (!room.thermostats.isEmpty()) {
+                Thermostat thermostat = pick(room.thermostats);
+                boolean day = hour >= 6 && hour < 22;
+                if (random.nextInt(10) == 0) {
+                    send(thermostat, "setmode " + (random.nextBoolean() ? "heat" : "auto"));
+                } else {
+                    send(thermostat, "settemp " + ((day ? 20 : 17) + random.nextInt(3)));
+                }
+                return Operation.THERMOSTAT;
+            }
+            send(pick(room.all), "on"); // Room lacks the picked device type
+            return Operation.LIGHT;
+        }
+
+        // Bulk command over the room: evening scene or everything off
+        private void bulk(RoomDevices room, int hour) {
+            boolean evening = hour >= 18 && hour <= 23;
+            List<DeviceCommand> commands = new ArrayList<>();
+            for (Light light : room.lights) {
+                commands.add(new DeviceCommand(light.getDeviceId(), evening ? "on" : "off"));
+            }
+            for (SmartTV tv : room.tvs) {
+                commands.add(new DeviceCommand(tv.getDeviceId(), "off"));
+            }
+            controller.executeBatch(commands);
+        }
+
+        private <T extends SmartDevice> T pick(List<T> devices) {
+            return devices.get(random.nextInt(devices.size()));
+        }
+
+        private void send(SmartDevice device, String command) {
+            try {
+                ((Controllable) device).executeCommand(command);
+            } catch (RuntimeException e) {
+                errors++; // e.g. dimming below zero; counted, not fatal
+            }
+        }
+    }
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+}
@@ -0,0 +1,95 @@
+package simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Results of a load generator run
+ */
+public class LoadReport {
+    private final long seed;
+    private final int threads;
+    private final int deviceCount;
+    private final long elapsedNanos;
+    private final double targetRate;
+    private final LatencyHistogram latency;
+    private final Map<LoadGenerator.Operation, Long> operationCounts;
+    private final long errorCount;
+    private final long stateChecksum;
+
+    LoadReport(long seed, int threads, int deviceCount, long elapsedNanos, double targetRate,
+               LatencyHistogram latency, Map<LoadGenerator.Operation, Long> operationCounts,
+               long errorCount, long stateChecksum) {
+        this.seed = seed;
+        this.threads = threads;
+        this.deviceCount = deviceCount;
+        this.elapsedNanos = elapsedNanos;
+        this.targetRate = targetRate;
+        this.latency = latency;
+        this.operationCounts = new EnumMap<>(operationCounts);
+        this.errorCount = errorCount;
+        this.stateChecksum = stateChecksum;
+    }
+
+    /**
+     * @return Operations completed per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : latency.getCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return Latency at that percentile in microseconds
+     */
+    public double getLatencyMicros(double percentile) {
+        return latency.getPercentile(percentile) / 1000.0;
+    }
+
+    public long getOperationCount() {
+        return latency.getCount();
+    }
+
+    public Map<LoadGenerator.Operation, Long> getOperationCounts() {
+        return new EnumMap<>(operationCounts);
+    }
+
+    /**
+     * @return Number of device commands that threw, e.g. dimming a light below zero
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return Hash of every device's final state; equal for runs with the same
+     *         seed and configuration, so it can be compared between builds
+     */
+    public long getStateChecksum() {
+        return stateChecksum;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append("\n=== LOAD TEST REPORT ===\n");
+        out.append(String.format("Seed: %d | Threads: %d | Devices: %d%n", seed, threads, deviceCount));
+        out.append(String.format("Operations: %d in %.2f s = %.0f ops/s%s%n", latency.getCount(),
+                elapsedNanos / 1e9, getThroughput(),
+                targetRate > 0 ? String.format(" (target %.0f ops/s)", targetRate) : " (unthrottled)"));
+        out.append(String.format("Latency (us): mean %.1f | p50 %.1f | p90 %.1f | p99 %.1f | p99.9 %.1f | max %.1f%n",
+                latency.getMean() / 1000, getLatencyMicros(50), getLatencyMicros(90), getLatencyMicros(99),
+                getLatencyMicros(99.9), latency.getMax() / 1000.0));
+        out.append("Mix:");
+        for (Map.Entry<LoadGenerator.Operation, Long> entry : operationCounts.entrySet()) {
+            out.append(' ').append(entry.getKey().name().toLowerCase()).append('=').append(entry.getValue());
+        }
+        out.append(String.format("%nDevice errors: %d", errorCount));
+        out.append(String.format("%nState checksum: %016x", stateChecksum));
+        return out.toString();
+    }
+}
@@ -0,0 +1,389 @@
+package simulation;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import devices.Thermostat;
+import structure.Home;
+import structure.Room;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-zone thermal simulation of a home.
+ *
+ * Each room is a zone with a heat capacity, a conductance to the outdoors and
+ * conductances to the rooms it is connected to. Zones with an active
+ * thermostat receive heating or cooling according to its mode and target.
+ * Zone temperatures are stepped with explicit Euler integration:
+ * <pre>
+ *   C[i] dT[i]/dt = sum_j G[i][j] (T[j] - T[i]) + Gout[i] (Tout - T[i]) + Q[i]
+ * </pre>
+ * Links are stored as a compressed sparse row matrix of primitive arrays, and
+ * large buildings are stepped in parallel chunks of zones. After each step
+ * the rounded zone temperature is written back to the room's thermostats.
+ */
+public class ThermalModel {
+    /** Default heat capacity of a room (air, walls and furnishings) in J/K */
+    public static final double DEFAULT_CAPACITY = 2_000_000;
+    /** Default conductance from a room to the outdoors in W/K */
+    public static final double DEFAULT_OUTDOOR_CONDUCTANCE = 40;
+    /** Heat delivered by a heating thermostat in W */
+    public static final double HEATING_OUTPUT = 2_000;
+    /** Heat removed by a cooling thermostat in W */
+    public static final double COOLING_OUTPUT = 1_500;
+    /** Half-width of the thermostat dead band in °C */
+    public static final double DEAD_BAND = 0.25;
+
+    private static final int PARALLEL_THRESHOLD = 4_096;
+    private static final int CHUNK_SIZE = 1_024;
+    private static final byte MODE_OFF = 0;
+    private static final byte MODE_HEAT = 1;
+    private static final byte MODE_COOL = 2;
+    private static final byte MODE_AUTO = 3;
+
+    private final String[] zoneNames;
+    private final Map<String, Integer> zoneIndex = new HashMap<>();
+    private final double[] capacity;
+    private final double[] outdoorConductance;
+    private double[] temperature;
+    private double[] next;
+    private double outdoorTemperature = 10;
+
+    // Links as added, compiled into CSR form before the next step
+    private final List<int[]> linkZones = new ArrayList<>();
+    private final List<Double> linkConductance = new ArrayList<>();
+    private int[] rowStart;
+    private int[] neighbour;
+    private double[] conductance;
+    private boolean linksDirty = true;
+
+    // Thermostats grouped by zone, with their control state snapshotted each step
+    private final int[] thermostatStart;
+    private final Thermostat[] thermostats;
+    private final double[] thermostatTarget;
+    private final byte[] thermostatMode;
+    private final boolean[] heating; // Per zone, with dead band memory
+    private final boolean[] cooling;
+
+    private double simulatedSeconds;
+    private double heatingJoules;
+    private double coolingJoules;
+
+    /**
+     * Constructor for ThermalModel; creates one zone per room of the home,
+     * starting at its thermostat's temperature (or 20°C without one)
+     * @param home The home to model
+     */
+    public ThermalModel(Home home) {
+        List<Room> rooms = new ArrayList<>(home.getRooms().values());
+        int zones = rooms.size();
+        zoneNames = new String[zones];
+        capacity = new double[zones];
+        outdoorConductance = new double[zones];
+        temperature = new double[zones];
+        next = new double[zones];
+        heating = new boolean[zones];
+        cooling = new boolean[zones];
+        thermostatStart = new int[zones + 1];
+
+        List<Thermostat> found = new ArrayList<>();
+        for (int i = 0; i < zones; i++) {
+            Room room = rooms.get(i);
+            zoneNames[i] = room.getRoomName();
+            zoneIndex.put(room.getRoomName(), i);
+            capacity[i] = DEFAULT_CAPACITY;
+            outdoorConductance[i] = DEFAULT_OUTDOOR_CONDUCTANCE;
+            temperature[i] = 20;
+            thermostatStart[i] = found.size();
+            for (SmartDevice device : room.getDevices()) {
+                if (device instanceof Thermostat) {
+                    if (found.size() == thermostatStart[i]) {
+                        temperature[i] = ((Thermostat) device).getCurrentTemperature();
+                    }
+                    found.add((Thermostat) device);
+                }
+            }
+        }
+        thermostatStart[zones] = found.size();
+        thermostats = found.toArray(new Thermostat[0]);
+        thermostatTarget = new double[thermostats.length];
+        thermostatMode = new byte[thermostats.length];
+    }
+
+    // ---- Configuration ----
+
+    /**
+     * Links two rooms so heat flows between them
+     * @param roomA First room name
+     * @param roomB Second room name
+     * @param wattsPerKelvin Conductance of the shared walls, floors or doors
+     */
+    public void connect(String roomA, String roomB, double wattsPerKelvin) {
+        int a = zoneOf(roomA);
+        int b = zoneOf(roomB);
+        if (a == b) {
+            throw new IllegalArgumentException("A room cannot be connected to itself: " + roomA);
+        }
+        linkZones.add(new int[] { a, b });
+        linkConductance.add(wattsPerKelvin);
+        linksDirty = true;
+    }
+
+    /**
+     * @param roomName The room
+     * @param joulesPerKelvin Energy needed to warm the room by one degree
+     */
+    public void setCapacity(String roomName, double joulesPerKelvin) {
+        if (joulesPerKelvin <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        capacity[zoneOf(roomName)] = joulesPerKelvin;
+    }
+
+    /**
+     * @param roomName The room
+     * @param wattsPerKelvin Heat loss to the outdoors per degree of difference
+     */
+    public void setOutdoorConductance(String roomName, double wattsPerKelvin) {
+        outdoorConductance[zoneOf(roomName)] = wattsPerKelvin;
+    }
+
+    public void setOutdoorTemperature(double celsius) {
+        this.outdoorTemperature = celsius;
+    }
+
+    public void setTemperature(String roomName, double celsius) {
+        temperature[zoneOf(roomName)] = celsius;
+    }
+
+    // ---- Simulation ----
+
+    /**
+     * Advances the simulation, splitting the interval into stable sub-steps,
+     * then writes zone temperatures back to the thermostats
+     * @param seconds Simulated time to advance
+     */
+    public void step(double seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        compileLinks();
+        snapshotThermostats();
+
+        int substeps = (int) Math.ceil(seconds / maxStableStep());
+        double dt = seconds / substeps;
+        for (int s = 0; s < substeps; s++) {
+            substep(dt);
+        }
+        simulatedSeconds += seconds;
+        writeBack();
+    }
+
+    private void substep(double dt) {
+        int zones = temperature.length;
+        if (zones >= PARALLEL_THRESHOLD) {
+            int chunks = (zones + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            double[] chunkHeat = new double[chunks * 2];
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int from = c * CHUNK_SIZE;
+                stepZones(from, Math.min(zones, from + CHUNK_SIZE), dt, chunkHeat, c * 2);
+            });
+            for (int c = 0; c < chunks; c++) {
+                heatingJoules += chunkHeat[c * 2];
+                coolingJoules += chunkHeat[c * 2 + 1];
+            }
+        } else {
+            double[] heat = new double[2];
+            stepZones(0, zones, dt, heat, 0);
+            heatingJoules += heat[0];
+            coolingJoules += heat[1];
+        }
+        double[] swap = temperature;
+        temperature = next;
+        next = swap;
+    }
+
+    /**
+     * Steps zones [from, to) into next; reads only the current temperatures,
+     * so disjoint ranges can run concurrently
+     */
+    private void stepZones(int from, int to, double dt, double[] heat, int heatOffset) {
+        double heated = 0;
+        double cooled = 0;
+        for (int i = from; i < to; i++) {
+            double t = temperature[i];
+            double flow = outdoorConductance[i] * (outdoorTemperature - t);
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                flow += conductance[k] * (temperature[neighbour[k]] - t);
+            }
+
+            double hvac = hvacOutput(i, t);
+            if (hvac > 0) {
+                heated += hvac * dt;
+            } else {
+                cooled -= hvac * dt;
+            }
+            next[i] = t + dt * (flow + hvac) / capacity[i];
+        }
+        heat[heatOffset] += heated;
+        heat[heatOffset + 1] += cooled;
+    }
+
+    /**
+     * Heat delivered to a zone by its thermostats; each zone is only touched by one thread
+     */
+    private double hvacOutput(int zone, double t) {
+        double output = 0;
+        boolean heat = heating[zone];
+        boolean cool = cooling[zone];
+        for (int k = thermostatStart[zone]; k < thermostatStart[zone + 1]; k++) {
+            byte mode = thermostatMode[k];
+            if (mode == MODE_OFF) {
+                continue;
+            }
+            double target = thermostatTarget[k];
+            if (mode != MODE_COOL) {
+                heat = t < target - DEAD_BAND || (heat && t < target + DEAD_BAND);
+                if (heat) {
+                    output += HEATING_OUTPUT;
+                }
+            }
+            if (mode != MODE_HEAT) {
+                cool = t > target + DEAD_BAND || (cool && t > target - DEAD_BAND);
+                if (cool) {
+                    output -= COOLING_OUTPUT;
+                }
+            }
+        }
+        heating[zone] = heat;
+        cooling[zone] = cool;
+        return output;
+    }
+
+    private double maxStableStep() {
+        double limit = Double.MAX_VALUE;
+        for (int i = 0; i < temperature.length; i++) {
+            double totalConductance = outdoorConductance[i];
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                totalConductance += conductance[k];
+            }
+            if (totalConductance > 0) {
+                limit = Math.min(limit, capacity[i] / totalConductance);
+            }
+        }
+        return Math.min(limit * 0.5, 60); // Half the explicit Euler limit, at most a minute
+    }
+
+    private void compileLinks() {
+        if (!linksDirty) {
+            return;
+        }
+        int zones = temperature.length;
+        int[] degree = new int[zones];
+        for (int[] link : linkZones) {
+            degree[link[0]]++;
+            degree[link[1]]++;
+        }
+        rowStart = new int[zones + 1];
+        for (int i = 0; i < zones; i++) {
+            rowStart[i + 1] = rowStart[i] + degree[i];
+        }
+        neighbour = new int[rowStart[zones]];
+        conductance = new double[rowStart[zones]];
+        int[] fill = new int[zones];
+        for (int l = 0; l < linkZones.size(); l++) {
+            int a = linkZones.get(l)[0];
+            int b = linkZones.get(l)[1];
+            double g = linkConductance.get(l);
+            int ka = rowStart[a] + fill[a]++;
+            neighbour[ka] = b;
+            conductance[ka] = g;
+            int kb = rowStart[b] + fill[b]++;
+            neighbour[kb] = a;
+            conductance[kb] = g;
+        }
+        linksDirty = false;
+    }
+
+    private void snapshotThermostats() {
+        for (int k = 0; k < thermostats.length; k++) {
+            Thermostat thermostat = thermostats[k];
+            thermostatTarget[k] = thermostat.getTargetTemperature();
+            if (!thermostat.isOn()) {
+                thermostatMode[k] = MODE_OFF;
+            } else if (thermostat.getMode().equals("heat")) {
+                thermostatMode[k] = MODE_HEAT;
+            } else if (thermostat.getMode().equals("cool")) {
+                thermostatMode[k] = MODE_COOL;
+            } else {
+                thermostatMode[k] = MODE_AUTO;
+            }
+        }
+    }
+
+    private void writeBack() {
+        for (int i = 0; i < temperature.length; i++) {
+            long rounded = Math.round(temperature[i]);
+            for (int k = thermostatStart[i]; k < thermostatStart[i + 1]; k++) {
+                if (thermostats[k].getCurrentTemperature() != rounded) {
+                    thermostats[k].restoreProperty(DeviceProperty.CURRENT_TEMPERATURE, rounded, null);
+                }
+            }
+        }
+    }
+
+    private int zoneOf(String roomName) {
+        Integer zone = zoneIndex.get(roomName);
+        if (zone == null) {
+            throw new IllegalArgumentException("No zone for room: " + roomName);
+        }
+        return zone;
+    }
+
+    // ---- Results ----
+
+    public double getTemperature(String roomName) {
+        return temperature[zoneOf(roomName)];
+    }
+
+    public double getOutdoorTemperature() {
+        return outdoorTemperature;
+    }
+
+    public int getZoneCount() {
+        return temperature.length;
+    }
+
+    public double getSimulatedSeconds() {
+        return simulatedSeconds;
+    }
+
+    /**
+     * @return Heat delivered by heating so far, in kWh
+     */
+    public double getHeatingKWh() {
+        return heatingJoules / 3_600_000;
+    }
+
+    /**
+     * @return Heat removed by cooling so far, in kWh
+     */
+    public double getCoolingKWh() {
+        return coolingJoules / 3_600_000;
+    }
+
+    /**
+     * Prints every zone's temperature
+     */
+    public void printZones() {
+        System.out.println(String.format("\n🌡 Thermal model: %d zone(s), outdoor %.1f°C, %.0f s simulated",
+                temperature.length, outdoorTemperature, simulatedSeconds));
+        for (int i = 0; i < temperature.length; i++) {
+            System.out.println(String.format("  %s: %.2f°C", zoneNames[i], temperature[i]));
+        }
+    }
+}
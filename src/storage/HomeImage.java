@@ -0,0 +1,294 @@
+package storage;
+
+import devices.DeviceFactory;
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import exceptions.DuplicateDeviceException;
+import structure.DeviceLocator;
+import structure.Home;
+import structure.Room;
+import structure.RoomLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores a home in a file that can be opened without loading its devices.
+ *
+ * The file holds one block per room with its devices' state, a directory of
+ * rooms (name, floor, device count and block position) and a hash index from
+ * device ID to room. open() maps the file into memory and reads only the
+ * directory: rooms are created unloaded and decode their block from the
+ * mapping on first access, and devices are found by probing the mapped
+ * index. Startup time therefore depends on the number of rooms, not devices.
+ * Images are limited to 2 GB, the largest single mapping.
+ */
+public final class HomeImage {
+    private static final int MAGIC = 0x53484849; // "SHHI"
+    private static final int VERSION = 2; // 2: properties hold both value and text
+    private static final DeviceProperty[] PROPERTIES = DeviceProperty.values();
+    private static final int INDEX_ENTRY_BYTES = 8; // Room number + 1 (0 = empty slot), ID position
+
+    private HomeImage() {
+    }
+
+    /**
+     * Writes the current state of every room and device
+     * @param home The home to store (all its rooms are loaded)
+     * @param file Destination file, replaced if it exists
+     * @throws IOException if writing fails
+     */
+    public static void write(Home home, Path file) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, home.getHomeName());
+
+            List<Room> rooms = new ArrayList<>(home.getRooms().values());
+            int[] offsets = new int[rooms.size()];
+            int[] deviceCounts = new int[rooms.size()];
+            int total = home.getDeviceCount();
+            int[] idRooms = new int[total];
+            int[] idPositions = new int[total];
+            int[] idHashes = new int[total];
+            int n = 0;
+            for (int r = 0; r < rooms.size(); r++) {
+                offsets[r] = out.size();
+                List<SmartDevice> devices = rooms.get(r).getDevices();
+                deviceCounts[r] = devices.size();
+                for (SmartDevice device : devices) {
+                    idRooms[n] = r;
+                    idPositions[n] = out.size();
+                    idHashes[n] = spread(device.getDeviceId().hashCode());
+                    n++;
+                    writeDevice(out, device);
+                }
+            }
+
+            int directory = out.size();
+            writeVarInt(out, rooms.size());
+            for (int r = 0; r < rooms.size(); r++) {
+                Room room = rooms.get(r);
+                writeString(out, room.getRoomName());
+                out.writeInt(room.getFloor());
+                out.writeInt(offsets[r]);
+                writeVarInt(out, deviceCounts[r]);
+            }
+
+            // Open addressing with linear probing, at most half full
+            int slots = Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+            int[] slotRooms = new int[slots];
+            int[] slotPositions = new int[slots];
+            for (int i = 0; i < n; i++) {
+                int slot = idHashes[i] & (slots - 1);
+                while (slotRooms[slot] != 0) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                slotRooms[slot] = idRooms[i] + 1;
+                slotPositions[slot] = idPositions[i];
+            }
+            int index = out.size();
+            out.writeInt(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                out.writeInt(slotRooms[slot]);
+                out.writeInt(slotPositions[slot]);
+            }
+            out.writeInt(directory); // Trailer: where the directory and index start
+            out.writeInt(index);
+        }
+    }
+
+    private static void writeDevice(DataOutputStream out, SmartDevice device) throws IOException {
+        writeString(out, device.getDeviceId());
+        writeString(out, device.getClass().getSimpleName());
+        writeString(out, device.getDeviceName());
+        DeviceProperty[] properties = device.getSupportedProperties();
+        out.writeByte(properties.length);
+        for (DeviceProperty property : properties) {
+            out.writeByte(property.ordinal());
+            out.writeLong(device.getPropertyValue(property));
+            String text = device.getPropertyText(property);
+            out.writeBoolean(text != null);
+            if (text != null) {
+                writeString(out, text);
+            }
+        }
+    }
+
+    /**
+     * Opens a stored home; rooms are loaded from the file as they are accessed.
+     * The file must not change while the home is in use.
+     * @param file A file written by write()
+     * @return The home, with every room unloaded
+     * @throws IOException if the file cannot be mapped or is not a home image
+     */
+    public static Home open(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a home image: " + file);
+            }
+            ByteBuffer in = mapped.duplicate();
+            in.position(8);
+            Home home = new Home(readString(in));
+
+            in.position(mapped.getInt(mapped.limit() - 8));
+            Room[] rooms = new Room[readVarInt(in)];
+            for (int r = 0; r < rooms.length; r++) {
+                String roomName = readString(in);
+                int floor = in.getInt();
+                int offset = in.getInt();
+                int deviceCount = readVarInt(in);
+                rooms[r] = new Room(roomName, floor, deviceCount, new BlockLoader(mapped, offset, deviceCount));
+                home.addRoom(rooms[r]);
+            }
+            home.setDeviceLocator(new ImageIndex(mapped, mapped.getInt(mapped.limit() - 4), rooms));
+            return home;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                | DuplicateDeviceException e) {
+            throw new IOException("Corrupt home image: " + file);
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Decodes one room's block from the mapped file
+     */
+    private static final class BlockLoader implements RoomLoader {
+        private final ByteBuffer mapped;
+        private final int offset;
+        private final int deviceCount;
+
+        BlockLoader(ByteBuffer mapped, int offset, int deviceCount) {
+            this.mapped = mapped;
+            this.offset = offset;
+            this.deviceCount = deviceCount;
+        }
+
+        @Override
+        public List<SmartDevice> loadDevices(Room room) {
+            ByteBuffer in = mapped.duplicate();
+            in.position(offset);
+            List<SmartDevice> devices = new ArrayList<>(deviceCount);
+            try {
+                for (int d = 0; d < deviceCount; d++) {
+                    String deviceId = readString(in);
+                    SmartDevice device = DeviceFactory.create(readString(in), deviceId, readString(in));
+                    int propertyCount = in.get();
+                    for (int p = 0; p < propertyCount; p++) {
+                        DeviceProperty property = PROPERTIES[in.get()];
+                        long value = in.getLong();
+                        device.restoreProperty(property, value, in.get() != 0 ? readString(in) : null);
+                    }
+                    devices.add(device);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalStateException("Corrupt home image block for room " + room.getRoomName());
+            }
+            return devices;
+        }
+    }
+
+    /**
+     * Device ID to room lookups against the mapped hash index
+     */
+    private static final class ImageIndex implements DeviceLocator {
+        private final ByteBuffer mapped;
+        private final int entries;
+        private final int mask;
+        private final Room[] rooms;
+
+        ImageIndex(ByteBuffer mapped, int index, Room[] rooms) {
+            this.mapped = mapped;
+            this.mask = mapped.getInt(index) - 1;
+            this.entries = index + 4;
+            this.rooms = rooms;
+        }
+
+        @Override
+        public Room locateRoom(String deviceId) {
+            byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+            int slot = spread(deviceId.hashCode()) & mask;
+            while (true) {
+                int entry = entries + slot * INDEX_ENTRY_BYTES;
+                int room = mapped.getInt(entry);
+                if (room == 0) {
+                    return null;
+                }
+                if (idEquals(mapped.getInt(entry + 4), id)) {
+                    return rooms[room - 1];
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        // Compares the stored string at a position with the ID's bytes, without decoding it
+        private boolean idEquals(int position, byte[] id) {
+            ByteBuffer in = mapped.duplicate();
+            in.position(position);
+            if (readVarInt(in) != id.length) {
+                return false;
+            }
+            int start = in.position();
+            for (int i = 0; i < id.length; i++) {
+                if (mapped.get(start + i) != id[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // ---- Encoding ----
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
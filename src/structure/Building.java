@@ -0,0 +1,69 @@
+package structure;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A building of a site, holding floors
+ */
+public class Building extends StructureNode {
+    private final Map<Integer, Floor> floors = new TreeMap<>();
+
+    public Building(String name) {
+        super(name);
+    }
+
+    /**
+     * Builds the structure of a home: one floor per floor number used by its
+     * rooms. Every room of the home is loaded.
+     * @param home The home
+     * @return A building named after the home
+     */
+    public static Building fromHome(Home home) {
+        Building building = new Building(home.getHomeName());
+        for (Room room : home.getRooms().values()) {
+            Floor floor = building.getFloor(room.getFloor());
+            if (floor == null) {
+                floor = building.addFloor(new Floor(room.getFloor()));
+            }
+            floor.addRoom(room);
+        }
+        return building;
+    }
+
+    /**
+     * Adds a floor with everything already on it
+     * @param floor The floor to add
+     * @return The floor
+     * @throws IllegalArgumentException if the building already has a floor with that level
+     */
+    public Floor addFloor(Floor floor) {
+        if (floors.containsKey(floor.getLevel())) {
+            throw new IllegalArgumentException(getName() + " already has floor " + floor.getLevel());
+        }
+        attach(floor);
+        floors.put(floor.getLevel(), floor);
+        return floor;
+    }
+
+    /**
+     * Removes a floor and takes its devices off the totals
+     * @param level Floor number
+     * @return The removed floor, or null if there is none at that level
+     */
+    public Floor removeFloor(int level) {
+        Floor floor = floors.remove(level);
+        if (floor != null) {
+            detach(floor);
+        }
+        return floor;
+    }
+
+    /**
+     * @param level Floor number
+     * @return The floor, or null if there is none at that level
+     */
+    public Floor getFloor(int level) {
+        return floors.get(level);
+    }
+}
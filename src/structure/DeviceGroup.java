@@ -0,0 +1,218 @@
+package structure;
+
+import devices.SmartDevice;
+import devices.ValidationCode;
+import exceptions.DeviceNotFoundException;
+import interfaces.Controllable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A named set of devices of one home, independent of rooms, e.g. "all
+ * hallway lights". Members are kept as a bitset over the home's device
+ * handles: a few bytes per group however it is built, set algebra is a
+ * word-wise operation, and a multicast walks the set bits and fetches each
+ * member by handle, without looking up any device ID.
+ *
+ * Devices removed from the home leave all of its groups. Like Home, a group
+ * is not thread-safe.
+ */
+public class DeviceGroup {
+    private final String name;
+    private final Home home;
+    private final BitSet members;
+
+    /**
+     * Constructor for an empty group; register it with Home.addGroup to find it by name
+     * @param name Name of the group
+     * @param home The home whose devices the group holds
+     */
+    public DeviceGroup(String name, Home home) {
+        this(name, home, new BitSet());
+    }
+
+    private DeviceGroup(String name, Home home, BitSet members) {
+        this.name = name;
+        this.home = home;
+        this.members = members;
+    }
+
+    /**
+     * Adds a device by ID
+     * @param deviceId The device ID
+     * @return False if it was already a member
+     * @throws DeviceNotFoundException if the home has no such device
+     */
+    public boolean add(String deviceId) throws DeviceNotFoundException {
+        return add(home.findDevice(deviceId));
+    }
+
+    /**
+     * Adds a device
+     * @param device A device of the group's home
+     * @return False if it was already a member
+     * @throws IllegalArgumentException if the device is not in the group's home
+     */
+    public boolean add(SmartDevice device) {
+        int handle = handleOf(device);
+        boolean added = !members.get(handle);
+        members.set(handle);
+        return added;
+    }
+
+    /**
+     * Adds every device of a room, or of some other collection
+     * @param devices Devices of the group's home
+     * @return Number of devices that were not members yet
+     * @throws IllegalArgumentException if a device is not in the group's home
+     */
+    public int addAll(Collection<? extends SmartDevice> devices) {
+        int before = members.cardinality();
+        for (SmartDevice device : devices) {
+            members.set(handleOf(device));
+        }
+        return members.cardinality() - before;
+    }
+
+    /**
+     * Removes a device by ID
+     * @param deviceId The device ID
+     * @return False if it was not a member
+     */
+    public boolean remove(String deviceId) {
+        int handle = home.getRegistry().handleOf(deviceId);
+        if (handle < 0 || !members.get(handle)) {
+            return false;
+        }
+        members.clear(handle);
+        return true;
+    }
+
+    // Called by the home when a device leaves it
+    void removeHandle(int handle) {
+        if (handle >= 0) {
+            members.clear(handle);
+        }
+    }
+
+    public boolean contains(SmartDevice device) {
+        int handle = device.getHandle();
+        return handle >= 0 && home.getRegistry().getDevice(handle) == device && members.get(handle);
+    }
+
+    private int handleOf(SmartDevice device) {
+        int handle = device.getHandle();
+        if (handle < 0 || home.getRegistry().getDevice(handle) != device) {
+            throw new IllegalArgumentException(device.getDeviceName() + " is not in " + home.getHomeName());
+        }
+        return handle;
+    }
+
+    // ---- Set algebra ----
+
+    /**
+     * @return A new group of the devices in this group, the other, or both
+     */
+    public DeviceGroup union(String name, DeviceGroup other) {
+        BitSet result = (BitSet) members.clone();
+        result.or(sameHome(other).members);
+        return new DeviceGroup(name, home, result);
+    }
+
+    /**
+     * @return A new group of the devices in both this group and the other
+     */
+    public DeviceGroup intersection(String name, DeviceGroup other) {
+        BitSet result = (BitSet) members.clone();
+        result.and(sameHome(other).members);
+        return new DeviceGroup(name, home, result);
+    }
+
+    /**
+     * @return A new group of the devices in this group but not in the other
+     */
+    public DeviceGroup difference(String name, DeviceGroup other) {
+        BitSet result = (BitSet) members.clone();
+        result.andNot(sameHome(other).members);
+        return new DeviceGroup(name, home, result);
+    }
+
+    private DeviceGroup sameHome(DeviceGroup other) {
+        if (other.home != home) {
+            throw new IllegalArgumentException("Groups " + name + " and " + other.name + " belong to different homes");
+        }
+        return other;
+    }
+
+    // ---- Commands ----
+
+    /**
+     * Sends one command to every controllable member. Members are fetched by
+     * handle; members for which the command is invalid are skipped and counted.
+     * @param command The command to execute
+     * @return Number of members that rejected the command
+     */
+    public int multicast(String command) {
+        int[] rejected = new int[ValidationCode.values().length];
+        int applied = 0;
+        int rejectedCount = 0;
+        for (int handle = members.nextSetBit(0); handle >= 0; handle = members.nextSetBit(handle + 1)) {
+            SmartDevice device = home.getDevice(handle);
+            if (!(device instanceof Controllable)) {
+                continue;
+            }
+            Controllable controllable = (Controllable) device;
+            ValidationCode code = controllable.validateCommand(command);
+            if (code.isValid()) {
+                controllable.executeCommand(command);
+                applied++;
+            } else {
+                rejected[code.ordinal()]++;
+                rejectedCount++;
+            }
+        }
+
+        System.out.println("✓ " + applied + " device(s) in group '" + name + "' ran: " + command);
+        for (ValidationCode code : ValidationCode.values()) {
+            if (rejected[code.ordinal()] > 0) {
+                System.out.println("✗ " + rejected[code.ordinal()] + " device(s) rejected the command: "
+                        + code.getDescription());
+            }
+        }
+        return rejectedCount;
+    }
+
+    /**
+     * @return The member devices, in handle order
+     */
+    public List<SmartDevice> getDevices() {
+        List<SmartDevice> devices = new ArrayList<>(members.cardinality());
+        for (int handle = members.nextSetBit(0); handle >= 0; handle = members.nextSetBit(handle + 1)) {
+            SmartDevice device = home.getDevice(handle);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        return devices;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return members.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Group '" + name + "' (" + size() + " devices)";
+    }
+}
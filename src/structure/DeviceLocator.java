@@ -0,0 +1,13 @@
+package structure;
+
+/**
+ * Finds the room holding a device without loading any room
+ */
+@FunctionalInterface
+public interface DeviceLocator {
+    /**
+     * @param deviceId The device ID
+     * @return The room the device was stored in, or null if it is unknown
+     */
+    Room locateRoom(String deviceId);
+}
@@ -0,0 +1,73 @@
+package structure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One floor of a building, holding rooms
+ */
+public class Floor extends StructureNode {
+    private final int level;
+    private final Map<String, RoomNode> rooms = new LinkedHashMap<>();
+
+    /**
+     * Constructor for Floor
+     * @param level Floor number (0 = ground floor)
+     */
+    public Floor(int level) {
+        super("Floor " + level);
+        this.level = level;
+    }
+
+    /**
+     * Adds a room; its devices count towards this floor and everything above
+     * from now on. A room can be on one floor at a time.
+     * @param room The room to add
+     * @return The room's level in the tree
+     * @throws IllegalArgumentException if the floor already has a room with that name
+     */
+    public RoomNode addRoom(Room room) {
+        if (rooms.containsKey(room.getRoomName())) {
+            throw new IllegalArgumentException("Floor " + level + " already has a room named " + room.getRoomName());
+        }
+        if (room.getNode() != null) {
+            throw new IllegalStateException(room.getRoomName() + " is already on a floor");
+        }
+        RoomNode node = new RoomNode(room);
+        attach(node);
+        rooms.put(room.getRoomName(), node);
+        return node;
+    }
+
+    /**
+     * Removes a room and takes its devices off the totals
+     * @param roomName Name of the room
+     * @return True if the room was on this floor
+     */
+    public boolean removeRoom(String roomName) {
+        RoomNode node = rooms.remove(roomName);
+        if (node == null) {
+            return false;
+        }
+        node.release();
+        detach(node);
+        return true;
+    }
+
+    /**
+     * @param roomName Name of the room
+     * @return The room's level in the tree, or null if it is not on this floor
+     */
+    public RoomNode getRoom(String roomName) {
+        return rooms.get(roomName);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -1,18 +1,34 @@
 package structure;
 
+import devices.DeviceRegistry;
 import devices.SmartDevice;
 import exceptions.DeviceNotFoundException;
+import exceptions.DuplicateDeviceException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Represents a home containing multiple rooms
+ * Represents a home containing multiple rooms.
+ * Every device gets a dense int handle from the home's DeviceRegistry, and
+ * the home indexes rooms by handle, so finding a device only loads the one
+ * room that holds it. Devices of rooms that have never been loaded are found
+ * through a DeviceLocator instead. Attaching a feature that watches every
+ * device loads all rooms and keeps them loaded (see Room).
  */
 public class Home {
     private String homeName;
     private HashMap<String, Room> rooms;
+    private final DeviceRegistry registry = new DeviceRegistry();
+    private Room[] roomByHandle = new Room[16];
+    private DeviceLocator locator;
+    private final Map<String, DeviceGroup> groups = new LinkedHashMap<>();
 
     public Home(String homeName) {
         this.homeName = homeName;
@@ -22,9 +38,21 @@ public class Home {
     /**
      * Adds a room to the home
      * @param room The room to add
+     * @throws DuplicateDeviceException if one of its loaded devices has the ID of a device in another room
      */
-    public void addRoom(Room room) {
-        rooms.put(room.getRoomName(), room);
+    public void addRoom(Room room) throws DuplicateDeviceException {
+        Room existing = rooms.get(room.getRoomName());
+        for (SmartDevice device : room.getLoadedDevices()) {
+            checkUnique(device.getDeviceId(), existing);
+        }
+        Room replaced = rooms.put(room.getRoomName(), room);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        room.setOwner(this);
+        for (SmartDevice device : room.getLoadedDevices()) {
+            deviceAdded(device, room);
+        }
         System.out.println("✓ Room '" + room.getRoomName() + "' added to " + homeName);
     }
 
@@ -35,12 +63,57 @@ public class Home {
     public void removeRoom(String roomName) {
         Room removed = rooms.remove(roomName);
         if (removed != null) {
+            unindex(removed);
             System.out.println("✓ Room '" + roomName + "' removed from " + homeName);
         } else {
             System.out.println("✗ Room '" + roomName + "' not found");
         }
     }
 
+    private void unindex(Room room) {
+        room.setOwner(null);
+        for (SmartDevice device : room.getLoadedDevices()) {
+            deviceRemoved(device, room);
+        }
+    }
+
+    // Device IDs are unique across the home; a device may only be re-added to the room holding it
+    void checkUnique(String deviceId, Room room) throws DuplicateDeviceException {
+        Room holder = findRoomOf(deviceId);
+        if (holder != null && holder != room) {
+            throw new DuplicateDeviceException(
+                    "Device with ID " + deviceId + " already exists in " + holder.getRoomName()
+            );
+        }
+    }
+
+    // Called by rooms of this home when devices are added, loaded, removed or evicted
+    void deviceAdded(SmartDevice device, Room room) {
+        int handle = registry.register(device);
+        if (handle >= roomByHandle.length) {
+            roomByHandle = Arrays.copyOf(roomByHandle, Math.max(handle + 1, roomByHandle.length * 2));
+        }
+        roomByHandle[handle] = room;
+    }
+
+    void deviceRemoved(SmartDevice device, Room room) {
+        int handle = device.getHandle();
+        if (registry.getDevice(handle) == device && roomByHandle[handle] == room) {
+            roomByHandle[handle] = null;
+            registry.detach(handle);
+            for (DeviceGroup group : groups.values()) {
+                group.removeHandle(handle);
+            }
+        }
+    }
+
+    // The room still holds the device in storage, so its handle keeps pointing at the room
+    void deviceEvicted(SmartDevice device) {
+        if (registry.getDevice(device.getHandle()) == device) {
+            registry.detach(device.getHandle());
+        }
+    }
+
     /**
      * Gets a specific room
      * @param roomName The name of the room
@@ -69,14 +142,106 @@ public class Home {
      * @throws DeviceNotFoundException if device doesn't exist
      */
     public SmartDevice findDevice(String deviceId) throws DeviceNotFoundException {
+        SmartDevice device = lookupDevice(deviceId);
+        if (device == null) {
+            throw new DeviceNotFoundException("Device " + deviceId + " not found in any room");
+        }
+        return device;
+    }
+
+    /**
+     * Finds a device by ID without throwing, for bulk lookups
+     * @param deviceId The device ID to search for
+     * @return The device, or null if it doesn't exist
+     */
+    public SmartDevice lookupDevice(String deviceId) {
+        Room room = findRoomOf(deviceId);
+        if (room == null) {
+            return null;
+        }
+        room.ensureLoaded();
+        return registry.getDevice(registry.handleOf(deviceId));
+    }
+
+    /**
+     * Gets a device by handle, loading its room if needed
+     * @param handle A handle from this home's registry
+     * @return The device, or null if the handle's device has been removed
+     */
+    public SmartDevice getDevice(int handle) {
+        SmartDevice device = registry.getDevice(handle);
+        if (device == null && handle >= 0 && handle < roomByHandle.length && roomByHandle[handle] != null) {
+            roomByHandle[handle].ensureLoaded();
+            device = registry.getDevice(handle);
+        }
+        return device;
+    }
+
+    /**
+     * Gets the registry that assigns this home's device handles
+     * @return The registry
+     */
+    public DeviceRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Finds the room holding a device without loading it
+     * @param deviceId The device ID
+     * @return The room, or null if no room holds the device
+     */
+    public Room findRoomOf(String deviceId) {
+        int handle = registry.handleOf(deviceId);
+        if (handle != DeviceRegistry.NO_HANDLE) {
+            return roomByHandle[handle]; // Null once the device has been removed
+        }
+        Room room = null;
+        if (locator != null) {
+            room = locator.locateRoom(deviceId);
+            if (room != null && rooms.get(room.getRoomName()) != room) {
+                room = null; // The room has been removed from the home
+            }
+        }
+        return room;
+    }
+
+    /**
+     * Sets where to look up devices of rooms added without their devices loaded
+     * @param locator The locator, typically backed by the stored home
+     */
+    public void setDeviceLocator(DeviceLocator locator) {
+        this.locator = locator;
+    }
+
+    /**
+     * Evicts loaded rooms that have not been accessed recently and have not
+     * changed since they were loaded (see Room.evict). Rooms whose devices are
+     * watched by home-wide features such as LoadShedder are never evicted.
+     * @param idleMillis Minimum time since a room's last access
+     * @return Number of rooms evicted
+     */
+    public int evictIdleRooms(long idleMillis) {
+        long cutoff = System.nanoTime() - idleMillis * 1_000_000;
+        int evicted = 0;
         for (Room room : rooms.values()) {
-            try {
-                return room.findDeviceById(deviceId);
-            } catch (DeviceNotFoundException e) {
-                // Continue searching in other rooms
+            if (room.isLoaded() && room.getLastAccessNanos() - cutoff <= 0 && room.evict()) {
+                evicted++;
             }
         }
-        throw new DeviceNotFoundException("Device " + deviceId + " not found in any room");
+        return evicted;
+    }
+
+    /**
+     * @return Number of rooms whose devices are currently materialised
+     */
+    public int getLoadedRoomCount() {
+        int count = 0;
+        for (Room room : rooms.values()) {
+            if (room.isLoaded()) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -101,13 +266,77 @@ public class Home {
         if (rooms.isEmpty()) {
             System.out.println("  No rooms in this home");
         } else {
+            // One reusable buffer, flushed room by room
+            StringBuilder report = new StringBuilder(4096);
             for (Room room : rooms.values()) {
-                room.showAllDevices();
+                report.setLength(0);
+                try {
+                    room.writeReport(report);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // StringBuilder never throws
+                }
+                System.out.print(report);
             }
         }
 
         System.out.println("\n  Total Rooms: " + rooms.size());
-        System.out.println("  Total Devices: " + getAllDevices().size());
+        System.out.println("  Total Devices: " + getDeviceCount());
+    }
+
+    /**
+     * Creates an empty named group of this home's devices
+     * @param groupName Name of the group
+     * @return The new group
+     * @throws IllegalArgumentException if a group with that name exists
+     */
+    public DeviceGroup createGroup(String groupName) {
+        return addGroup(new DeviceGroup(groupName, this));
+    }
+
+    /**
+     * Registers a group, e.g. the result of combining other groups
+     * @param group A group of this home's devices
+     * @return The group
+     * @throws IllegalArgumentException if a group with that name exists
+     */
+    public DeviceGroup addGroup(DeviceGroup group) {
+        if (groups.containsKey(group.getName())) {
+            throw new IllegalArgumentException("Group '" + group.getName() + "' already exists in " + homeName);
+        }
+        groups.put(group.getName(), group);
+        return group;
+    }
+
+    /**
+     * @param groupName Name of the group
+     * @return The group, or null if not found
+     */
+    public DeviceGroup getGroup(String groupName) {
+        return groups.get(groupName);
+    }
+
+    /**
+     * @param groupName Name of the group
+     * @return The removed group, or null if not found
+     */
+    public DeviceGroup removeGroup(String groupName) {
+        return groups.remove(groupName);
+    }
+
+    public List<DeviceGroup> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Counts devices in all rooms without copying them
+     * @return Total number of devices
+     */
+    public int getDeviceCount() {
+        int count = 0;
+        for (Room room : rooms.values()) {
+            count += room.getDeviceCount();
+        }
+        return count;
     }
 
     // Getters
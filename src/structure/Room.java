@@ -3,29 +3,214 @@ package structure;
 import devices.SmartDevice;
 import exceptions.DeviceNotFoundException;
 import exceptions.DuplicateDeviceException;
+import interfaces.DeviceStateListener;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * Represents a room containing multiple smart devices
+ * Represents a room containing multiple smart devices.
+ *
+ * A room can also be created unloaded, knowing only its device count; its
+ * devices are then materialised by a RoomLoader on first access, and the
+ * room can be evicted again while no device has changed since. Reloading
+ * reuses any evicted device object that is still referenced (see evict).
+ *
+ * Features that observe every device load every room and register state
+ * listeners on their devices, which also keeps those rooms from being evicted:
+ * QueryEngine, HomeReportWriter, ChangeCapture, ConditionNetwork.watch,
+ * LoadShedder, SubscriptionHub, StateHistory and the structure tree's RoomNode.
+ * Lazy loading only saves memory in homes that use none of them.
  */
 public class Room {
     private String roomName;
-    private ArrayList<SmartDevice> devices;
+    private int floor;
+    private volatile ArrayList<SmartDevice> devices;
+    private final RoomLoader loader;
+    private final int storedDeviceCount;
+    private boolean dirty;
+    private volatile long lastAccessNanos;
+    private Home owner;
+    private RoomNode node;
+    private Map<String, WeakReference<SmartDevice>> evicted; // Devices dropped by evict(), by ID
+    private final DeviceStateListener dirtyTracker = (device, property) -> deviceChanged();
 
     public Room(String roomName) {
+        this(roomName, 0);
+    }
+
+    /**
+     * Constructor for a room on a specific floor
+     * @param roomName Name of the room
+     * @param floor Floor number (0 = ground floor)
+     */
+    public Room(String roomName, int floor) {
         this.roomName = roomName;
+        this.floor = floor;
         this.devices = new ArrayList<>();
+        this.loader = null;
+        this.storedDeviceCount = 0;
+    }
+
+    /**
+     * Constructor for an unloaded room whose devices are loaded on first access
+     * @param roomName Name of the room
+     * @param floor Floor number (0 = ground floor)
+     * @param deviceCount Number of devices the loader will create
+     * @param loader Materialises the devices when they are first needed
+     */
+    public Room(String roomName, int floor, int deviceCount, RoomLoader loader) {
+        this.roomName = roomName;
+        this.floor = floor;
+        this.storedDeviceCount = deviceCount;
+        this.loader = loader;
+    }
+
+    /**
+     * Materialises the room's devices if they are not loaded yet
+     * @throws IllegalStateException if the loader fails
+     */
+    public void ensureLoaded() {
+        lastAccessNanos = System.nanoTime();
+        if (devices == null) {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if (devices != null) {
+            return;
+        }
+        ArrayList<SmartDevice> loaded = new ArrayList<>(loader.loadDevices(this));
+        if (loaded.size() != storedDeviceCount) {
+            throw new IllegalStateException("Loader returned " + loaded.size() + " devices for " + roomName
+                    + ", expected " + storedDeviceCount);
+        }
+        // Evicted devices still referenced elsewhere are taken back, so there is never a second object
+        boolean[] reused = new boolean[loaded.size()];
+        if (evicted != null) {
+            for (int i = 0; i < loaded.size(); i++) {
+                WeakReference<SmartDevice> ref = evicted.get(loaded.get(i).getDeviceId());
+                SmartDevice live = ref != null ? ref.get() : null;
+                if (live != null) {
+                    loaded.set(i, live);
+                    reused[i] = true;
+                }
+            }
+        }
+        if (owner != null) {
+            for (SmartDevice device : loaded) {
+                try {
+                    owner.checkUnique(device.getDeviceId(), this);
+                } catch (DuplicateDeviceException e) {
+                    throw new IllegalStateException(e.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < loaded.size(); i++) {
+            if (!reused[i]) {
+                loaded.get(i).addStateListener(dirtyTracker); // Reused devices kept theirs
+            }
+        }
+        evicted = null;
+        devices = loaded;
+        if (owner != null) {
+            for (SmartDevice device : loaded) {
+                owner.deviceAdded(device, this);
+            }
+        }
+    }
+
+    // A device changed; one held elsewhere while the room is evicted brings the room back
+    private void deviceChanged() {
+        dirty = true;
+        if (devices == null) {
+            ensureLoaded();
+        }
+    }
+
+    /**
+     * Drops the loaded devices of an unchanged room, to be loaded again on next access.
+     * Rooms with changes, or whose devices have listeners other than the room
+     * (which would keep observing the dropped objects), stay loaded; so once a
+     * home-wide feature is attached (see the class comment) nothing is evicted.
+     *
+     * The room keeps only weak references to the dropped devices. A device still
+     * referenced elsewhere (a compiled rule condition, a scene, a debouncer) is
+     * not freed, and the next load reuses that same object instead of decoding a
+     * new one, so such holders always see the home's device. Changing such a
+     * device while the room is evicted reloads the room and marks it changed.
+     * @return True if the room was evicted
+     */
+    public synchronized boolean evict() {
+        ArrayList<SmartDevice> loaded = devices;
+        if (loader == null || loaded == null || dirty) {
+            return false;
+        }
+        for (SmartDevice device : loaded) {
+            if (device.getStateListenerCount() > 1) {
+                return false;
+            }
+        }
+        evicted = new HashMap<>();
+        for (SmartDevice device : loaded) {
+            evicted.put(device.getDeviceId(), new WeakReference<>(device));
+            if (owner != null) {
+                owner.deviceEvicted(device);
+            }
+        }
+        devices = null;
+        return true;
+    }
+
+    /**
+     * @return False if the room's devices have not been materialised yet or were evicted
+     */
+    public boolean isLoaded() {
+        return devices != null;
+    }
+
+    /**
+     * @return System.nanoTime() of the last access to the room's devices
+     */
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    // Loaded devices, for the home's index; empty if not loaded
+    List<SmartDevice> getLoadedDevices() {
+        ArrayList<SmartDevice> loaded = devices;
+        return loaded != null ? loaded : new ArrayList<>();
+    }
+
+    void setOwner(Home owner) {
+        this.owner = owner;
+    }
+
+    void setNode(RoomNode node) {
+        this.node = node;
+    }
+
+    /**
+     * @return The room's level in a site structure, or null if it is on no floor
+     */
+    public RoomNode getNode() {
+        return node;
     }
 
     /**
      * Adds a device to the room
      * @param device The device to add
-     * @throws DuplicateDeviceException if device ID already exists
+     * @throws DuplicateDeviceException if device ID already exists in this room or elsewhere in the home
      */
     public void addDevice(SmartDevice device) throws DuplicateDeviceException {
+        ensureLoaded();
         // Check for duplicate device ID
         for (SmartDevice d : devices) {
             if (d.getDeviceId().equals(device.getDeviceId())) {
@@ -34,7 +219,20 @@ public class Room {
                 );
             }
         }
+        if (owner != null) {
+            owner.checkUnique(device.getDeviceId(), this);
+        }
         devices.add(device);
+        if (loader != null) {
+            dirty = true;
+            device.addStateListener(dirtyTracker);
+        }
+        if (owner != null) {
+            owner.deviceAdded(device, this);
+        }
+        if (node != null) {
+            node.deviceAdded(device);
+        }
         System.out.println("✓ " + device.getDeviceName() + " added to " + roomName);
     }
 
@@ -44,6 +242,7 @@ public class Room {
      * @throws DeviceNotFoundException if device doesn't exist
      */
     public void removeDevice(String deviceId) throws DeviceNotFoundException {
+        ensureLoaded();
         SmartDevice deviceToRemove = null;
         for (SmartDevice device : devices) {
             if (device.getDeviceId().equals(deviceId)) {
@@ -57,6 +256,16 @@ public class Room {
         }
 
         devices.remove(deviceToRemove);
+        if (loader != null) {
+            dirty = true;
+            deviceToRemove.removeStateListener(dirtyTracker);
+        }
+        if (owner != null) {
+            owner.deviceRemoved(deviceToRemove, this);
+        }
+        if (node != null) {
+            node.deviceRemoved(deviceToRemove);
+        }
         System.out.println("✓ " + deviceToRemove.getDeviceName() + " removed from " + roomName);
     }
 
@@ -67,6 +276,7 @@ public class Room {
      * @throws DeviceNotFoundException if device doesn't exist
      */
     public SmartDevice findDeviceById(String deviceId) throws DeviceNotFoundException {
+        ensureLoaded();
         for (SmartDevice device : devices) {
             if (device.getDeviceId().equals(deviceId)) {
                 return device;
@@ -82,6 +292,7 @@ public class Room {
      */
     public <T extends SmartDevice> List<T> getDevicesByType(
             Class<T> deviceClass) {
+        ensureLoaded();
         return devices.stream()
                 .filter(deviceClass::isInstance)
                 .map(deviceClass::cast)
@@ -91,6 +302,7 @@ public class Room {
      * Turns off all devices in the room
      */
     public void turnOffAllDevices() {
+        ensureLoaded();
         for (SmartDevice device : devices) {
             device.turnOff();
         }
@@ -101,6 +313,7 @@ public class Room {
      * Turns on all devices in the room
      */
     public void turnOnAllDevices() {
+        ensureLoaded();
         for (SmartDevice device : devices) {
             device.turnOn();
         }
@@ -111,28 +324,63 @@ public class Room {
      * Displays status of all devices in the room
      */
     public void showAllDevices() {
-        System.out.println("\n╔══════════════════════════════════════════════════════════════════╗");
-        System.out.println("  " + roomName.toUpperCase());
-        System.out.println("╚══════════════════════════════════════════════════════════════════╝");
+        ensureLoaded();
+        StringBuilder report = new StringBuilder(256 + devices.size() * 96);
+        try {
+            writeReport(report);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        System.out.print(report);
+    }
 
+    /**
+     * Writes the room header and the status of every device
+     * @param out Destination for the report
+     * @throws IOException if the destination fails
+     */
+    public void writeReport(Appendable out) throws IOException {
+        ensureLoaded();
+        writeHeader(out);
         if (devices.isEmpty()) {
-            System.out.println("  No devices in this room");
+            out.append("  No devices in this room\n");
         } else {
             for (SmartDevice device : devices) {
-                System.out.println("  • " + device.getStatus());
+                out.append("  • ").append(device.getStatus()).append('\n'); // Cached until the device changes
             }
         }
     }
 
+    /**
+     * Writes the room banner used at the top of room reports
+     * @param out Destination for the header
+     * @throws IOException if the destination fails
+     */
+    public void writeHeader(Appendable out) throws IOException {
+        out.append("\n╔══════════════════════════════════════════════════════════════════╗\n")
+                .append("  ").append(roomName.toUpperCase()).append('\n')
+                .append("╚══════════════════════════════════════════════════════════════════╝\n");
+    }
+
     // Getters
     public String getRoomName() {
         return roomName;
     }
 
+    public int getFloor() {
+        return floor;
+    }
+
     public ArrayList<SmartDevice> getDevices() {
+        ensureLoaded();
         return new ArrayList<>(devices); // Return copy for safety
     }
 
+    /**
+     * Counts the room's devices without loading them
+     * @return Number of devices
+     */
     public int getDeviceCount() {
-        return devices.size();
+        ArrayList<SmartDevice> loaded = devices;
+        return loaded != null ? loaded.size() : storedDeviceCount;
     }}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package structure;
+
+import devices.SmartDevice;
+
+import java.util.List;
+
+/**
+ * Materialises the devices of a lazily loaded room
+ */
+@FunctionalInterface
+public interface RoomLoader {
+    /**
+     * Creates the room's devices with their stored state
+     * @param room The room being loaded
+     * @return The devices, in the order of the room's device IDs
+     * @throws IllegalStateException if the stored devices cannot be read
+     */
+    List<SmartDevice> loadDevices(Room room);
+}
@@ -0,0 +1,104 @@
+package structure;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import interfaces.EnergyConsumer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The room level of a structure tree. It watches the room's devices and
+ * turns each change into a delta for the levels above; created by
+ * Floor.addRoom.
+ */
+public final class RoomNode extends StructureNode implements DeviceStateListener {
+    private final Room room;
+    // What each device currently adds to the totals; guarded by this
+    private final Map<SmartDevice, Contribution> contributions = new IdentityHashMap<>();
+
+    RoomNode(Room room) {
+        super(room.getRoomName());
+        this.room = room;
+        for (SmartDevice device : room.getDevices()) {
+            deviceAdded(device);
+        }
+        room.setNode(this);
+    }
+
+    // Called by the room when a device is added
+    synchronized void deviceAdded(SmartDevice device) {
+        if (contributions.containsKey(device)) {
+            return;
+        }
+        Contribution contribution = new Contribution(device.getClass().getSimpleName(), device.isOn(),
+                milliwattsOf(device));
+        contributions.put(device, contribution);
+        device.addStateListener(this);
+        propagate(contribution.type, 1, contribution.on ? 1 : 0, contribution.milliwatts);
+    }
+
+    // Called by the room when a device is removed
+    synchronized void deviceRemoved(SmartDevice device) {
+        Contribution contribution = contributions.remove(device);
+        if (contribution != null) {
+            device.removeStateListener(this);
+            propagate(contribution.type, -1, contribution.on ? -1 : 0, -contribution.milliwatts);
+        }
+    }
+
+    @Override
+    public synchronized void onStateChanged(SmartDevice device, DeviceProperty property) {
+        Contribution contribution = contributions.get(device);
+        if (contribution == null) {
+            return;
+        }
+        boolean on = device.isOn();
+        long milliwatts = milliwattsOf(device);
+        if (on == contribution.on && milliwatts == contribution.milliwatts) {
+            return;
+        }
+        propagate(contribution.type, 0, on == contribution.on ? 0 : (on ? 1 : -1),
+                milliwatts - contribution.milliwatts);
+        contribution.on = on;
+        contribution.milliwatts = milliwatts;
+    }
+
+    // Stops watching the devices once the room leaves the tree
+    synchronized void release() {
+        for (SmartDevice device : contributions.keySet()) {
+            device.removeStateListener(this);
+        }
+        room.setNode(null);
+    }
+
+    private static long milliwattsOf(SmartDevice device) {
+        return device instanceof EnergyConsumer
+                ? Math.round(((EnergyConsumer) device).getEnergyConsumption() * 1000) : 0;
+    }
+
+    public Room getRoom() {
+        return room;
+    }
+
+    @Override
+    public String toString() {
+        return "Room " + getName();
+    }
+
+    /**
+     * One device's share of the totals
+     */
+    private static final class Contribution {
+        final String type;
+        boolean on;
+        long milliwatts;
+
+        Contribution(String type, boolean on, long milliwatts) {
+            this.type = type;
+            this.on = on;
+            this.milliwatts = milliwatts;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package structure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The top of a structure tree: a campus of buildings
+ */
+public class Site extends StructureNode {
+    private final Map<String, Building> buildings = new LinkedHashMap<>();
+
+    public Site(String name) {
+        super(name);
+    }
+
+    /**
+     * Adds a building with everything already in it
+     * @param building The building to add
+     * @return The building
+     * @throws IllegalArgumentException if the site already has a building with that name
+     */
+    public Building addBuilding(Building building) {
+        if (buildings.containsKey(building.getName())) {
+            throw new IllegalArgumentException(getName() + " already has a building named " + building.getName());
+        }
+        attach(building);
+        buildings.put(building.getName(), building);
+        return building;
+    }
+
+    /**
+     * Removes a building and takes its devices off the totals
+     * @param name Name of the building
+     * @return The removed building, or null if there is none with that name
+     */
+    public Building removeBuilding(String name) {
+        Building building = buildings.remove(name);
+        if (building != null) {
+            detach(building);
+        }
+        return building;
+    }
+
+    /**
+     * @param name Name of the building
+     * @return The building, or null if there is none with that name
+     */
+    public Building getBuilding(String name) {
+        return buildings.get(name);
+    }
+}
@@ -0,0 +1,195 @@
+package structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A level of a site's structure (site, building, floor or room) that keeps
+ * running totals over all devices below it: power draw, device counts and
+ * on-counts, overall and per device type.
+ *
+ * Totals are never recomputed by walking the subtree. A device change is
+ * turned into a delta by its room and added to the room and each of its
+ * ancestors, so an update costs O(depth) and any subtree query is O(1).
+ * Device changes may come from any thread; like Home, adding and removing
+ * levels is not thread-safe and should happen while devices are quiet.
+ */
+public abstract class StructureNode {
+    private final String name;
+    private StructureNode parent;
+    private final List<StructureNode> children = new ArrayList<>();
+
+    private final LongAdder deviceCount = new LongAdder();
+    private final LongAdder onCount = new LongAdder();
+    private final LongAdder milliwatts = new LongAdder(); // Whole milliwatts, so totals never drift
+    private final Map<String, TypeTotals> byType = new ConcurrentHashMap<>();
+
+    protected StructureNode(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Attaches a child level and adds its totals to this level and above
+     */
+    void attach(StructureNode child) {
+        if (child.parent != null) {
+            throw new IllegalStateException(child.name + " already belongs to " + child.parent.name);
+        }
+        child.parent = this;
+        children.add(child);
+        for (StructureNode node = this; node != null; node = node.parent) {
+            node.addTotals(child, 1);
+        }
+    }
+
+    /**
+     * Detaches a child level and takes its totals off this level and above
+     */
+    void detach(StructureNode child) {
+        if (child.parent != this) {
+            return;
+        }
+        children.remove(child);
+        for (StructureNode node = this; node != null; node = node.parent) {
+            node.addTotals(child, -1);
+        }
+        child.parent = null;
+    }
+
+    private void addTotals(StructureNode child, int sign) {
+        deviceCount.add(sign * child.deviceCount.sum());
+        onCount.add(sign * child.onCount.sum());
+        milliwatts.add(sign * child.milliwatts.sum());
+        for (Map.Entry<String, TypeTotals> entry : child.byType.entrySet()) {
+            TypeTotals totals = totalsOf(entry.getKey());
+            totals.devices.add(sign * entry.getValue().devices.sum());
+            totals.on.add(sign * entry.getValue().on.sum());
+        }
+    }
+
+    /**
+     * Adds a change of one device to this level and every level above it
+     * @param type Simple class name of the device
+     * @param devices Change in device count (-1, 0 or 1)
+     * @param on Change in on-count (-1, 0 or 1)
+     * @param milliwattDelta Change in power draw
+     */
+    void propagate(String type, int devices, int on, long milliwattDelta) {
+        for (StructureNode node = this; node != null; node = node.parent) {
+            if (devices != 0) {
+                node.deviceCount.add(devices);
+            }
+            if (on != 0) {
+                node.onCount.add(on);
+            }
+            if (milliwattDelta != 0) {
+                node.milliwatts.add(milliwattDelta);
+            }
+            if (devices != 0 || on != 0) {
+                TypeTotals totals = node.totalsOf(type);
+                totals.devices.add(devices);
+                totals.on.add(on);
+            }
+        }
+    }
+
+    private TypeTotals totalsOf(String type) {
+        TypeTotals totals = byType.get(type);
+        return totals != null ? totals : byType.computeIfAbsent(type, t -> new TypeTotals());
+    }
+
+    // ---- Queries ----
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The level above, or null for the top of the tree
+     */
+    public StructureNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @return The levels directly below (do not modify)
+     */
+    public List<StructureNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return Total power draw of the devices below, in watts
+     */
+    public double getWatts() {
+        return milliwatts.sum() / 1000.0;
+    }
+
+    public long getDeviceCount() {
+        return deviceCount.sum();
+    }
+
+    /**
+     * @return Number of devices below that are on
+     */
+    public long getOnCount() {
+        return onCount.sum();
+    }
+
+    /**
+     * @param type Simple class name, e.g. "Light"
+     * @return Number of devices of that type below
+     */
+    public long getDeviceCount(String type) {
+        TypeTotals totals = byType.get(type);
+        return totals == null ? 0 : totals.devices.sum();
+    }
+
+    /**
+     * @param type Simple class name, e.g. "Light"
+     * @return Number of devices of that type below that are on
+     */
+    public long getOnCount(String type) {
+        TypeTotals totals = byType.get(type);
+        return totals == null ? 0 : totals.on.sum();
+    }
+
+    /**
+     * Prints this level's totals and those of every level below, indented
+     */
+    public void showSummary() {
+        StringBuilder out = new StringBuilder();
+        writeSummary(out, 0);
+        System.out.print(out);
+    }
+
+    private void writeSummary(StringBuilder out, int depth) {
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+        out.append(this)
+                .append(" | Devices: ").append(getDeviceCount())
+                .append(" | On: ").append(getOnCount())
+                .append(" | Power: ").append(String.format("%.2f", getWatts())).append("W\n");
+        for (StructureNode child : children) {
+            child.writeSummary(out, depth + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + name;
+    }
+
+    /**
+     * Device and on-counts of one device type
+     */
+    private static final class TypeTotals {
+        final LongAdder devices = new LongAdder();
+        final LongAdder on = new LongAdder();
+    }
+}
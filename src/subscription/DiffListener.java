@@ -0,0 +1,14 @@
+package subscription;
+
+import java.util.List;
+
+/**
+ * Receives the diffs of a subscription, on the subscription's own thread
+ */
+@FunctionalInterface
+public interface DiffListener {
+    /**
+     * @param diffs Changes since the previous push, at most one per device property
+     */
+    void onDiffs(List<StateDiff> diffs);
+}
@@ -0,0 +1,74 @@
+package subscription;
+
+import devices.DeviceProperty;
+
+/**
+ * The latest value of one device property, pushed to a subscriber. Changes
+ * of the same property between two pushes collapse into a single diff.
+ */
+public class StateDiff {
+    private final String deviceId;
+    private final String roomName;
+    private final DeviceProperty property;
+    private final long value;
+    private final String text;
+    private final long timestamp;
+    private final int changeCount;
+
+    StateDiff(String deviceId, String roomName, DeviceProperty property, long value, String text, long timestamp,
+              int changeCount) {
+        this.deviceId = deviceId;
+        this.roomName = roomName;
+        this.property = property;
+        this.value = value;
+        this.text = text;
+        this.timestamp = timestamp;
+        this.changeCount = changeCount;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public DeviceProperty getProperty() {
+        return property;
+    }
+
+    /**
+     * @return The numeric value (booleans are 1 or 0); properties with text, such as streaming, have both
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return The text value, or null for numeric properties
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return Time of the latest change in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Number of changes collapsed into this diff; 0 for an initial value
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    @Override
+    public String toString() {
+        return deviceId + "." + property.name().toLowerCase() + "=" + (text != null ? text : String.valueOf(value))
+                + (changeCount > 1 ? " (x" + changeCount + ")" : "");
+    }
+}
@@ -0,0 +1,229 @@
+package subscription;
+
+import devices.DeviceProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One client's registration with a SubscriptionHub.
+ *
+ * Matching changes are buffered per device property, so a change to a
+ * property that is already buffered replaces its value instead of queueing
+ * behind it. A dedicated thread pushes the buffer to the listener at most
+ * once per interval. The buffer never holds more than one entry per device
+ * property the filter accepts, so a listener that is slow or stuck only
+ * delays its own pushes: device mutations never wait for it and memory stays
+ * bounded however far it falls behind.
+ */
+public class Subscription {
+    private final int id;
+    private final SubscriptionHub hub;
+    private final SubscriptionFilter filter;
+    private final long minIntervalMillis;
+    private final DiffListener listener;
+    private final Thread thread;
+
+    // Guarded by this
+    private LinkedHashMap<Long, Pending> pending = new LinkedHashMap<>();
+    private boolean cancelled;
+    private long changeCount;
+    private long coalescedCount;
+    private long lastPushStart;
+
+    private volatile long pushCount;
+    private volatile long diffCount;
+    private volatile long failureCount;
+    private volatile long maxPushMillis;
+
+    Subscription(int id, SubscriptionHub hub, SubscriptionFilter filter, long minIntervalMillis,
+                 DiffListener listener) {
+        this.id = id;
+        this.hub = hub;
+        this.filter = filter;
+        this.minIntervalMillis = minIntervalMillis;
+        this.listener = listener;
+        this.thread = new Thread(this::deliver, "subscription-" + id);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    SubscriptionFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Buffers a change; called on the mutating thread, so it never blocks on the listener
+     * @param changes 1 for a change, 0 for the initial value pushed on subscribing
+     */
+    synchronized void offer(long key, String deviceId, String roomName, DeviceProperty property, long value,
+                            String text, long now, int changes) {
+        if (cancelled) {
+            return;
+        }
+        changeCount += changes;
+        Pending entry = pending.get(key);
+        if (entry == null) {
+            pending.put(key, new Pending(deviceId, roomName, property, value, text, now, changes));
+            if (pending.size() == 1) {
+                notifyAll();
+            }
+        } else {
+            entry.value = value;
+            entry.text = text;
+            entry.timestamp = now;
+            entry.changes += changes;
+            coalescedCount += changes;
+        }
+    }
+
+    // Body of the delivery thread
+    private void deliver() {
+        while (true) {
+            Map<Long, Pending> batch;
+            long pushStart;
+            synchronized (this) {
+                try {
+                    while (!cancelled && pending.isEmpty()) {
+                        wait();
+                    }
+                    // Rate limit: changes arriving meanwhile coalesce into this push
+                    long delay;
+                    while (!cancelled && (delay = lastPushStart + minIntervalMillis - System.currentTimeMillis()) > 0) {
+                        wait(delay);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (cancelled) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                pushStart = System.currentTimeMillis();
+                lastPushStart = pushStart;
+            }
+
+            List<StateDiff> diffs = new ArrayList<>(batch.size());
+            for (Pending entry : batch.values()) {
+                diffs.add(new StateDiff(entry.deviceId, entry.roomName, entry.property, entry.value, entry.text,
+                        entry.timestamp, entry.changes));
+            }
+            try {
+                listener.onDiffs(diffs);
+            } catch (RuntimeException e) {
+                failureCount++; // A failing listener keeps its subscription
+            }
+            pushCount++;
+            diffCount += diffs.size();
+            maxPushMillis = Math.max(maxPushMillis, System.currentTimeMillis() - pushStart);
+        }
+    }
+
+    /**
+     * Stops the subscription; a push in progress is allowed to finish
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            pending.clear();
+            notifyAll();
+        }
+        hub.remove(this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return Maximum push rate, as the minimum time between two pushes
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    /**
+     * @return Matching changes received so far
+     */
+    public synchronized long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * @return Changes that replaced an already buffered value of the same property
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return Device properties waiting for the next push; grows while the listener lags
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getPushCount() {
+        return pushCount;
+    }
+
+    public long getDiffCount() {
+        return diffCount;
+    }
+
+    /**
+     * @return Pushes in which the listener threw
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return Longest time the listener took to handle one push
+     */
+    public long getMaxPushMillis() {
+        return maxPushMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Subscription#" + id + " " + filter + " every " + minIntervalMillis + "ms";
+    }
+
+    /**
+     * Latest buffered value of one device property
+     */
+    private static final class Pending {
+        final String deviceId;
+        final String roomName;
+        final DeviceProperty property;
+        long value;
+        String text;
+        long timestamp;
+        int changes;
+
+        Pending(String deviceId, String roomName, DeviceProperty property, long value, String text, long timestamp,
+                int changes) {
+            this.deviceId = deviceId;
+            this.roomName = roomName;
+            this.property = property;
+            this.value = value;
+            this.text = text;
+            this.timestamp = timestamp;
+            this.changes = changes;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package subscription;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Selects the changes a subscription receives.
+ * Example: power and brightness changes of lights in the kitchen or hall
+ * <pre>
+ *     SubscriptionFilter.of(Light.class).inRoom("Kitchen").inRoom("Hall")
+ *             .properties(DeviceProperty.POWER, DeviceProperty.BRIGHTNESS)
+ * </pre>
+ * A filter must not be modified once it has been passed to subscribe().
+ */
+public class SubscriptionFilter {
+    private final Class<? extends SmartDevice> type;
+    private final Set<String> roomNames = new HashSet<>();
+    private final Set<DeviceProperty> properties = EnumSet.noneOf(DeviceProperty.class);
+
+    private SubscriptionFilter(Class<? extends SmartDevice> type) {
+        this.type = type;
+    }
+
+    /**
+     * Starts a filter over devices of a given type (subclasses included)
+     * @param type The device class
+     * @return A new filter
+     */
+    public static SubscriptionFilter of(Class<? extends SmartDevice> type) {
+        return new SubscriptionFilter(type);
+    }
+
+    /**
+     * Starts a filter that accepts every change
+     * @return A new filter
+     */
+    public static SubscriptionFilter all() {
+        return new SubscriptionFilter(null);
+    }
+
+    /**
+     * Accepts devices in this room; repeat to accept several rooms
+     */
+    public SubscriptionFilter inRoom(String roomName) {
+        roomNames.add(roomName);
+        return this;
+    }
+
+    /**
+     * Accepts only changes of these properties; repeat to add more
+     */
+    public SubscriptionFilter properties(DeviceProperty... accepted) {
+        for (DeviceProperty property : accepted) {
+            properties.add(property);
+        }
+        return this;
+    }
+
+    /**
+     * @return Whether changes of the device can pass the filter at all
+     */
+    boolean matchesDevice(SmartDevice device, String roomName) {
+        return (type == null || type.isInstance(device))
+                && (roomNames.isEmpty() || roomNames.contains(roomName));
+    }
+
+    boolean matchesProperty(DeviceProperty property) {
+        return properties.isEmpty() || properties.contains(property);
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionFilter{type=" + (type == null ? "any" : type.getSimpleName())
+                + ", rooms=" + (roomNames.isEmpty() ? "any" : roomNames)
+                + ", properties=" + (properties.isEmpty() ? "any" : properties) + "}";
+    }
+}
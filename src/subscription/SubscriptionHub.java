@@ -0,0 +1,167 @@
+package subscription;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import interfaces.DeviceStateListener;
+import structure.Home;
+import structure.Room;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes live device state to UI clients as filtered, coalesced diffs,
+ * replacing polling of the full home.
+ *
+ * A client subscribes with a filter (device type, rooms, properties), a
+ * maximum push rate and a listener. It first receives the current value of
+ * every matching property, then only what changed since its previous push.
+ * On a mutation the hub only copies the new value into each matching
+ * subscription's buffer; pushes run on one thread per subscription (see
+ * Subscription), so listeners can be as slow as they like without holding
+ * up the devices or each other.
+ */
+public class SubscriptionHub implements DeviceStateListener {
+    private final Home home;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Room of every tracked device; replaced, never modified, by attach()
+    private volatile Map<SmartDevice, String> roomOf = new IdentityHashMap<>();
+    private int nextId = 1;
+    private boolean closed;
+
+    /**
+     * Constructor for SubscriptionHub; call attach() to start tracking devices
+     * @param home The home whose devices are published
+     */
+    public SubscriptionHub(Home home) {
+        this.home = home;
+    }
+
+    /**
+     * Starts tracking every device in the home. Call it again after adding,
+     * removing or moving devices.
+     */
+    public synchronized void attach() {
+        Map<SmartDevice, String> previous = roomOf;
+        Map<SmartDevice, String> current = new IdentityHashMap<>();
+        for (Room room : home.getRooms().values()) {
+            for (SmartDevice device : room.getDevices()) {
+                current.put(device, room.getRoomName());
+                if (!previous.containsKey(device)) {
+                    device.addStateListener(this);
+                }
+            }
+        }
+        for (SmartDevice device : previous.keySet()) {
+            if (!current.containsKey(device)) {
+                device.removeStateListener(this);
+            }
+        }
+        roomOf = current;
+    }
+
+    /**
+     * Registers a client and starts pushing to it
+     * @param filter The changes to receive
+     * @param minIntervalMillis Minimum time between two pushes (0 pushes as soon as possible)
+     * @param listener Receives the diffs
+     * @return The subscription, to cancel it or read its statistics
+     */
+    public synchronized Subscription subscribe(SubscriptionFilter filter, long minIntervalMillis,
+                                               DiffListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Subscription hub is closed");
+        }
+        if (minIntervalMillis < 0) {
+            throw new IllegalArgumentException("Push interval must not be negative");
+        }
+        Subscription subscription = new Subscription(nextId++, this, filter, minIntervalMillis, listener);
+        // Registered before the current values are read, so no change falls in between;
+        // a change offered meanwhile is coalesced with the value read after it
+        subscriptions.add(subscription);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<SmartDevice, String> entry : roomOf.entrySet()) {
+            SmartDevice device = entry.getKey();
+            if (!filter.matchesDevice(device, entry.getValue())) {
+                continue;
+            }
+            for (DeviceProperty property : device.getSupportedProperties()) {
+                if (filter.matchesProperty(property)) {
+                    subscription.offer(keyOf(device, property), device.getDeviceId(), entry.getValue(), property,
+                            device.getPropertyValue(property), device.getPropertyText(property), now, 0);
+                }
+            }
+        }
+        subscription.start();
+        return subscription;
+    }
+
+    @Override
+    public void onStateChanged(SmartDevice device, DeviceProperty property) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        String roomName = roomOf.get(device);
+        if (roomName == null) {
+            return;
+        }
+        boolean read = false;
+        long value = 0;
+        String text = null;
+        long now = 0;
+        for (Subscription subscription : subscriptions) {
+            SubscriptionFilter filter = subscription.getFilter();
+            if (!filter.matchesProperty(property) || !filter.matchesDevice(device, roomName)) {
+                continue;
+            }
+            if (!read) {
+                text = device.getPropertyText(property);
+                value = device.getPropertyValue(property);
+                now = System.currentTimeMillis();
+                read = true;
+            }
+            subscription.offer(keyOf(device, property), device.getDeviceId(), roomName, property, value, text,
+                    now, 1);
+        }
+    }
+
+    // Devices in a home have dense handles, so handle and property pack into one key
+    private static long keyOf(SmartDevice device, DeviceProperty property) {
+        return ((long) device.getHandle() << 8) | property.ordinal();
+    }
+
+    void remove(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Cancels every subscription and stops tracking devices
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        for (SmartDevice device : roomOf.keySet()) {
+            device.removeStateListener(this);
+        }
+        roomOf = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return Active subscriptions (do not modify)
+     */
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    public int getDeviceCount() {
+        return roomOf.size();
+    }
+}
@@ -0,0 +1,150 @@
+package trace;
+
+import automation.AutomationEngine;
+import controller.CentralController;
+
+/**
+ * Outcome of replaying a trace: how far the replay agreed with the recording,
+ * and the rebuilt home for inspection
+ */
+public class ReplayResult {
+    private static final double ENERGY_TOLERANCE = 1e-6;
+
+    private final CentralController controller;
+    private final AutomationEngine engine;
+    private final long recordCount;
+    private final long ruleCycles;
+    private final long divergentCycles;
+    private final long firstDivergenceTime;
+    private final long inputErrors;
+    private final boolean complete;
+    private final long expectedChecksum;
+    private final long actualChecksum;
+    private final double expectedEnergy;
+    private final double actualEnergy;
+    private final long elapsedNanos;
+
+    ReplayResult(CentralController controller, AutomationEngine engine, long recordCount, long ruleCycles,
+                 long divergentCycles, long firstDivergenceTime, long inputErrors, boolean complete,
+                 long expectedChecksum, long actualChecksum, double expectedEnergy, double actualEnergy,
+                 long elapsedNanos) {
+        this.controller = controller;
+        this.engine = engine;
+        this.recordCount = recordCount;
+        this.ruleCycles = ruleCycles;
+        this.divergentCycles = divergentCycles;
+        this.firstDivergenceTime = firstDivergenceTime;
+        this.inputErrors = inputErrors;
+        this.complete = complete;
+        this.expectedChecksum = expectedChecksum;
+        this.actualChecksum = actualChecksum;
+        this.expectedEnergy = expectedEnergy;
+        this.actualEnergy = actualEnergy;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return True if every rule cycle fired the recorded number of rules and the
+     *         final state and energy use match the recording
+     */
+    public boolean isFaithful() {
+        return complete && divergentCycles == 0 && stateMatches() && energyMatches();
+    }
+
+    public boolean stateMatches() {
+        return complete && expectedChecksum == actualChecksum;
+    }
+
+    public boolean energyMatches() {
+        return complete && Math.abs(expectedEnergy - actualEnergy)
+                <= ENERGY_TOLERANCE * Math.max(1, Math.abs(expectedEnergy));
+    }
+
+    /**
+     * @return False if the trace ended without the recorder's final record
+     *         (e.g. the recording process died), so there is nothing to compare
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public long getRuleCycles() {
+        return ruleCycles;
+    }
+
+    /**
+     * @return Rule cycles that fired a different number of rules than recorded
+     */
+    public long getDivergentCycles() {
+        return divergentCycles;
+    }
+
+    /**
+     * @return Virtual time of the first divergent rule cycle, or -1 if none diverged
+     */
+    public long getFirstDivergenceTime() {
+        return firstDivergenceTime;
+    }
+
+    /**
+     * @return Inputs that threw when replayed (they threw when recorded too)
+     */
+    public long getInputErrors() {
+        return inputErrors;
+    }
+
+    public long getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    public long getActualChecksum() {
+        return actualChecksum;
+    }
+
+    public double getExpectedEnergy() {
+        return expectedEnergy;
+    }
+
+    public double getActualEnergy() {
+        return actualEnergy;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return Controller of the rebuilt home, in its final replayed state
+     */
+    public CentralController getController() {
+        return controller;
+    }
+
+    public AutomationEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(isFaithful() ? "✓ Replay matches recording" : "✗ Replay diverged from recording");
+        out.append(String.format("%n  Records: %d (%d rule cycles) in %.1f ms", recordCount, ruleCycles,
+                elapsedNanos / 1e6));
+        if (!complete) {
+            out.append(String.format("%n  Trace is truncated; final state was not recorded"));
+        }
+        if (divergentCycles > 0) {
+            out.append(String.format("%n  Divergent rule cycles: %d, first at t=%d", divergentCycles,
+                    firstDivergenceTime));
+        }
+        if (complete) {
+            out.append(String.format("%n  State checksum: %016x (recorded %016x)", actualChecksum, expectedChecksum));
+            out.append(String.format("%n  Energy: %.2fW (recorded %.2fW)", actualEnergy, expectedEnergy));
+        }
+        return out.toString();
+    }
+}
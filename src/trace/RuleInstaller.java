@@ -0,0 +1,19 @@
+package trace;
+
+import automation.AutomationEngine;
+import controller.CentralController;
+import exceptions.InvalidRuleException;
+
+/**
+ * Installs the rules of the recorded home into a replay's fresh engine
+ */
+@FunctionalInterface
+public interface RuleInstaller {
+    /**
+     * Adds the same rules, in the same order, as the recorded engine had
+     * @param controller Controller of the rebuilt home
+     * @param engine The replay's engine, running on the trace's virtual clock
+     * @throws InvalidRuleException if a rule cannot be compiled
+     */
+    void install(CentralController controller, AutomationEngine engine) throws InvalidRuleException;
+}
@@ -0,0 +1,126 @@
+package trace;
+
+import devices.DeviceProperty;
+import devices.SmartDevice;
+import structure.Home;
+import structure.Room;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary layout of input traces, shared by the recorder and the replayer.
+ *
+ * A trace is a header (magic, version, start time and a snapshot of every
+ * room and device) followed by records. Each record is a tag byte, the time
+ * since the previous record as a zig-zag varint, and its arguments. Strings
+ * (device IDs, commands) are written once and then referenced by index, up
+ * to MAX_STRINGS distinct values; the reader rebuilds the same table.
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x53485452; // "SHTR"
+    static final int VERSION = 2; // 2: device state holds both value and text
+
+    static final int COMMAND = 1;
+    static final int DETECT_MOTION = 2;
+    static final int CLEAR_MOTION = 3;
+    static final int SCHEDULE_TASK = 4;
+    static final int CANCEL_TASK = 5;
+    static final int GLOBAL_COMMAND = 6;
+    static final int BATCH = 7;
+    static final int EVALUATE_RULES = 8;
+    static final int END = 9;
+
+    /** Distinct strings kept in the table; later new strings are written inline every time */
+    static final int MAX_STRINGS = 4096;
+
+    private TraceFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in trace");
+    }
+
+    static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a string as a table reference (index + 1), or as 0 followed by the text
+     */
+    static void writeString(DataOutput out, String value, Map<String, Integer> table) throws IOException {
+        Integer index = table.get(value);
+        if (index != null) {
+            writeVarLong(out, index + 1);
+            return;
+        }
+        writeVarLong(out, 0);
+        out.writeUTF(value);
+        if (table.size() < MAX_STRINGS) {
+            table.put(value, table.size());
+        }
+    }
+
+    static String readString(DataInput in, List<String> table) throws IOException {
+        long ref = readVarLong(in);
+        if (ref == 0) {
+            String value = in.readUTF();
+            if (table.size() < MAX_STRINGS) {
+                table.add(value);
+            }
+            return value;
+        }
+        if (ref > table.size()) {
+            throw new IOException("Trace references unknown string " + ref);
+        }
+        return table.get((int) ref - 1);
+    }
+
+    /**
+     * Hashes every device's state, visiting rooms by name so that homes built
+     * in a different order hash the same
+     */
+    static long stateChecksum(Home home) {
+        List<String> roomNames = new ArrayList<>(home.getRooms().keySet());
+        Collections.sort(roomNames);
+        long hash = 1;
+        for (String roomName : roomNames) {
+            Room room = home.getRoom(roomName);
+            for (SmartDevice device : room.getDevices()) {
+                hash = hash * 31 + device.getDeviceId().hashCode();
+                for (DeviceProperty property : device.getSupportedProperties()) {
+                    String text = device.getPropertyText(property);
+                    hash = hash * 31 + device.getPropertyValue(property);
+                    hash = hash * 31 + (text != null ? text.hashCode() : 0);
+                }
+            }
+        }
+        return hash;
+    }
+}
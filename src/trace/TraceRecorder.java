@@ -0,0 +1,378 @@
+package trace;
+
+import automation.AutomationEngine;
+import automation.AutomationRule;
+import controller.CentralController;
+import controller.CommandResult;
+import controller.DeviceCommand;
+import devices.DeviceProperty;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import exceptions.DeviceNotFoundException;
+import interfaces.Controllable;
+import interfaces.Schedulable;
+import structure.Home;
+import structure.Room;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records every external input to a home so that a misbehaving run can be
+ * reproduced with TraceReplayer.
+ *
+ * Inputs go through the recorder instead of straight to the devices: each one
+ * is appended to the trace with the engine's (possibly virtual) time, then
+ * applied. Rule cycles are recorded with the number of rules that fired, so
+ * a replay can tell where it first diverged. The trace starts with a snapshot
+ * of the home, and close() appends the final state checksum and energy use.
+ *
+ * Records are a few bytes each and buffered; call flush() to make the trace
+ * durable up to the latest input. Methods are synchronized so concurrent
+ * inputs are recorded in the order they were applied. If writing fails the
+ * recorder stops recording but keeps applying inputs (see getError).
+ */
+public class TraceRecorder {
+    private final CentralController controller;
+    private final AutomationEngine engine;
+    private final Home home;
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private long lastTime;
+    private long recordCount;
+    private IOException error;
+    private boolean closed;
+    private boolean inRuleCycle;
+
+    /**
+     * Constructor for TraceRecorder; writes the trace header and home snapshot
+     * @param out Destination of the trace (closed by close())
+     * @param controller Controller of the recorded home
+     * @param engine Engine whose clock timestamps records and whose rules are evaluated
+     * @throws IOException if the header cannot be written
+     */
+    public TraceRecorder(OutputStream out, CentralController controller, AutomationEngine engine) throws IOException {
+        this.controller = controller;
+        this.engine = engine;
+        this.home = controller.getHome();
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.lastTime = engine.currentTime();
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        out.writeInt(TraceFormat.MAGIC);
+        out.writeByte(TraceFormat.VERSION);
+        out.writeLong(lastTime);
+        out.writeUTF(home.getHomeName());
+        TraceFormat.writeVarLong(out, home.getRoomCount());
+        for (Room room : home.getRooms().values()) {
+            out.writeUTF(room.getRoomName());
+            TraceFormat.writeSignedVarLong(out, room.getFloor());
+            TraceFormat.writeVarLong(out, room.getDeviceCount());
+            for (SmartDevice device : room.getDevices()) {
+                out.writeUTF(device.getClass().getSimpleName());
+                TraceFormat.writeString(out, device.getDeviceId(), strings);
+                out.writeUTF(device.getDeviceName());
+                DeviceProperty[] properties = device.getSupportedProperties();
+                TraceFormat.writeVarLong(out, properties.length);
+                for (DeviceProperty property : properties) {
+                    out.writeByte(property.ordinal());
+                    TraceFormat.writeSignedVarLong(out, device.getPropertyValue(property));
+                    String text = device.getPropertyText(property);
+                    out.writeBoolean(text != null);
+                    if (text != null) {
+                        out.writeUTF(text);
+                    }
+                }
+            }
+        }
+    }
+
+    // ---- Inputs ----
+
+    /**
+     * Records and executes a device command
+     * @param deviceId ID of the target device
+     * @param command The command, as accepted by executeCommand
+     * @throws DeviceNotFoundException if no such device exists
+     * @throws IllegalArgumentException if the device does not accept commands
+     */
+    public synchronized void command(String deviceId, String command) throws DeviceNotFoundException {
+        SmartDevice device = home.findDevice(deviceId);
+        if (!(device instanceof Controllable)) {
+            throw new IllegalArgumentException(device.getDeviceName() + " does not accept commands");
+        }
+        if (begin(TraceFormat.COMMAND)) {
+            try {
+                TraceFormat.writeString(out, deviceId, strings);
+                TraceFormat.writeString(out, command, strings);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        ((Controllable) device).executeCommand(command);
+    }
+
+    /**
+     * Records and applies a motion detection, timed by the engine clock
+     * @param sensorId ID of the motion sensor
+     * @throws DeviceNotFoundException if no such device exists
+     * @throws IllegalArgumentException if the device is not a motion sensor
+     */
+    public synchronized void detectMotion(String sensorId) throws DeviceNotFoundException {
+        MotionSensor sensor = sensor(sensorId);
+        long now = engine.currentTime();
+        writeDeviceRecord(TraceFormat.DETECT_MOTION, sensorId);
+        sensor.detectMotion(now);
+    }
+
+    /**
+     * Records and applies the end of motion
+     * @param sensorId ID of the motion sensor
+     * @throws DeviceNotFoundException if no such device exists
+     * @throws IllegalArgumentException if the device is not a motion sensor
+     */
+    public synchronized void clearMotion(String sensorId) throws DeviceNotFoundException {
+        MotionSensor sensor = sensor(sensorId);
+        writeDeviceRecord(TraceFormat.CLEAR_MOTION, sensorId);
+        sensor.clearMotion();
+    }
+
+    /**
+     * Records and schedules a task on a schedulable device
+     * @param deviceId ID of the device
+     * @param time Time of day, as accepted by scheduleTask
+     * @param action The action to perform
+     * @throws DeviceNotFoundException if no such device exists
+     * @throws IllegalArgumentException if the device is not schedulable
+     */
+    public synchronized void scheduleTask(String deviceId, String time, String action)
+            throws DeviceNotFoundException {
+        Schedulable device = schedulable(deviceId);
+        if (begin(TraceFormat.SCHEDULE_TASK)) {
+            try {
+                TraceFormat.writeString(out, deviceId, strings);
+                TraceFormat.writeString(out, time, strings);
+                TraceFormat.writeString(out, action, strings);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        device.scheduleTask(time, action);
+    }
+
+    /**
+     * Records and cancels a scheduled task
+     * @param deviceId ID of the device
+     * @param taskId ID of the task to cancel
+     * @throws DeviceNotFoundException if no such device exists
+     * @throws IllegalArgumentException if the device is not schedulable
+     */
+    public synchronized void cancelScheduledTask(String deviceId, String taskId) throws DeviceNotFoundException {
+        Schedulable device = schedulable(deviceId);
+        if (begin(TraceFormat.CANCEL_TASK)) {
+            try {
+                TraceFormat.writeString(out, deviceId, strings);
+                TraceFormat.writeString(out, taskId, strings);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        device.cancelScheduledTask(taskId);
+    }
+
+    /**
+     * Records and executes a command on every controllable device
+     * @param command The command to execute
+     */
+    public synchronized void globalCommand(String command) {
+        if (begin(TraceFormat.GLOBAL_COMMAND)) {
+            try {
+                TraceFormat.writeString(out, command, strings);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        controller.executeGlobalCommand(command);
+    }
+
+    /**
+     * Records and executes a batch of commands
+     * @param commands The commands, in arrival order
+     * @return The controller's results, one per command
+     */
+    public synchronized List<CommandResult> batch(List<DeviceCommand> commands) {
+        if (begin(TraceFormat.BATCH)) {
+            try {
+                TraceFormat.writeVarLong(out, commands.size());
+                for (DeviceCommand command : commands) {
+                    TraceFormat.writeString(out, command.getDeviceId(), strings);
+                    TraceFormat.writeString(out, command.getCommand(), strings);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return controller.executeBatch(commands);
+    }
+
+    /**
+     * Runs one rule cycle and records how many rules fired. Inputs issued by
+     * rule actions through this recorder are applied but not recorded, since
+     * a replay fires the same actions itself.
+     * @return Number of rules that fired
+     */
+    public synchronized int evaluateRules() {
+        List<AutomationRule> rules = engine.getRules();
+        long before = totalExecutions(rules);
+        long now = engine.currentTime();
+        inRuleCycle = true;
+        try {
+            engine.evaluateRules();
+        } finally {
+            inRuleCycle = false;
+        }
+        int fired = (int) (totalExecutions(rules) - before);
+        if (begin(TraceFormat.EVALUATE_RULES, now)) {
+            try {
+                TraceFormat.writeVarLong(out, fired);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return fired;
+    }
+
+    static long totalExecutions(List<AutomationRule> rules) {
+        long total = 0;
+        for (AutomationRule rule : rules) {
+            total += rule.getExecutionCount();
+        }
+        return total;
+    }
+
+    // ---- Output ----
+
+    /**
+     * Writes buffered records to the destination
+     * @throws IOException if writing fails, or failed earlier
+     */
+    public synchronized void flush() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        out.flush();
+    }
+
+    /**
+     * Appends the final state checksum and energy use, then closes the trace.
+     * Inputs passed in afterwards are applied but not recorded.
+     * @throws IOException if writing fails, or failed earlier
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (begin(TraceFormat.END)) {
+            try {
+                out.writeLong(TraceFormat.stateChecksum(home));
+                out.writeDouble(controller.getTotalEnergyConsumption());
+                TraceFormat.writeVarLong(out, recordCount);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return Number of inputs and rule cycles recorded
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return Bytes written so far, including buffered ones
+     */
+    public synchronized int getBytesWritten() {
+        return out.size();
+    }
+
+    /**
+     * @return The write failure that stopped recording, or null
+     */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    // Writes the tag and time delta of a record; false if recording has stopped
+    private boolean begin(int tag) {
+        return begin(tag, engine.currentTime());
+    }
+
+    private boolean begin(int tag, long now) {
+        if (error != null || closed || inRuleCycle) {
+            return false;
+        }
+        try {
+            out.writeByte(tag);
+            TraceFormat.writeSignedVarLong(out, now - lastTime);
+            lastTime = now;
+            if (tag != TraceFormat.END) {
+                recordCount++;
+            }
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private void writeDeviceRecord(int tag, String deviceId) {
+        if (begin(tag)) {
+            try {
+                TraceFormat.writeString(out, deviceId, strings);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        error = e;
+        System.out.println("✗ Trace recording stopped: " + e.getMessage());
+    }
+
+    private MotionSensor sensor(String sensorId) throws DeviceNotFoundException {
+        SmartDevice device = home.findDevice(sensorId);
+        if (!(device instanceof MotionSensor)) {
+            throw new IllegalArgumentException(device.getDeviceName() + " is not a motion sensor");
+        }
+        return (MotionSensor) device;
+    }
+
+    private Schedulable schedulable(String deviceId) throws DeviceNotFoundException {
+        SmartDevice device = home.findDevice(deviceId);
+        if (!(device instanceof Schedulable)) {
+            throw new IllegalArgumentException(device.getDeviceName() + " does not support scheduling");
+        }
+        return (Schedulable) device;
+    }
+}
@@ -0,0 +1,256 @@
+package trace;
+
+import automation.AutomationEngine;
+import automation.AutomationRule;
+import controller.CentralController;
+import controller.DeviceCommand;
+import devices.DeviceFactory;
+import devices.DeviceProperty;
+import devices.MotionSensor;
+import devices.SmartDevice;
+import exceptions.DuplicateDeviceException;
+import exceptions.InvalidRuleException;
+import interfaces.Controllable;
+import interfaces.Schedulable;
+import structure.Home;
+import structure.Room;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Re-runs a trace written by TraceRecorder against a freshly built home.
+ *
+ * The home is rebuilt from the trace's snapshot and the engine runs on a
+ * virtual clock that jumps to each record's time, so replay never sleeps and
+ * runs as fast as the inputs can be applied. Each rule cycle is checked
+ * against the recorded number of firings, and the final state checksum and
+ * energy use against the recorder's last record. Console output from devices
+ * is discarded during the replay.
+ */
+public class TraceReplayer {
+    private static final DeviceProperty[] PROPERTIES = DeviceProperty.values();
+
+    private final RuleInstaller ruleInstaller;
+
+    /**
+     * Constructor for TraceReplayer
+     * @param ruleInstaller Adds the recorded home's rules to each replay's engine
+     */
+    public TraceReplayer(RuleInstaller ruleInstaller) {
+        this.ruleInstaller = ruleInstaller;
+    }
+
+    /**
+     * Replays a whole trace
+     * @param in The trace
+     * @return How the replay compares with the recording
+     * @throws IOException if the trace cannot be read or is not a trace
+     * @throws InvalidRuleException if the rule installer fails
+     */
+    public ReplayResult replay(InputStream in) throws IOException, InvalidRuleException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(NULL_OUTPUT));
+        try {
+            return new Run(data).execute();
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * State of one replay
+     */
+    private final class Run {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, SmartDevice> devices = new HashMap<>();
+        private long now;
+
+        Run(DataInputStream in) {
+            this.in = in;
+        }
+
+        ReplayResult execute() throws IOException, InvalidRuleException {
+            long started = System.nanoTime();
+            if (in.readInt() != TraceFormat.MAGIC) {
+                throw new IOException("Not a home trace");
+            }
+            int version = in.readUnsignedByte();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            now = in.readLong();
+            Home home = readHome();
+            CentralController controller = new CentralController(home);
+            AutomationEngine engine = new AutomationEngine();
+            engine.setClock(() -> now);
+            ruleInstaller.install(controller, engine);
+            List<AutomationRule> rules = engine.getRules();
+
+            long records = 0, cycles = 0, divergent = 0, errors = 0;
+            long firstDivergence = -1;
+            boolean complete = false;
+            long expectedChecksum = 0;
+            double expectedEnergy = 0;
+
+            try {
+                while (true) {
+                    int tag = in.read();
+                    if (tag < 0) {
+                        break; // Truncated: the recorder never closed the trace
+                    }
+                    now += TraceFormat.readSignedVarLong(in);
+                    if (tag == TraceFormat.END) {
+                        expectedChecksum = in.readLong();
+                        expectedEnergy = in.readDouble();
+                        if (TraceFormat.readVarLong(in) != records) {
+                            throw new IOException("Trace record count does not match its end record");
+                        }
+                        complete = true;
+                        break;
+                    }
+                    records++;
+                    if (tag == TraceFormat.EVALUATE_RULES) {
+                        int recorded = (int) TraceFormat.readVarLong(in);
+                        long before = TraceRecorder.totalExecutions(rules);
+                        engine.evaluateRules();
+                        cycles++;
+                        if (TraceRecorder.totalExecutions(rules) - before != recorded) {
+                            if (divergent++ == 0) {
+                                firstDivergence = now;
+                            }
+                        }
+                        continue;
+                    }
+                    try {
+                        apply(tag, controller);
+                    } catch (RuntimeException e) {
+                        // The same input threw when it was recorded
+                        errors++;
+                    }
+                }
+            } catch (EOFException e) {
+                // Truncated mid-record: the inputs before it have been replayed
+            }
+
+            long checksum = complete ? TraceFormat.stateChecksum(home) : 0;
+            double energy = complete ? controller.getTotalEnergyConsumption() : 0;
+            return new ReplayResult(controller, engine, records, cycles, divergent, firstDivergence, errors,
+                    complete, expectedChecksum, checksum, expectedEnergy, energy, System.nanoTime() - started);
+        }
+
+        // Reads the arguments of an input record, then applies it
+        private void apply(int tag, CentralController controller) throws IOException {
+            switch (tag) {
+                case TraceFormat.COMMAND: {
+                    SmartDevice device = device(readString());
+                    String command = readString();
+                    ((Controllable) device).executeCommand(command);
+                    break;
+                }
+                case TraceFormat.DETECT_MOTION:
+                    ((MotionSensor) device(readString())).detectMotion(now);
+                    break;
+                case TraceFormat.CLEAR_MOTION:
+                    ((MotionSensor) device(readString())).clearMotion();
+                    break;
+                case TraceFormat.SCHEDULE_TASK: {
+                    SmartDevice device = device(readString());
+                    String time = readString();
+                    String action = readString();
+                    ((Schedulable) device).scheduleTask(time, action);
+                    break;
+                }
+                case TraceFormat.CANCEL_TASK: {
+                    SmartDevice device = device(readString());
+                    String taskId = readString();
+                    ((Schedulable) device).cancelScheduledTask(taskId);
+                    break;
+                }
+                case TraceFormat.GLOBAL_COMMAND:
+                    controller.executeGlobalCommand(readString());
+                    break;
+                case TraceFormat.BATCH: {
+                    int size = (int) TraceFormat.readVarLong(in);
+                    List<DeviceCommand> commands = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        String deviceId = readString();
+                        commands.add(new DeviceCommand(deviceId, readString()));
+                    }
+                    controller.executeBatch(commands);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown trace record " + tag);
+            }
+        }
+
+        private Home readHome() throws IOException {
+            Home home = new Home(in.readUTF());
+            int roomCount = (int) TraceFormat.readVarLong(in);
+            for (int r = 0; r < roomCount; r++) {
+                Room room = new Room(in.readUTF(), (int) TraceFormat.readSignedVarLong(in));
+                int deviceCount = (int) TraceFormat.readVarLong(in);
+                for (int d = 0; d < deviceCount; d++) {
+                    String type = in.readUTF();
+                    String deviceId = readString();
+                    SmartDevice device = DeviceFactory.create(type, deviceId, in.readUTF());
+                    int propertyCount = (int) TraceFormat.readVarLong(in);
+                    for (int p = 0; p < propertyCount; p++) {
+                        int ordinal = in.readUnsignedByte();
+                        if (ordinal >= PROPERTIES.length) {
+                            throw new IOException("Unknown device property " + ordinal);
+                        }
+                        long value = TraceFormat.readSignedVarLong(in);
+                        device.restoreProperty(PROPERTIES[ordinal], value, in.readBoolean() ? in.readUTF() : null);
+                    }
+                    try {
+                        room.addDevice(device);
+                    } catch (DuplicateDeviceException e) {
+                        throw new IOException("Corrupt trace: " + e.getMessage());
+                    }
+                    devices.put(deviceId, device);
+                }
+                try {
+                    home.addRoom(room);
+                } catch (DuplicateDeviceException e) {
+                    throw new IOException("Corrupt trace: " + e.getMessage());
+                }
+            }
+            return home;
+        }
+
+        private String readString() throws IOException {
+            return TraceFormat.readString(in, strings);
+        }
+
+        private SmartDevice device(String deviceId) throws IOException {
+            SmartDevice device = devices.get(deviceId);
+            if (device == null) {
+                throw new IOException("Trace references unknown device " + deviceId);
+            }
+            return device;
+        }
+    }
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+}